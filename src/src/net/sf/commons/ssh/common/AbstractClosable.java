@@ -18,6 +18,8 @@ import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public abstract class AbstractClosable extends AbstractEventProcessor implements Closable
 {
@@ -31,6 +33,12 @@ public abstract class AbstractClosable extends AbstractEventProcessor implements
 
 	protected final Log log = LogFactory.getLog(this.getClass());
 
+	private final LifecycleFuture<Closable> closedFuture = new LifecycleFuture<Closable>();
+	/**
+	 * pipes which take memory from allocator of this object
+	 */
+	private final List<PipedInputStream> pipes = new CopyOnWriteArrayList<PipedInputStream>();
+
 
 	protected abstract Collection<Closable> getClosableChildren();
 
@@ -69,6 +77,7 @@ public abstract class AbstractClosable extends AbstractEventProcessor implements
 		try
 		{
 			closeImpl();
+			releaseBuffers(PipePropertiesBuilder.getInstance().getAllocator(this));
 		}
 		catch (Exception e)
 		{
@@ -87,4 +96,61 @@ public abstract class AbstractClosable extends AbstractEventProcessor implements
 	
 	protected abstract void closeImpl() throws IOException;
 
+	/**
+	 * @return future completed when {@link ClosedEvent} is fired by this object
+	 */
+	public LifecycleFuture<Closable> whenClosed()
+	{
+		return closedFuture;
+	}
+
+	@Override
+	protected void fire(Event event)
+	{
+		// complete futures first, so listeners may wait for them
+		if (event.getProducer() == this)
+			lifecycleEvent(event);
+		super.fire(event);
+	}
+
+	/**
+	 * complete lifecycle futures, called for events produced by this object before they are dispatched
+	 *
+	 * @param event event fired by this object
+	 */
+	protected void lifecycleEvent(Event event)
+	{
+		if (event.getEventType() == EventType.CLOSED)
+			closedFuture.complete(this);
+	}
+
+	/**
+	 * pipe is closed before its memory is released by {@link #releaseBuffers}
+	 */
+	void addPipe(PipedInputStream pipe)
+	{
+		pipes.add(pipe);
+	}
+
+	/**
+	 * close pipes and release pipe buffers owned by this object and its children
+	 *
+	 * @param allocator pipe allocator
+	 */
+	protected void releaseBuffers(BufferAllocator allocator)
+	{
+		if (allocator == null)
+			return;
+		// nobody may touch memory of the pipes after it is freed
+		for (PipedInputStream pipe : pipes)
+			IOUtils.close(pipe);
+		pipes.clear();
+		allocator.release(this);
+		for (Closable child : getClosableChildren())
+		{
+			if (child instanceof AbstractClosable)
+				((AbstractClosable) child).releaseBuffers(allocator);
+		}
+	}
+
 }
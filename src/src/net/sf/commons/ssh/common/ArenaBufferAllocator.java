@@ -0,0 +1,228 @@
+package net.sf.commons.ssh.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direct memory allocator with per owner accounting.
+ * <p/>
+ * Set one instance as {@link PipePropertiesBuilder#ALLOCATOR} of a connector. Each session gets its own arena through
+ * {@link #forOwner(Object)}, the arena is released when the session or its connection is closed, see
+ * {@link AbstractClosable#close()}. Owner closes its pipes first, so buffers disposed by pipe and buffers held on
+ * release are freed at once. Only buffers which a closed pipe {@link #detach detaches}, because a transfer in
+ * progress or views returned by {@link PipedInputStream#peekSegments()} may touch them yet, are left to garbage
+ * collector. Released arena doesn't allocate anymore.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class ArenaBufferAllocator extends BufferAllocator
+{
+    private final ConcurrentMap<Object, Arena> arenas = new ConcurrentHashMap<Object, Arena>();
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    public ArenaBufferAllocator()
+    {
+        setDirect(true);
+    }
+
+    @Override
+    public BufferAllocator forOwner(Object owner)
+    {
+        Arena arena = arenas.get(owner);
+        if (arena != null)
+            return arena;
+        arena = new Arena(owner);
+        Arena existing = arenas.putIfAbsent(owner, arena);
+        return existing == null ? arena : existing;
+    }
+
+    @Override
+    public void release(Object owner)
+    {
+        Arena arena = arenas.remove(owner);
+        if (arena != null)
+            arena.releaseAll();
+    }
+
+    /**
+     * release buffers of all owners
+     */
+    public void releaseAll()
+    {
+        for (Object owner : new ArrayList<Object>(arenas.keySet()))
+            release(owner);
+    }
+
+    /**
+     * @return off-heap bytes allocated and not released by all owners
+     */
+    public long getLiveBytes()
+    {
+        return liveBytes.get();
+    }
+
+    /**
+     * @param owner buffers owner
+     * @return off-heap bytes allocated and not released by owner
+     */
+    public long getLiveBytes(Object owner)
+    {
+        Arena arena = arenas.get(owner);
+        return arena == null ? 0 : arena.getLiveBytes();
+    }
+
+    public int getArenaCount()
+    {
+        return arenas.size();
+    }
+
+    @Override
+    public ByteBuffer allocate(int size)
+    {
+        return forOwner(this).allocate(size);
+    }
+
+    @Override
+    public ByteBuffer allocateExact(int size)
+    {
+        return forOwner(this).allocateExact(size);
+    }
+
+    @Override
+    public void dispose(ByteBuffer buffer)
+    {
+        forOwner(this).dispose(buffer);
+    }
+
+    @Override
+    public ByteBuffer allocateNoMore(int size)
+    {
+        return forOwner(this).allocateNoMore(size);
+    }
+
+    @Override
+    public void detach(ByteBuffer buffer)
+    {
+        forOwner(this).detach(buffer);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ArenaBufferAllocator arenas " + arenas.size() + " live bytes " + liveBytes.get();
+    }
+
+    /**
+     * buffers of one owner
+     */
+    private class Arena extends BufferAllocator
+    {
+        private final Object owner;
+        private final Set<ByteBuffer> buffers = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+        private long bytes = 0;
+        private boolean released = false;
+
+        private Arena(Object owner)
+        {
+            this.owner = owner;
+            setDirect(true);
+        }
+
+        @Override
+        public ByteBuffer allocate(int size)
+        {
+            ByteBuffer buffer = allocateMemory(size);
+            synchronized (this)
+            {
+                if (released)
+                {
+                    freeDirect(buffer);
+                    throw new IllegalStateException("arena of " + owner + " is released");
+                }
+                buffers.add(buffer);
+                bytes += size;
+                liveBytes.addAndGet(size);
+            }
+            return buffer;
+        }
+
+        @Override
+        public ByteBuffer allocateExact(int size)
+        {
+            return allocate(size);
+        }
+
+        @Override
+        public ByteBuffer allocateNoMore(int size)
+        {
+            return allocate(size);
+        }
+
+        @Override
+        public void dispose(ByteBuffer buffer)
+        {
+            synchronized (this)
+            {
+                if (!buffers.remove(buffer))
+                    return;
+                bytes -= buffer.capacity();
+                liveBytes.addAndGet(-buffer.capacity());
+            }
+            freeDirect(buffer);
+        }
+
+        @Override
+        public void detach(ByteBuffer buffer)
+        {
+            synchronized (this)
+            {
+                if (!buffers.remove(buffer))
+                    return;
+                bytes -= buffer.capacity();
+                liveBytes.addAndGet(-buffer.capacity());
+            }
+        }
+
+        @Override
+        public BufferAllocator forOwner(Object owner)
+        {
+            return ArenaBufferAllocator.this.forOwner(owner);
+        }
+
+        @Override
+        public void release(Object owner)
+        {
+            ArenaBufferAllocator.this.release(owner);
+        }
+
+        private synchronized long getLiveBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * free buffers, pipes of owner are closed already
+         */
+        private void releaseAll()
+        {
+            ByteBuffer[] held;
+            synchronized (this)
+            {
+                released = true;
+                held = buffers.toArray(new ByteBuffer[buffers.size()]);
+                buffers.clear();
+                liveBytes.addAndGet(-bytes);
+                bytes = 0;
+            }
+            for (ByteBuffer buffer : held)
+                freeDirect(buffer);
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package net.sf.commons.ssh.common;
 
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 
 public abstract class BufferAllocator
 {
+    private static final Log log = LogFactory.getLog(BufferAllocator.class);
+
+    private static Object unsafe;
+    private static Method invokeCleaner;
+    private static volatile boolean cleanerResolved = false;
+
     private boolean direct = false;
     public abstract ByteBuffer allocate(int size);
     public abstract ByteBuffer allocateExact(int size);
@@ -21,6 +32,41 @@ public abstract class BufferAllocator
         this.direct = direct;
     }
 
+    /**
+     * Allocator for buffers of one owner, usually session or connection. Default implementation doesn't distinguish
+     * owners.
+     *
+     * @param owner buffers owner
+     * @return allocator to use for owner buffers
+     */
+    public BufferAllocator forOwner(Object owner)
+    {
+        return this;
+    }
+
+    /**
+     * Release all buffers allocated by {@link #forOwner(Object)} allocator of owner. Default implementation does
+     * nothing.
+     *
+     * @param owner buffers owner
+     */
+    public void release(Object owner)
+    {
+        //nothing
+    }
+
+    /**
+     * Stop accounting buffer which may be still touched after its pipe is closed, e.g. through a view given to user,
+     * so {@link #release(Object)} doesn't free it. Its memory is left to garbage collector. Default implementation
+     * does nothing.
+     *
+     * @param buffer buffer allocated by this allocator
+     */
+    public void detach(ByteBuffer buffer)
+    {
+        //nothing
+    }
+
     protected ByteBuffer allocateMemory(int size)
     {
         if(direct)
@@ -28,4 +74,65 @@ public abstract class BufferAllocator
         else
             return ByteBuffer.allocate(size);
     }
-}
\ No newline at end of file
+
+    /**
+     * Free native memory of direct buffer without waiting for garbage collector.
+     * Buffer must not be used after this call.
+     *
+     * @param buffer buffer returned by {@link ByteBuffer#allocateDirect(int)} or file mapping
+     * @return true if memory was freed
+     */
+    protected static boolean freeDirect(ByteBuffer buffer)
+    {
+        if (buffer == null || !buffer.isDirect())
+            return false;
+        try
+        {
+            if (!cleanerResolved)
+                resolveCleaner();
+            if (invokeCleaner != null)
+            {
+                invokeCleaner.invoke(unsafe, buffer);
+                return true;
+            }
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null)
+                return false;
+            Method clean = cleaner.getClass().getMethod("clean");
+            clean.setAccessible(true);
+            clean.invoke(cleaner);
+            return true;
+        }
+        catch (Exception e)
+        {
+            LogUtils.debug(log, e, "can''t free direct buffer {0}", buffer);
+            return false;
+        }
+    }
+
+    private static synchronized void resolveCleaner()
+    {
+        if (cleanerResolved)
+            return;
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = method;
+        }
+        catch (Exception e)
+        {
+            LogUtils.trace(log, "Unsafe.invokeCleaner isn''t available, use buffer cleaner");
+        }
+        finally
+        {
+            // publish after fields, unsynchronized readers check the flag only
+            cleanerResolved = true;
+        }
+    }
+}
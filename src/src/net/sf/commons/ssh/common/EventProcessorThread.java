@@ -3,15 +3,15 @@
  */
 package net.sf.commons.ssh.common;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import net.sf.commons.ssh.event.Event;
 import net.sf.commons.ssh.event.EventListener;
 
 /**
+ * Asynchronous processor of events. Events of one producer are handled one by one in order they were fired,
+ * events of different producers are handled in parallel.
+ *
  * @author fob
  * @date 31.07.2011
  * @since 2.0
@@ -20,18 +20,22 @@ public class EventProcessorThread
 {
 	private static EventProcessorThread instance = null;
 	
-	private ThreadPoolExecutor executor;
+	/**
+	 * maximum count of not processed events of one producer, producer waits when it is reached
+	 */
+	public static final int LANE_CAPACITY = 1024;
+
+	private OrderedEventExecutor executor;
 	private int poolSize = 3;
 	private int maxPoolSize = 5;
 	private long timeout = 5;
 	private TimeUnit timeUnit = TimeUnit.MINUTES;
-	private BlockingQueue<Runnable> queue;
 	private static boolean enableThread = false;
 	
 	protected EventProcessorThread()
 	{
-		queue = new PriorityBlockingQueue<Runnable>();
-		executor = new ThreadPoolExecutor(poolSize,maxPoolSize,timeout,timeUnit,queue);
+		executor = new OrderedEventExecutor(poolSize, LANE_CAPACITY);
+		executor.setKeepAliveTime(timeout, timeUnit);
 	}
 	
 	public static synchronized EventProcessorThread getInstance()
@@ -58,15 +62,23 @@ public class EventProcessorThread
 	public synchronized static void disable()
 	{
 		enableThread = false;
-		instance.executor.shutdownNow();
+		if (instance != null)
+			instance.executor.shutdownNow();
+		instance = null;
+	}
+
+	public OrderedEventExecutor getExecutor()
+	{
+		return executor;
 	}
 
 	public void submit(Event event,EventListener listener)
 	{
-		executor.submit(new Task(event,listener));		
+		Object producer = event.getProducer();
+		executor.execute(producer == null ? listener : producer, new Task(event,listener));
 	}
 	
-	private class Task implements Runnable,Comparable<Task>
+	private class Task implements Runnable
 	{
 		private Event event;
 		private EventListener listener;
@@ -95,14 +107,6 @@ public class EventProcessorThread
 			listener.handle(event);			
 		}
 
-
-
-		@Override
-		public int compareTo(Task o)
-		{
-			return event.getPriority()-o.event.getPriority();
-		}
-		
 	}
 
 	
@@ -114,7 +118,7 @@ public class EventProcessorThread
 	public void setPoolSize(int poolSize)
 	{
 		this.poolSize = poolSize;
-		executor.setCorePoolSize(poolSize);
+		executor.setPoolSize(poolSize);
 	}
 
 	public int getMaxPoolSize()
@@ -122,17 +126,24 @@ public class EventProcessorThread
 		return maxPoolSize;
 	}
 
+	/**
+	 * Pool has fixed size, threads aren't added on demand anymore, so maximum sets the size of the pool to the
+	 * greater of pool size and maximum.
+	 *
+	 * @deprecated use {@link #setPoolSize(int)}
+	 */
+	@Deprecated
 	public void setMaxPoolSize(int maxPoolSize)
 	{
 		this.maxPoolSize = maxPoolSize;
-		executor.setMaximumPoolSize(maxPoolSize);
+		executor.setPoolSize(Math.max(poolSize, maxPoolSize));
 	}
 
 	public void setKeepAliveTimeout(long timeout,TimeUnit timeUnit)
 	{
 		this.timeout = timeout;
 		this.timeUnit = timeUnit;
-		this.executor.setKeepAliveTime(timeout, timeUnit);
+		executor.setKeepAliveTime(timeout, timeUnit);
 	}
 	
 }
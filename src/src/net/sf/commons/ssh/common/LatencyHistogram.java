@@ -0,0 +1,94 @@
+package net.sf.commons.ssh.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with power of two buckets. Percentiles are exact within factor of two,
+ * recording is few atomic increments.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class LatencyHistogram
+{
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos duration, negative is recorded as 0
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get()))
+        {
+            if (max.compareAndSet(current, nanos))
+                break;
+        }
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getTotal()
+    {
+        return total.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    public long getMean()
+    {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * @param fraction fraction of records, e.g. 0.99
+     * @return upper bound of bucket which contains given fraction of records
+     */
+    public long getPercentile(double fraction)
+    {
+        long n = count.get();
+        if (n == 0)
+            return 0;
+        long threshold = (long) Math.ceil(n * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= threshold)
+                return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+            buckets.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    private static long upperBound(int bucket)
+    {
+        return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,203 @@
+package net.sf.commons.ssh.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future of lifecycle stage of connection or session, e.g. connected, authenticated, opened, closed.
+ * <p/>
+ * Future is completed by owner when it fires corresponding event, it can't be cancelled by user. Completed future
+ * never changes its state, so {@link #isDone()} is a plain field read and can replace status polling.
+ *
+ * @param <T> owner type
+ * @author fob
+ * @since 2.1
+ */
+public class LifecycleFuture<T> implements Future<T>
+{
+    private static final Log log = LogFactory.getLog(LifecycleFuture.class);
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile boolean done = false;
+    private T value;
+    private Throwable failure;
+    private List<Runnable> listeners = null;
+
+    /**
+     * complete future successfully
+     *
+     * @param value result of future
+     * @return false if future was already completed
+     */
+    public boolean complete(T value)
+    {
+        return finish(value, null);
+    }
+
+    /**
+     * complete future with error, {@link #get()} will throw {@link ExecutionException}
+     *
+     * @param failure cause
+     * @return false if future was already completed
+     */
+    public boolean fail(Throwable failure)
+    {
+        if (failure == null)
+            throw new IllegalArgumentException("failure is null");
+        return finish(null, failure);
+    }
+
+    private boolean finish(T value, Throwable failure)
+    {
+        List<Runnable> toRun;
+        synchronized (this)
+        {
+            if (done)
+                return false;
+            this.value = value;
+            this.failure = failure;
+            done = true;
+            toRun = listeners;
+            listeners = null;
+        }
+        latch.countDown();
+        if (toRun != null)
+        {
+            // completed by owner before it dispatches the event, failed listener must not stop it
+            for (Runnable listener : toRun)
+            {
+                try
+                {
+                    listener.run();
+                }
+                catch (RuntimeException e)
+                {
+                    LogUtils.error(log, e, "lifecycle listener {0} failed", listener);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * run listener when future is completed, listener is run by completing thread or by calling thread if future is
+     * completed already
+     *
+     * @param listener callback, should be short and must not block
+     */
+    public void addListener(Runnable listener)
+    {
+        synchronized (this)
+        {
+            if (!done)
+            {
+                if (listeners == null)
+                    listeners = new ArrayList<Runnable>(2);
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * wait for completion
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of timeout
+     * @return true if future is completed
+     * @throws InterruptedException if current thread was interrupted
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return done || latch.await(timeout, unit);
+    }
+
+    /**
+     * wait for completion
+     *
+     * @throws InterruptedException if current thread was interrupted
+     */
+    public void await() throws InterruptedException
+    {
+        if (!done)
+            latch.await();
+    }
+
+    /**
+     * @return true if future is completed successfully
+     */
+    public boolean isSuccess()
+    {
+        return done && getFailure() == null;
+    }
+
+    /**
+     * @return cause of failure or null if future isn't completed or completed successfully
+     */
+    public synchronized Throwable getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * lifecycle futures can't be cancelled
+     *
+     * @return false
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException
+    {
+        await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+    {
+        if (!await(timeout, unit))
+            throw new TimeoutException("not completed in " + timeout + " " + unit);
+        return result();
+    }
+
+    private synchronized T result() throws ExecutionException
+    {
+        if (failure != null)
+            throw new ExecutionException(failure);
+        return value;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (!done)
+            return "LifecycleFuture[pending]";
+        return "LifecycleFuture[" + (getFailure() == null ? "completed" : "failed: " + getFailure()) + "]";
+    }
+}
@@ -0,0 +1,136 @@
+package net.sf.commons.ssh.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Allocator of buffers mapped to temporary files. Used by pipes to spill data which doesn't fit in memory.
+ * <p/>
+ * Every buffer is backed by its own file, file is unmapped and deleted when buffer is disposed. Detached buffer is
+ * only deleted, it is unmapped by garbage collector.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class MappedBufferAllocator extends BufferAllocator
+{
+    private static final Log log = LogFactory.getLog(MappedBufferAllocator.class);
+
+    private final File directory;
+    private final Map<ByteBuffer, File> files = new IdentityHashMap<ByteBuffer, File>();
+
+    /**
+     * @param directory directory for temporary files, null for system default
+     */
+    public MappedBufferAllocator(File directory)
+    {
+        this.directory = directory;
+        setDirect(true);
+    }
+
+    public MappedBufferAllocator()
+    {
+        this(null);
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    @Override
+    public ByteBuffer allocate(int size)
+    {
+        File file = null;
+        RandomAccessFile raf = null;
+        try
+        {
+            file = File.createTempFile("pipe-", ".spill", directory);
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(size);
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            synchronized (files)
+            {
+                files.put(buffer, file);
+            }
+            LogUtils.trace(log, "spill file {0} mapped, size {1}", file, size);
+            return buffer;
+        }
+        catch (IOException e)
+        {
+            if (file != null && !file.delete())
+                file.deleteOnExit();
+            throw new UnexpectedRuntimeException("can't map spill file in " + directory, e);
+        }
+        finally
+        {
+            IOUtils.close(raf);
+        }
+    }
+
+    @Override
+    public ByteBuffer allocateExact(int size)
+    {
+        return allocate(size);
+    }
+
+    @Override
+    public ByteBuffer allocateNoMore(int size)
+    {
+        return allocate(size);
+    }
+
+    @Override
+    public void dispose(ByteBuffer buffer)
+    {
+        File file;
+        synchronized (files)
+        {
+            file = files.remove(buffer);
+        }
+        if (file == null)
+            return;
+        freeDirect(buffer);
+        delete(file);
+    }
+
+    @Override
+    public void detach(ByteBuffer buffer)
+    {
+        File file;
+        synchronized (files)
+        {
+            file = files.remove(buffer);
+        }
+        if (file != null)
+            delete(file);
+    }
+
+    private static void delete(File file)
+    {
+        if (!file.delete())
+        {
+            LogUtils.debug(log, "can''t delete spill file {0}", file);
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * @return count of mapped files
+     */
+    public int getFileCount()
+    {
+        synchronized (files)
+        {
+            return files.size();
+        }
+    }
+}
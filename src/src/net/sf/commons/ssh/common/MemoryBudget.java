@@ -0,0 +1,136 @@
+package net.sf.commons.ssh.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit of memory shared by all pipes of a connector.
+ * <p/>
+ * Pipes reserve memory before growing over their initial buffer. When reservation is denied pipe reuses memory it
+ * already holds, so writer waits until its own reader drains the pipe. While more than half of the limit is in use a
+ * pipe may grow only up to its fair share ({@link #getLimit()} divided by count of registered pipes), so one chatty
+ * session can't take whole budget from others.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class MemoryBudget
+{
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+    private final AtomicInteger consumers = new AtomicInteger();
+
+    /**
+     * @param limit maximum count of bytes reserved by all pipes
+     */
+    public MemoryBudget(long limit)
+    {
+        if (limit <= 0)
+            throw new IllegalArgumentException("illegal memory budget " + limit);
+        this.limit = limit;
+    }
+
+    /**
+     * try to reserve memory for pipe growing
+     *
+     * @param held bytes already reserved by the consumer
+     * @param size bytes to reserve
+     * @return true if memory is reserved
+     */
+    public boolean tryReserve(long held, int size)
+    {
+        for (;;)
+        {
+            long current = used.get();
+            long next = current + size;
+            if (next > limit || (next > limit / 2 && held + size > getFairShare()))
+            {
+                denied.incrementAndGet();
+                return false;
+            }
+            if (used.compareAndSet(current, next))
+            {
+                updatePeak(next);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * reserve memory which is needed in any case, e.g. initial pipe buffer. Budget can be exceeded by such
+     * reservations.
+     *
+     * @param size bytes to reserve
+     */
+    public void forceReserve(int size)
+    {
+        updatePeak(used.addAndGet(size));
+    }
+
+    public void release(long size)
+    {
+        used.addAndGet(-size);
+    }
+
+    public void register()
+    {
+        consumers.incrementAndGet();
+    }
+
+    public void unregister()
+    {
+        consumers.decrementAndGet();
+    }
+
+    public long getLimit()
+    {
+        return limit;
+    }
+
+    public long getUsedBytes()
+    {
+        return used.get();
+    }
+
+    public long getPeakBytes()
+    {
+        return peak.get();
+    }
+
+    /**
+     * @return count of denied reservations
+     */
+    public long getDenied()
+    {
+        return denied.get();
+    }
+
+    public int getConsumers()
+    {
+        return consumers.get();
+    }
+
+    public long getFairShare()
+    {
+        return limit / Math.max(consumers.get(), 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MemoryBudget used " + used.get() + "/" + limit + " peak " + peak.get() + " denied " + denied.get()
+                + " consumers " + consumers.get();
+    }
+
+    private void updatePeak(long value)
+    {
+        for (;;)
+        {
+            long current = peak.get();
+            if (value <= current || peak.compareAndSet(current, value))
+                return;
+        }
+    }
+}
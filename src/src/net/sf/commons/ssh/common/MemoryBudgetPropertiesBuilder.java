@@ -0,0 +1,94 @@
+package net.sf.commons.ssh.common;
+
+import net.sf.commons.ssh.options.*;
+
+/**
+ * Memory budget shared by pipes. Set budget on connector to bound memory of all its sessions.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class MemoryBudgetPropertiesBuilder extends PropertiesBuilder
+{
+    private static MemoryBudgetPropertiesBuilder instance = null;
+
+    @PropertyType(MemoryBudget.class)
+    public static final String BUDGET = "net.sf.commons.ssh.common.MemoryBudgetPropertiesBuilder.budget";
+
+    protected MemoryBudgetPropertiesBuilder()
+    {
+        defaultProperties.put(BUDGET, null);
+    }
+
+    public synchronized static MemoryBudgetPropertiesBuilder getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new MemoryBudgetPropertiesBuilder();
+        }
+        return instance;
+    }
+
+    public MemoryBudget getBudget(Properties conf)
+    {
+        return (MemoryBudget) getProperty(conf, BUDGET);
+    }
+
+    public void setBudget(Configurable conf, MemoryBudget budget)
+    {
+        setProperty(conf, BUDGET, budget);
+    }
+
+    public void setBudget(Configurable conf, String limit)
+    {
+        setProperty(conf, BUDGET, limit);
+    }
+
+    /**
+     * set new budget with given limit
+     *
+     * @param conf  usually connector
+     * @param limit maximum bytes reserved by all pipes
+     */
+    public void setBudget(Configurable conf, long limit)
+    {
+        setProperty(conf, BUDGET, new MemoryBudget(limit));
+    }
+
+    public long getUsedBytes(Properties conf)
+    {
+        MemoryBudget budget = getBudget(conf);
+        return budget == null ? 0 : budget.getUsedBytes();
+    }
+
+    public long getPeakBytes(Properties conf)
+    {
+        MemoryBudget budget = getBudget(conf);
+        return budget == null ? 0 : budget.getPeakBytes();
+    }
+
+    public long getDenied(Properties conf)
+    {
+        MemoryBudget budget = getBudget(conf);
+        return budget == null ? 0 : budget.getDenied();
+    }
+
+    @Override
+    protected TypeConverter createConverter()
+    {
+        return new DefaultConverter(this.getClass())
+        {
+            @ConvertMethod(from = String.class, to = MemoryBudget.class)
+            public MemoryBudget stringToBudget(String value)
+            {
+                return new MemoryBudget(Long.parseLong(value.trim()));
+            }
+
+            @ConvertMethod(from = Number.class, to = MemoryBudget.class)
+            public MemoryBudget numberToBudget(Number value)
+            {
+                return new MemoryBudget(value.longValue());
+            }
+        };
+    }
+}
@@ -0,0 +1,298 @@
+package net.sf.commons.ssh.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor which runs tasks of one key (usually event producer) one by one in order of submission, tasks of
+ * different keys run in parallel on shared pool.
+ * <p/>
+ * Every key has its own lane: queue of tasks which is drained by at most one pool thread at a time. Lane is created
+ * on first task and dropped when it is drained, so idle producers cost nothing. Lane holds no more than
+ * {@code laneCapacity} tasks, submitter waits while lane is full, so slow listener slows down its producer instead
+ * of growing memory.
+ * <p/>
+ * Back-pressure applies to outside threads only, e.g. threads of SSH library. Thread running a lane task of any
+ * executor never waits: the full lane may be queued behind it in the pool or may fire back into its lane, so such
+ * submitter puts task over capacity. Memory of lanes fed by event handlers is therefore not bounded by capacity.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class OrderedEventExecutor
+{
+    private static final Log log = LogFactory.getLog(OrderedEventExecutor.class);
+
+    /**
+     * count of tasks run by lane before it yields pool thread to other lanes
+     */
+    private static final int BATCH = 32;
+
+    /**
+     * set while thread runs lane tasks, such thread never waits for lane space
+     */
+    private static final ThreadLocal<Boolean> laneThread = new ThreadLocal<Boolean>();
+
+    private final ThreadPoolExecutor pool;
+    private final ConcurrentMap<Object, Lane> lanes = new ConcurrentHashMap<Object, Lane>();
+    private final int laneCapacity;
+
+    /**
+     * @param threads      count of pool threads
+     * @param laneCapacity maximum count of waiting tasks of one key, 0 for unbounded lanes
+     * @param factory      factory of pool threads, null for default
+     */
+    public OrderedEventExecutor(int threads, int laneCapacity, ThreadFactory factory)
+    {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads should be positive");
+        this.laneCapacity = laneCapacity <= 0 ? Integer.MAX_VALUE : laneCapacity;
+        pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+                factory == null ? Executors.defaultThreadFactory() : factory);
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public OrderedEventExecutor(int threads, int laneCapacity)
+    {
+        this(threads, laneCapacity, null);
+    }
+
+    /**
+     * run task after all tasks submitted before with the same key, wait while lane of key is full unless current
+     * thread runs lane task
+     *
+     * @param key  ordering key, tasks with equal keys never run concurrently
+     * @param task task
+     * @throws RejectedExecutionException if executor is shut down
+     */
+    public void execute(Object key, Runnable task)
+    {
+        if (pool.isShutdown())
+            throw new RejectedExecutionException("executor is shut down");
+        while (true)
+        {
+            Lane lane = lanes.get(key);
+            if (lane == null)
+            {
+                lane = new Lane(key);
+                Lane old = lanes.putIfAbsent(key, lane);
+                if (old != null)
+                    lane = old;
+            }
+            if (lane.offer(task))
+                return;
+        }
+    }
+
+    /**
+     * @return count of keys which have queued or running tasks
+     */
+    public int getLaneCount()
+    {
+        return lanes.size();
+    }
+
+    public void setPoolSize(int threads)
+    {
+        if (threads > pool.getMaximumPoolSize())
+        {
+            pool.setMaximumPoolSize(threads);
+            pool.setCorePoolSize(threads);
+        }
+        else
+        {
+            pool.setCorePoolSize(threads);
+            pool.setMaximumPoolSize(threads);
+        }
+    }
+
+    public int getPoolSize()
+    {
+        return pool.getCorePoolSize();
+    }
+
+    public void setKeepAliveTime(long timeout, TimeUnit timeUnit)
+    {
+        pool.setKeepAliveTime(timeout, timeUnit);
+    }
+
+    public void shutdown()
+    {
+        pool.shutdown();
+        // submitters waiting for lane space don't wait for shut down executor
+        for (Lane lane : lanes.values())
+            lane.wakeUp();
+    }
+
+    public void shutdownNow()
+    {
+        pool.shutdownNow();
+        for (Lane lane : lanes.values())
+            lane.abort();
+        lanes.clear();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit timeUnit) throws InterruptedException
+    {
+        return pool.awaitTermination(timeout, timeUnit);
+    }
+
+    /**
+     * @return factory of virtual threads or null if JVM doesn't support them
+     */
+    public static ThreadFactory virtualThreadFactory()
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        }
+        catch (Exception e)
+        {
+            LogUtils.debug(log, "virtual threads are not supported: {0}", e);
+            return null;
+        }
+    }
+
+    private class Lane implements Runnable
+    {
+        private final Object key;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+        private boolean scheduled = false;
+        private boolean dead = false;
+
+        Lane(Object key)
+        {
+            this.key = key;
+        }
+
+        /**
+         * @return false if lane is dropped and task should be offered to new lane
+         */
+        synchronized boolean offer(Runnable task)
+        {
+            // lane threads can't wait for lanes queued behind them or for themselves
+            while (!dead && tasks.size() >= laneCapacity && laneThread.get() == null && !pool.isShutdown())
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (dead)
+                return false;
+            tasks.addLast(task);
+            if (!scheduled)
+            {
+                scheduled = true;
+                try
+                {
+                    pool.execute(this);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    scheduled = false;
+                    tasks.removeLast();
+                    throw e;
+                }
+            }
+            return true;
+        }
+
+        public void run()
+        {
+            Boolean outer = laneThread.get();
+            laneThread.set(Boolean.TRUE);
+            try
+            {
+                while (runBatch())
+                {
+                    // yield thread to other lanes, keep draining if pool doesn't accept tasks anymore
+                    if (!pool.isShutdown())
+                    {
+                        try
+                        {
+                            pool.execute(this);
+                            return;
+                        }
+                        catch (RejectedExecutionException e)
+                        {
+                            LogUtils.trace(log, "pool is shut down, drain lane of {0}", key);
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                if (outer == null)
+                    laneThread.remove();
+            }
+        }
+
+        /**
+         * @return true if lane has more tasks
+         */
+        private boolean runBatch()
+        {
+            for (int i = 0; i < BATCH; i++)
+            {
+                Runnable task;
+                synchronized (this)
+                {
+                    task = tasks.pollFirst();
+                    if (task == null)
+                        break;
+                    notifyAll();
+                }
+                try
+                {
+                    task.run();
+                }
+                catch (RuntimeException e)
+                {
+                    LogUtils.error(log, e, "task of {0} failed", key);
+                }
+            }
+            synchronized (this)
+            {
+                if (!tasks.isEmpty())
+                    return true;
+                scheduled = false;
+                dead = true;
+                lanes.remove(key, this);
+                notifyAll();
+                return false;
+            }
+        }
+
+        synchronized void wakeUp()
+        {
+            notifyAll();
+        }
+
+        synchronized void abort()
+        {
+            dead = true;
+            tasks.clear();
+            lanes.remove(key, this);
+            notifyAll();
+        }
+    }
+}
@@ -2,6 +2,9 @@ package net.sf.commons.ssh.common;
 
 import net.sf.commons.ssh.options.*;
 
+import java.io.File;
+import java.io.IOException;
+
 public class PipePropertiesBuilder extends PropertiesBuilder
 {
     private static PipePropertiesBuilder instance = null;
@@ -16,6 +19,28 @@ public class PipePropertiesBuilder extends PropertiesBuilder
     public static final String MODIFIER_SIZE = "net.sf.commons.ssh.common.PipePropertiesBuilder.mod";
     @PropertyType(BufferAllocator.class)
     public static final String ALLOCATOR = "net.sf.commons.ssh.common.PipePropertiesBuilder.allocator";
+    @PropertyType(PipeType.class)
+    public static final String TYPE = "net.sf.commons.ssh.common.PipePropertiesBuilder.type";
+    @PropertyType(Integer.class)
+    public static final String RING_CAPACITY = "net.sf.commons.ssh.common.PipePropertiesBuilder.ringCapacity";
+    @PropertyType(Boolean.class)
+    public static final String OVERFLOW_ENABLED = "net.sf.commons.ssh.common.PipePropertiesBuilder.overflow";
+    @PropertyType(Integer.class)
+    public static final String OVERFLOW_SEGMENT_SIZE = "net.sf.commons.ssh.common.PipePropertiesBuilder.overflowSegment";
+    @PropertyType(Long.class)
+    public static final String OVERFLOW_LIMIT = "net.sf.commons.ssh.common.PipePropertiesBuilder.overflowLimit";
+    @PropertyType(String.class)
+    public static final String OVERFLOW_DIRECTORY = "net.sf.commons.ssh.common.PipePropertiesBuilder.overflowDirectory";
+    @PropertyType(Boolean.class)
+    public static final String NOTIFY_COALESCE = "net.sf.commons.ssh.common.PipePropertiesBuilder.notifyCoalesce";
+    @PropertyType(Long.class)
+    public static final String NOTIFY_INTERVAL = "net.sf.commons.ssh.common.PipePropertiesBuilder.notifyInterval";
+    @PropertyType(Integer.class)
+    public static final String NOTIFY_THRESHOLD = "net.sf.commons.ssh.common.PipePropertiesBuilder.notifyThreshold";
+    @PropertyType(Integer.class)
+    public static final String HIGH_WATERMARK = "net.sf.commons.ssh.common.PipePropertiesBuilder.highWatermark";
+    @PropertyType(Integer.class)
+    public static final String LOW_WATERMARK = "net.sf.commons.ssh.common.PipePropertiesBuilder.lowWatermark";
 
     protected PipePropertiesBuilder()
     {
@@ -24,6 +49,17 @@ public class PipePropertiesBuilder extends PropertiesBuilder
         defaultProperties.put(STEP_SIZE, 1024);
         defaultProperties.put(MODIFIER_SIZE, 2);
         defaultProperties.put(ALLOCATOR, new SoftBufferAllocator());
+        defaultProperties.put(TYPE, PipeType.SEGMENTED);
+        defaultProperties.put(RING_CAPACITY, 64 * 1024);
+        defaultProperties.put(OVERFLOW_ENABLED, false);
+        defaultProperties.put(OVERFLOW_SEGMENT_SIZE, 1024 * 1024);
+        defaultProperties.put(OVERFLOW_LIMIT, 0L);
+        defaultProperties.put(OVERFLOW_DIRECTORY, null);
+        defaultProperties.put(NOTIFY_COALESCE, false);
+        defaultProperties.put(NOTIFY_INTERVAL, 0L);
+        defaultProperties.put(NOTIFY_THRESHOLD, 0);
+        defaultProperties.put(HIGH_WATERMARK, 0);
+        defaultProperties.put(LOW_WATERMARK, 0);
     }
 
     public synchronized static PipePropertiesBuilder getInstance()
@@ -60,6 +96,61 @@ public class PipePropertiesBuilder extends PropertiesBuilder
         return (BufferAllocator) getProperty(conf, ALLOCATOR);
     }
 
+    public PipeType getType(Properties conf)
+    {
+        return (PipeType) getProperty(conf, TYPE);
+    }
+
+    public Integer getRingCapacity(Properties conf)
+    {
+        return (Integer) getProperty(conf, RING_CAPACITY);
+    }
+
+    public Boolean isOverflowEnabled(Properties conf)
+    {
+        return (Boolean) getProperty(conf, OVERFLOW_ENABLED);
+    }
+
+    public Integer getOverflowSegmentSize(Properties conf)
+    {
+        return (Integer) getProperty(conf, OVERFLOW_SEGMENT_SIZE);
+    }
+
+    public Long getOverflowLimit(Properties conf)
+    {
+        return (Long) getProperty(conf, OVERFLOW_LIMIT);
+    }
+
+    public String getOverflowDirectory(Properties conf)
+    {
+        return (String) getProperty(conf, OVERFLOW_DIRECTORY);
+    }
+
+    public Boolean isNotifyCoalesce(Properties conf)
+    {
+        return (Boolean) getProperty(conf, NOTIFY_COALESCE);
+    }
+
+    public Long getNotifyInterval(Properties conf)
+    {
+        return (Long) getProperty(conf, NOTIFY_INTERVAL);
+    }
+
+    public Integer getNotifyThreshold(Properties conf)
+    {
+        return (Integer) getProperty(conf, NOTIFY_THRESHOLD);
+    }
+
+    public Integer getHighWatermark(Properties conf)
+    {
+        return (Integer) getProperty(conf, HIGH_WATERMARK);
+    }
+
+    public Integer getLowWatermark(Properties conf)
+    {
+        return (Integer) getProperty(conf, LOW_WATERMARK);
+    }
+
 
     public void setInitialSize(Configurable conf, int size)
     {
@@ -91,6 +182,139 @@ public class PipePropertiesBuilder extends PropertiesBuilder
         setProperty(conf, ALLOCATOR, allocator);
     }
 
+    public void setType(Configurable conf, PipeType type)
+    {
+        setProperty(conf, TYPE, type);
+    }
+
+    public void setRingCapacity(Configurable conf, int size)
+    {
+        setProperty(conf, RING_CAPACITY, size);
+    }
+
+    public void setOverflowEnabled(Configurable conf, boolean enabled)
+    {
+        setProperty(conf, OVERFLOW_ENABLED, enabled);
+    }
+
+    public void setOverflowSegmentSize(Configurable conf, int size)
+    {
+        setProperty(conf, OVERFLOW_SEGMENT_SIZE, size);
+    }
+
+    public void setOverflowLimit(Configurable conf, long limit)
+    {
+        setProperty(conf, OVERFLOW_LIMIT, limit);
+    }
+
+    public void setOverflowDirectory(Configurable conf, String directory)
+    {
+        setProperty(conf, OVERFLOW_DIRECTORY, directory);
+    }
+
+    /**
+     * @see PipedOutputStream#setNotifyCoalescing(boolean, long, int)
+     */
+    public void setNotifyCoalesce(Configurable conf, boolean coalesce)
+    {
+        setProperty(conf, NOTIFY_COALESCE, coalesce);
+    }
+
+    public void setNotifyInterval(Configurable conf, long intervalMillis)
+    {
+        setProperty(conf, NOTIFY_INTERVAL, intervalMillis);
+    }
+
+    public void setNotifyThreshold(Configurable conf, int thresholdBytes)
+    {
+        setProperty(conf, NOTIFY_THRESHOLD, thresholdBytes);
+    }
+
+    /**
+     * @see PipedInputStream#setWatermarks(int, int)
+     */
+    public void setHighWatermark(Configurable conf, int size)
+    {
+        setProperty(conf, HIGH_WATERMARK, size);
+    }
+
+    public void setLowWatermark(Configurable conf, int size)
+    {
+        setProperty(conf, LOW_WATERMARK, size);
+    }
+
+    /**
+     * Create unconnected pipe configured by this builder properties. Pipe memory is taken from allocator of conf
+     * owner, see {@link BufferAllocator#forOwner(Object)}, and the pipe is closed when owner releases it. Pipe draws memory from budget set by
+     * {@link MemoryBudgetPropertiesBuilder}. Segmented pipe spills data to temporary files when overflow is enabled,
+     * ring pipe has fixed size and never spills.
+     *
+     * @param conf pipe configuration, usually session
+     * @return new pipe
+     */
+    public PipedInputStream createPipe(Properties conf)
+    {
+        return createPipe(conf, conf);
+    }
+
+    /**
+     * Create pipe configured by conf, e.g. frozen snapshot of owner properties, see {@link #createPipe(Properties)}.
+     *
+     * @param conf  pipe configuration
+     * @param owner owner of pipe memory, usually session
+     * @return new pipe
+     */
+    public PipedInputStream createPipe(Properties conf, Object owner)
+    {
+        BufferAllocator shared = getAllocator(conf);
+        BufferAllocator allocator = shared.forOwner(owner);
+        PipeType type = getType(conf);
+        PipedInputStream pipe;
+        if (type == PipeType.RING)
+            pipe = new RingPipedInputStream(getRingCapacity(conf), allocator);
+        else
+        {
+            pipe = new PipedInputStream(getInitialSize(conf), getMaximumSize(conf), getStepSize(conf),
+                    getModifier(conf), allocator);
+            if (Boolean.TRUE.equals(isOverflowEnabled(conf)))
+            {
+                String directory = getOverflowDirectory(conf);
+                pipe.setOverflow(new MappedBufferAllocator(directory == null ? null : new File(directory)),
+                        getOverflowSegmentSize(conf), getOverflowLimit(conf));
+            }
+        }
+        pipe.setBudget(MemoryBudgetPropertiesBuilder.getInstance().getBudget(conf));
+        Integer high = getHighWatermark(conf);
+        if (high != null && high > 0)
+        {
+            Integer low = getLowWatermark(conf);
+            pipe.setWatermarks(high, low == null ? 0 : low);
+        }
+        // memory of owner's own allocator is freed when owner is closed
+        if (allocator != shared && owner instanceof AbstractClosable)
+            ((AbstractClosable) owner).addPipe(pipe);
+        return pipe;
+    }
+
+    /**
+     * Create output stream connected to pipe, notification of its onWrite callback is configured by this builder
+     * properties.
+     *
+     * @param sink pipe to write to
+     * @param conf pipe configuration, usually session
+     * @return connected output stream
+     * @throws IOException if pipe is already connected
+     */
+    public PipedOutputStream createOutput(PipedInputStream sink, Properties conf) throws IOException
+    {
+        PipedOutputStream out = new PipedOutputStream(sink);
+        Long interval = getNotifyInterval(conf);
+        Integer threshold = getNotifyThreshold(conf);
+        out.setNotifyCoalescing(Boolean.TRUE.equals(isNotifyCoalesce(conf)), interval == null ? 0 : interval,
+                threshold == null ? 0 : threshold);
+        return out;
+    }
+
     @Override
     protected TypeConverter createConverter()
     {
@@ -108,6 +332,12 @@ public class PipePropertiesBuilder extends PropertiesBuilder
                     throw new UnexpectedRuntimeException("value "+value+" can't be converted to BufferAllocator",e);
                 }
             }
+
+            @ConvertMethod(from = String.class, to = PipeType.class)
+            public PipeType stringToType(String value)
+            {
+                return PipeType.valueOf(value);
+            }
         };
     }
 }
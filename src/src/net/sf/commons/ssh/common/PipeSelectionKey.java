@@ -0,0 +1,137 @@
+package net.sf.commons.ssh.common;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registration of pipe in {@link PipeSelector}.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class PipeSelectionKey
+{
+    private final PipedInputStream pipe;
+    private final PipeSelector selector;
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+    private volatile int interestOps;
+    private volatile Object attachment;
+    private volatile boolean valid = true;
+    private int readyOps;
+
+    PipeSelectionKey(PipeSelector selector, PipedInputStream pipe, int interestOps, Object attachment)
+    {
+        this.selector = selector;
+        this.pipe = pipe;
+        this.interestOps = interestOps;
+        this.attachment = attachment;
+    }
+
+    public PipedInputStream pipe()
+    {
+        return pipe;
+    }
+
+    public PipeSelector selector()
+    {
+        return selector;
+    }
+
+    public int interestOps()
+    {
+        return interestOps;
+    }
+
+    public PipeSelectionKey interestOps(int ops)
+    {
+        checkValid();
+        interestOps = ops;
+        signal();
+        return this;
+    }
+
+    /**
+     * @return operations which were ready on last select
+     */
+    public int readyOps()
+    {
+        return readyOps;
+    }
+
+    public boolean isReadable()
+    {
+        return (readyOps & PipeSelector.OP_READ) != 0;
+    }
+
+    public boolean isWritable()
+    {
+        return (readyOps & PipeSelector.OP_WRITE) != 0;
+    }
+
+    public Object attachment()
+    {
+        return attachment;
+    }
+
+    public Object attach(Object attachment)
+    {
+        Object old = this.attachment;
+        this.attachment = attachment;
+        return old;
+    }
+
+    public boolean isValid()
+    {
+        return valid;
+    }
+
+    /**
+     * unregister pipe from selector, key is removed on next select
+     */
+    public void cancel()
+    {
+        if (!valid)
+            return;
+        valid = false;
+        pipe.setSelectionKey(null);
+        selector.cancelled(this);
+    }
+
+    void setReadyOps(int readyOps)
+    {
+        this.readyOps = readyOps;
+    }
+
+    int computeReadyOps()
+    {
+        int ops = interestOps;
+        int ready = 0;
+        if ((ops & PipeSelector.OP_READ) != 0 && pipe.isReadable())
+            ready |= PipeSelector.OP_READ;
+        if ((ops & PipeSelector.OP_WRITE) != 0 && pipe.isWritable())
+            ready |= PipeSelector.OP_WRITE;
+        return ready;
+    }
+
+    /**
+     * called by pipe when its state changed, queues key for check by selector
+     */
+    void signal()
+    {
+        if (valid && queued.compareAndSet(false, true))
+            selector.signalled(this);
+    }
+
+    /**
+     * called by selector before readiness is checked
+     */
+    void dequeued()
+    {
+        queued.set(false);
+    }
+
+    private void checkValid()
+    {
+        if (!valid)
+            throw new IllegalStateException("key is cancelled");
+    }
+}
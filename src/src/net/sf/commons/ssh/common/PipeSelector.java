@@ -0,0 +1,239 @@
+package net.sf.commons.ssh.common;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Multiplexor of pipes. Allows to serve streams of many sessions by single thread without blocking reads.
+ * <p/>
+ * JDK {@link java.nio.channels.Selector} accepts only channels of its own provider, so pipes have their own
+ * selector with similar contract. Pipe tells selector when its state is changed, selector checks only such pipes
+ * and pipes which were ready on previous select, so cost of select doesn't depend on count of idle pipes.
+ * Selection is level-triggered: ready pipe is selected again until it is drained by {@link PipedInputStream#readNow}
+ * or filled by {@link PipedOutputStream#writeNow}.
+ * <p/>
+ * Only one thread may select, pipes may be registered and keys cancelled by any thread.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class PipeSelector implements Closeable
+{
+    /**
+     * pipe has data, reached end of stream or is closed
+     */
+    public static final int OP_READ = 1;
+    /**
+     * pipe can receive data without waiting
+     */
+    public static final int OP_WRITE = 4;
+
+    private final Set<PipeSelectionKey> keys =
+            Collections.newSetFromMap(new ConcurrentHashMap<PipeSelectionKey, Boolean>());
+    private final ConcurrentLinkedQueue<PipeSelectionKey> signalled = new ConcurrentLinkedQueue<PipeSelectionKey>();
+    private final Set<PipeSelectionKey> selectedKeys = new LinkedHashSet<PipeSelectionKey>();
+    private final List<PipeSelectionKey> candidates = new ArrayList<PipeSelectionKey>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private volatile boolean waiting = false;
+    private volatile boolean wokenUp = false;
+    private volatile boolean closed = false;
+
+    /**
+     * register input stream of session
+     *
+     * @param in         stream, must be pipe
+     * @param ops        interest operations
+     * @param attachment object attached to key
+     * @return key of registration
+     * @throws IllegalArgumentException if stream is not a pipe
+     * @throws IllegalStateException    if pipe is already registered or selector is closed
+     */
+    public PipeSelectionKey register(InputStream in, int ops, Object attachment)
+    {
+        if (!(in instanceof PipedInputStream))
+            throw new IllegalArgumentException("stream " + in + " is not a pipe");
+        return register((PipedInputStream) in, ops, attachment);
+    }
+
+    /**
+     * register pipe written by given stream, usually with {@link #OP_WRITE}
+     */
+    public PipeSelectionKey register(PipedOutputStream out, int ops, Object attachment)
+    {
+        return register(out.getSink(), ops, attachment);
+    }
+
+    public PipeSelectionKey register(PipedInputStream pipe, int ops, Object attachment)
+    {
+        if (closed)
+            throw new IllegalStateException("selector is closed");
+        PipeSelectionKey key = new PipeSelectionKey(this, pipe, ops, attachment);
+        synchronized (pipe)
+        {
+            if (pipe.getSelectionKey() != null)
+                throw new IllegalStateException("pipe is already registered");
+            pipe.setSelectionKey(key);
+        }
+        keys.add(key);
+        key.signal();
+        return key;
+    }
+
+    /**
+     * @return registered keys
+     */
+    public Set<PipeSelectionKey> keys()
+    {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * @return keys selected by last select, set is replaced by next select. Must be used by selecting thread.
+     */
+    public Set<PipeSelectionKey> selectedKeys()
+    {
+        return selectedKeys;
+    }
+
+    /**
+     * wait until at least one pipe is ready
+     *
+     * @param timeout timeout in milliseconds, 0 to wait forever
+     * @return count of selected keys
+     * @throws InterruptedException if thread is interrupted
+     */
+    public int select(long timeout) throws InterruptedException
+    {
+        long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        while (true)
+        {
+            int count = selectNow();
+            if (count > 0 || closed)
+                return count;
+            if (wokenUp)
+            {
+                wokenUp = false;
+                return 0;
+            }
+            lock.lock();
+            try
+            {
+                waiting = true;
+                if (signalled.isEmpty() && !wokenUp && !closed)
+                {
+                    if (timeout <= 0)
+                        changed.await();
+                    else
+                    {
+                        long left = deadline - System.nanoTime();
+                        if (left <= 0)
+                            return 0;
+                        changed.awaitNanos(left);
+                    }
+                }
+            }
+            finally
+            {
+                waiting = false;
+                lock.unlock();
+            }
+        }
+    }
+
+    public int select() throws InterruptedException
+    {
+        return select(0);
+    }
+
+    /**
+     * check signalled pipes and pipes selected last time without waiting
+     *
+     * @return count of selected keys
+     */
+    public int selectNow()
+    {
+        candidates.clear();
+        candidates.addAll(selectedKeys);
+        selectedKeys.clear();
+        PipeSelectionKey key;
+        while ((key = signalled.poll()) != null)
+        {
+            key.dequeued();
+            candidates.add(key);
+        }
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            key = candidates.get(i);
+            if (!key.isValid() || selectedKeys.contains(key))
+                continue;
+            int ready = key.computeReadyOps();
+            key.setReadyOps(ready);
+            if (ready != 0)
+                selectedKeys.add(key);
+        }
+        candidates.clear();
+        return selectedKeys.size();
+    }
+
+    /**
+     * make current or next select return immediately
+     */
+    public void wakeup()
+    {
+        wokenUp = true;
+        wake();
+    }
+
+    public boolean isOpen()
+    {
+        return !closed;
+    }
+
+    /**
+     * cancel all keys and wake up selecting thread, pipes are not closed
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        for (PipeSelectionKey key : keys)
+            key.cancel();
+        wake();
+    }
+
+    void signalled(PipeSelectionKey key)
+    {
+        signalled.add(key);
+        if (waiting)
+            wake();
+    }
+
+    void cancelled(PipeSelectionKey key)
+    {
+        keys.remove(key);
+    }
+
+    private void wake()
+    {
+        lock.lock();
+        try
+        {
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
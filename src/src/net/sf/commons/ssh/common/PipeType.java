@@ -0,0 +1,19 @@
+package net.sf.commons.ssh.common;
+
+/**
+ * Implementation of session pipes created by {@link PipePropertiesBuilder#createPipe(net.sf.commons.ssh.options.Properties)}
+ *
+ * @author fob
+ * @since 2.1
+ */
+public enum PipeType
+{
+    /**
+     * {@link PipedInputStream}, synchronized pipe growing by buffer segments.
+     */
+    SEGMENTED,
+    /**
+     * {@link RingPipedInputStream}, lock-free single producer/single consumer pipe with fixed capacity.
+     */
+    RING;
+}
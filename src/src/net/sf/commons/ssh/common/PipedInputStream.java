@@ -8,13 +8,22 @@ import org.apache.commons.logging.LogFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Konstantin Aleksandrov (mail@aleksandrov.pro)
  */
-public class PipedInputStream extends InputStream
+public class PipedInputStream extends InputStream implements ReadableByteChannel
 {
 	private static final Log log = LogFactory.getLog(PipedInputStream.class);
 
@@ -26,18 +35,28 @@ public class PipedInputStream extends InputStream
 
 	protected final String name;
 
-	boolean closedByWriter = false;
+	volatile boolean closedByWriter = false;
 
 	volatile boolean closedByReader = false;
 
 	boolean connected = false;
 
-	private long waitTimeout = 0;
+	protected long waitTimeout = 0;
 
 	private ByteBuffer getBuffer;
 	private ByteBuffer putBuffer;
 	ByteBuffer initialBuffer;
-	private LinkedList<ByteBuffer> putBuffers;
+	private ArrayDeque<ByteBuffer> putBuffers;
+	/**
+	 * count of initial buffer occurrences in putBuffers
+	 */
+	private int initialUses = 0;
+	/**
+	 * views of segments reused by getBuffer and putBuffer
+	 */
+	private final Map<ByteBuffer, ByteBuffer> readViews = new IdentityHashMap<ByteBuffer, ByteBuffer>();
+	private final Map<ByteBuffer, ByteBuffer> writeViews = new IdentityHashMap<ByteBuffer, ByteBuffer>();
+	private final Map<ByteBuffer, ByteBuffer> chunkViews = new IdentityHashMap<ByteBuffer, ByteBuffer>();
 
 
 	private int initialSize = DEFAULT_PIPE_SIZE;
@@ -46,8 +65,40 @@ public class PipedInputStream extends InputStream
     private int modifier = 2;
 	protected boolean direct;
 	private int currentSize;
-    private BufferAllocator allocator;
+    protected BufferAllocator allocator;
     protected int available = 0;
+	/**
+	 * true if last receive put data to pipe drained by reader, written by writer thread only
+	 */
+	protected boolean receivedToEmpty = false;
+	protected MemoryBudget budget;
+	protected int highWatermark = 0;
+	protected int lowWatermark = 0;
+	protected Runnable onHigh;
+	protected Runnable onDrained;
+	private boolean aboveHigh = false;
+	private volatile boolean highPending = false;
+	private volatile boolean drainedPending = false;
+	private volatile PipeSelectionKey selectionKey;
+	protected long reserved = 0;
+	private BufferAllocator overflowAllocator;
+	private int overflowSegmentSize;
+	private long overflowLimit;
+	private boolean overflowFailed = false;
+	private long spilledSize = 0;
+	private final Set<ByteBuffer> spilled = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+	/**
+	 * segments which views returned by {@link #peekSegments()} may refer to
+	 */
+	private final Set<ByteBuffer> peeked = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+	/**
+	 * segment of chunk which {@link #transferTo} writes to channel outside of lock
+	 */
+	private ByteBuffer transferring;
+	/**
+	 * disk segment disposed while its chunk is transferred, unmapped when transfer ends
+	 */
+	private ByteBuffer retired;
 
 
 
@@ -79,18 +130,32 @@ public class PipedInputStream extends InputStream
 		name = "pIS-" + id;
 		if ((maximumSize < initialSize && maximumSize > 0) || initialSize < 0 || maximumSize < 0 || stepSize < 0)
 			throw new IllegalArgumentException("illegal maximum or initial size");
-		putBuffers = new LinkedList<ByteBuffer>();
+		putBuffers = new ArrayDeque<ByteBuffer>();
 
 		initialBuffer = allocator.allocateExact(initialSize);
-		putBuffers.add(initialBuffer);
-		getBuffer = initialBuffer.duplicate();
-		putBuffer = initialBuffer.duplicate();
+		addSegment(initialBuffer);
+		getBuffer = view(readViews, initialBuffer);
+		putBuffer = view(writeViews, initialBuffer);
 		getBuffer.limit(0);
 
 		currentSize = initialSize;
 
-		LogUtils.trace(log, "pipe created with buffer initial size {0} maximum size {1} step size {2}", initialSize,
-				maximumSize, stepSize);
+		if (log.isTraceEnabled())
+			LogUtils.trace(log, "pipe created with buffer initial size {0} maximum size {1} step size {2}",
+					initialSize, maximumSize, stepSize);
+	}
+
+	/**
+	 * Constructor for pipe implementations which manage their own storage.
+	 *
+	 * @param allocator allocator to take pipe memory from
+	 */
+	protected PipedInputStream(BufferAllocator allocator)
+	{
+		super();
+		this.allocator = allocator;
+		id = counter.incrementAndGet();
+		name = "pIS-" + id;
 	}
 
 	public PipedInputStream()
@@ -105,7 +170,14 @@ public class PipedInputStream extends InputStream
 	}
 
 	@Override
-	public synchronized int read() throws IOException
+	public int read() throws IOException
+	{
+		int result = readByte();
+		runWatermarkCallbacks();
+		return result;
+	}
+
+	private synchronized int readByte() throws IOException
 	{
 		if (log.isTraceEnabled())
 			trace("Reading one byte...");
@@ -134,10 +206,8 @@ public class PipedInputStream extends InputStream
 			{
 				ret = getBuffer.get() & 0xFF;
                 available--;
-				if (putBuffers.getFirst() == putBuffers.getLast())
-					if (putBuffer.limit() < getBuffer.position())
-						putBuffer.limit(getBuffer.position());
-				this.notifyAll();
+                checkLowWatermark();
+				notifyOutput();
                 return ret;
 			}
 		}
@@ -147,26 +217,37 @@ public class PipedInputStream extends InputStream
 	{
 		if (getBuffer.position() == getBuffer.capacity() && putBuffers.size() > 1)
 		{
-			if (putBuffers.getFirst() != putBuffers.getLast())
-				currentSize -= getBuffer.capacity();
+			if (!spilled.isEmpty() && spilled.contains(putBuffers.getFirst())
+					&& putBuffers.getFirst() != putBuffers.getLast())
+				disposeSpilled(removeFirstSegment());
+			else
+			{
+				if (putBuffers.getFirst() != putBuffers.getLast())
+					currentSize -= getBuffer.capacity();
 
-            if(putBuffers.getFirst() == putBuffers.getLast() || putBuffers.getFirst() == initialBuffer)
-                putBuffers.removeFirst();
-            else
-            {
-                allocator.dispose(putBuffers.removeFirst());
-                stepSize/=modifier;
-            }
+	            if(putBuffers.getFirst() == putBuffers.getLast() || putBuffers.getFirst() == initialBuffer)
+	                removeFirstSegment();
+	            else
+	            {
+	                ByteBuffer disposed = removeFirstSegment();
+	                forgetViews(disposed);
+	                if (budget != null)
+	                {
+	                    budget.release(disposed.capacity());
+	                    reserved -= disposed.capacity();
+	                }
+	                dispose(allocator, disposed);
+	                stepSize/=modifier;
+	            }
+			}
 
-			getBuffer = putBuffers.getFirst().duplicate();
-			getBuffer.position(0);
+			getBuffer = view(readViews, putBuffers.getFirst());
 			if (putBuffers.getFirst() == putBuffers.getLast())
 			{
 				getBuffer.limit(putBuffer.position());
 			}
-			else
-				getBuffer.limit(getBuffer.capacity());
-			LogUtils.trace(log, "getData switch buffer:: \n{0}", this);
+			if (log.isTraceEnabled())
+				LogUtils.trace(log, "getData switch buffer:: \n{0}", this);
 			return true;
 		}
 		try
@@ -175,8 +256,12 @@ public class PipedInputStream extends InputStream
 				return false;
 			if (wait)
 			{
-				LogUtils.trace(log, "{0} wait new data", name);
+				if (log.isTraceEnabled())
+					trace("wait new data");
 				this.wait(waitTimeout);
+				// segments may be freed by owner of closed pipe
+				if (closedByReader)
+					throw new IOException("Pipe closed");
 			}
 			return true;
 		}
@@ -186,7 +271,15 @@ public class PipedInputStream extends InputStream
 		}
 	}
 
-	public synchronized int read(byte b[], int off, int len) throws IOException
+	@Override
+	public int read(byte b[], int off, int len) throws IOException
+	{
+		int result = readBytes(b, off, len);
+		runWatermarkCallbacks();
+		return result;
+	}
+
+	private synchronized int readBytes(byte b[], int off, int len) throws IOException
 	{
 		if (log.isTraceEnabled())
 			trace("Read " + len + " byles");
@@ -212,6 +305,7 @@ public class PipedInputStream extends InputStream
 				int clen = Math.min(remaining, len);
 				getBuffer.get(b, off, clen);
                 available-=clen;
+                checkLowWatermark();
 				off += clen;
 				len -= clen;
 				rlen += clen;
@@ -248,53 +342,458 @@ public class PipedInputStream extends InputStream
 
 	private void notifyOutput()
 	{
-		if (putBuffers.getFirst() == putBuffers.getLast())
+		if (available == 0 && putBuffers.size() == 1)
+			rewind();
+		else if (putBuffers.getFirst() == putBuffers.getLast())
 			if (putBuffer.limit() < getBuffer.position())
 				putBuffer.limit(getBuffer.position());
 		this.notifyAll();
+		signalSelector();
+	}
+
+	/**
+	 * reader has consumed everything from the only segment, start from its beginning so pipe doesn't grow
+	 */
+	private void rewind()
+	{
+		getBuffer.position(0);
+		getBuffer.limit(0);
+		putBuffer.clear();
 	}
 
 	@Override
-	public synchronized int read(byte[] bytes) throws IOException
+	public int read(byte[] bytes) throws IOException
 	{
 		return read(bytes, 0, bytes.length);
 	}
 
-	public synchronized void receive(int b) throws IOException
+	/**
+	 * Read available bytes to buffer, wait if pipe is empty.
+	 *
+	 * @param dst destination buffer
+	 * @return count of bytes read or -1 on end of stream
+	 * @throws IOException on timeout or if pipe is closed
+	 */
+	@Override
+	public int read(ByteBuffer dst) throws IOException
+	{
+		int result = readBuffer(dst);
+		runWatermarkCallbacks();
+		return result;
+	}
+
+	private synchronized int readBuffer(ByteBuffer dst) throws IOException
+	{
+		if (log.isTraceEnabled())
+			trace("Read " + dst.remaining() + " bytes to buffer");
+		if (!dst.hasRemaining())
+			return 0;
+		if (!connected)
+			throw new IOException("Pipe not connected");
+		else if (closedByReader)
+			throw new IOException("Pipe closed");
+		long deadline = waitTimeout > 0 ? System.currentTimeMillis() + waitTimeout : 0;
+		int rlen = 0;
+		for (;;)
+		{
+			int remaining = getBuffer.remaining();
+			if (remaining > 0)
+			{
+				int clen = Math.min(remaining, dst.remaining());
+				copy(getBuffer, dst, clen);
+				available -= clen;
+				checkLowWatermark();
+				rlen += clen;
+				notifyOutput();
+				if (!dst.hasRemaining())
+					return rlen;
+			}
+			else
+			{
+				if (!getData(rlen == 0))
+					return rlen == 0 ? -1 : rlen;
+				if (getBuffer.remaining() == 0)
+				{
+					if (rlen > 0)
+						return rlen;
+					if (deadline > 0 && System.currentTimeMillis() >= deadline)
+						throw new IOException("Read timeout");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write all data of the pipe to channel until end of stream. Data is written directly from pipe segments without
+	 * copying to intermediate arrays. Must be called by reader thread.
+	 *
+	 * @param target channel to write to
+	 * @return count of transferred bytes
+	 * @throws IOException on channel error, timeout or if pipe is closed
+	 */
+	public long transferTo(WritableByteChannel target) throws IOException
+	{
+		long total = 0;
+		ByteBuffer chunk;
+		try
+		{
+			while ((chunk = nextChunk()) != null)
+			{
+				int count = chunk.remaining();
+				while (chunk.hasRemaining())
+					target.write(chunk);
+				consume(count);
+				runWatermarkCallbacks();
+				total += count;
+			}
+		}
+		finally
+		{
+			endTransfer();
+		}
+		return total;
+	}
+
+	/**
+	 * Read-only views of data available in the pipe, in reading order. Data is not consumed, views are valid until
+	 * next read. Segments under views aren't freed explicitly, they are left to garbage collector.
+	 *
+	 * @return views of pipe segments, empty if no data available or pipe is closed
+	 */
+	public synchronized ByteBuffer[] peekSegments()
+	{
+		if (closedByReader)
+			return new ByteBuffer[0];
+		List<ByteBuffer> views = new ArrayList<ByteBuffer>(putBuffers.size());
+		if (getBuffer.hasRemaining())
+		{
+			views.add(getBuffer.slice().asReadOnlyBuffer());
+			peeked.add(putBuffers.getFirst());
+		}
+		if (putBuffers.size() > 1)
+		{
+			Iterator<ByteBuffer> iterator = putBuffers.iterator();
+			iterator.next();
+			while (iterator.hasNext())
+			{
+				ByteBuffer segment = iterator.next();
+				ByteBuffer view = segment.asReadOnlyBuffer();
+				view.clear();
+				if (!iterator.hasNext())
+					view.limit(putBuffer.position());
+				if (view.hasRemaining())
+				{
+					views.add(view);
+					peeked.add(segment);
+				}
+			}
+		}
+		return views.toArray(new ByteBuffer[views.size()]);
+	}
+
+	/**
+	 * wait for data and return view of readable part of current segment. View is reused for the segment, it is
+	 * valid until next call
+	 *
+	 * @return view or null on end of stream
+	 */
+	private synchronized ByteBuffer nextChunk() throws IOException
+	{
+		if (!connected)
+			throw new IOException("Pipe not connected");
+		long deadline = waitTimeout > 0 ? System.currentTimeMillis() + waitTimeout : 0;
+		for (;;)
+		{
+			if (closedByReader)
+				throw new IOException("Pipe closed");
+			if (getBuffer.hasRemaining())
+			{
+				transferring = putBuffers.getFirst();
+				ByteBuffer chunk = view(chunkViews, transferring);
+				chunk.limit(getBuffer.limit());
+				chunk.position(getBuffer.position());
+				return chunk;
+			}
+			if (!getData(true))
+				return null;
+			// writer may wake us after adding segment, next getData switches to it
+			if (deadline > 0 && !getBuffer.hasRemaining() && System.currentTimeMillis() >= deadline)
+				throw new IOException("Read timeout");
+		}
+	}
+
+	private synchronized void endTransfer()
+	{
+		transferring = null;
+		if (retired != null)
+		{
+			dispose(overflowAllocator, retired);
+			retired = null;
+		}
+	}
+
+	private synchronized void consume(int count)
+	{
+		endTransfer();
+		if (closedByReader)
+			return;
+		getBuffer.position(getBuffer.position() + count);
+		available -= count;
+		checkLowWatermark();
+		notifyOutput();
+	}
+
+	/**
+	 * copy count bytes between buffers without creating new buffer objects
+	 */
+	protected static void copy(ByteBuffer from, ByteBuffer to, int count)
+	{
+		if (from.remaining() == count)
+		{
+			to.put(from);
+			return;
+		}
+		int limit = from.limit();
+		from.limit(from.position() + count);
+		to.put(from);
+		from.limit(limit);
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return !closedByReader;
+	}
+
+	public void receive(int b) throws IOException
+	{
+		while (!receiveByte(b))
+			runWatermarkCallbacks();
+	}
+
+	/**
+	 * @return false if byte isn't received and writer has to run watermark callbacks outside of lock before waiting
+	 */
+	private synchronized boolean receiveByte(int b) throws IOException
 	{
 		checkStateForReceive();
+		receivedToEmpty = false;
 		for (;;)
 		{
 			if (putBuffer.remaining() == 0)
 			{
-				getPutSpace();
+				if (!getPutSpace())
+					return false;
 				checkStateForReceive();
 			}
 			else
 			{
 				putBuffer.put((byte) (b & 0xFF));
+                receivedToEmpty |= available == 0;
                 available++;
+                checkHighWatermark();
                 if (putBuffers.getFirst() == putBuffers.getLast() && getBuffer.limit() < putBuffer.position())
                 {
                     getBuffer.limit(putBuffer.position());
                 }
                 this.notifyAll();
-				LogUtils.trace(log, "{2} byte received getBuffer:{0} putBuffer:{1}", getBuffer, putBuffer, name);
-				return;
+                signalSelector();
+				if (log.isTraceEnabled())
+					LogUtils.trace(log, "{2} byte received getBuffer:{0} putBuffer:{1}", getBuffer, putBuffer, name);
+				return true;
 			}
 		}
 	}
 
-	public synchronized void receive(byte b[], int off, int len) throws IOException
+	/**
+	 * receive all remaining bytes of buffer, wait if pipe is full
+	 *
+	 * @param src data to receive
+	 * @throws IOException if pipe is closed or wait is interrupted
+	 */
+	public void receive(ByteBuffer src) throws IOException
+	{
+		boolean first = true;
+		while (!receiveBuffer(src, first))
+		{
+			first = false;
+			runWatermarkCallbacks();
+		}
+	}
+
+	/**
+	 * @param first true on first call of receive, false when writer continues after watermark callbacks
+	 * @return false if writer has to run watermark callbacks outside of lock before waiting
+	 */
+	private synchronized boolean receiveBuffer(ByteBuffer src, boolean first) throws IOException
 	{
 		checkStateForReceive();
+		if (first)
+			receivedToEmpty = false;
+		while (src.hasRemaining())
+		{
+			int remaining = putBuffer.remaining();
+			if (remaining == 0)
+			{
+				if (!getPutSpace())
+					return false;
+				checkStateForReceive();
+				continue;
+			}
+			int count = Math.min(remaining, src.remaining());
+			copy(src, putBuffer, count);
+			receivedToEmpty |= available == 0;
+			available += count;
+			checkHighWatermark();
+			if (putBuffers.getFirst() == putBuffers.getLast() && getBuffer.limit() < putBuffer.position())
+			{
+				getBuffer.limit(putBuffer.position());
+			}
+			this.notifyAll();
+			signalSelector();
+			if (log.isTraceEnabled())
+				LogUtils.trace(log, "{2} bytes received getBuffer:{0} putBuffer:{1}", getBuffer, putBuffer, name);
+		}
+		return true;
+	}
+
+	/**
+	 * Receive bytes of buffer which fit into pipe without waiting for reader.
+	 *
+	 * @param src data to receive
+	 * @return count of received bytes, may be 0
+	 * @throws IOException if pipe is closed
+	 */
+	public synchronized int receiveNow(ByteBuffer src) throws IOException
+	{
+		checkStateForReceive();
+		receivedToEmpty = false;
+		int total = 0;
+		while (src.hasRemaining())
+		{
+			int remaining = putBuffer.remaining();
+			if (remaining == 0)
+			{
+				if (!tryGetPutSpace())
+					break;
+				continue;
+			}
+			int count = Math.min(remaining, src.remaining());
+			copy(src, putBuffer, count);
+			receivedToEmpty |= available == 0;
+			available += count;
+			total += count;
+			checkHighWatermark();
+			if (putBuffers.getFirst() == putBuffers.getLast() && getBuffer.limit() < putBuffer.position())
+			{
+				getBuffer.limit(putBuffer.position());
+			}
+		}
+		if (total > 0)
+		{
+			this.notifyAll();
+			signalSelector();
+		}
+		return total;
+	}
+
+	/**
+	 * Read available bytes without waiting. Must be called by reader thread.
+	 *
+	 * @param dst destination buffer
+	 * @return count of bytes read, 0 if pipe is empty or -1 on end of stream
+	 * @throws IOException if pipe is closed
+	 */
+	public int readNow(ByteBuffer dst) throws IOException
+	{
+		int ready = available();
+		if (ready == 0 || !dst.hasRemaining())
+			return 0;
+		if (ready < 0)
+			return -1;
+		return read(dst);
+	}
+
+	/**
+	 * @return true if read doesn't wait: pipe has data, reached end of stream or is closed
+	 */
+	public boolean isReadable()
+	{
+		try
+		{
+			return available() != 0;
+		}
+		catch (IOException e)
+		{
+			return true;
+		}
+	}
+
+	/**
+	 * Put space is prepared the same way {@link #receiveNow} does it, so true means it receives at least one byte.
+	 *
+	 * @return true if at least one byte can be received without waiting or pipe is closed
+	 */
+	public synchronized boolean isWritable()
+	{
+		return closedByReader || closedByWriter || putBuffer.remaining() > 0 || tryGetPutSpace();
+	}
+
+	PipeSelectionKey getSelectionKey()
+	{
+		return selectionKey;
+	}
+
+	void setSelectionKey(PipeSelectionKey selectionKey)
+	{
+		this.selectionKey = selectionKey;
+	}
+
+	/**
+	 * tell selector that pipe readiness may be changed
+	 */
+	protected void signalSelector()
+	{
+		PipeSelectionKey key = selectionKey;
+		if (key != null)
+			key.signal();
+	}
+
+	public void receive(byte b[], int off, int len) throws IOException
+	{
+		boolean first = true;
+		for (;;)
+		{
+			int count = receiveBytes(b, off, len, first);
+			off += count;
+			len -= count;
+			if (len == 0)
+				return;
+			first = false;
+			runWatermarkCallbacks();
+		}
+	}
+
+	/**
+	 * @param first true on first call of receive, false when writer continues after watermark callbacks
+	 * @return count of received bytes, less than len if writer has to run watermark callbacks outside of lock before
+	 *         waiting
+	 */
+	private synchronized int receiveBytes(byte b[], int off, int len, boolean first) throws IOException
+	{
+		checkStateForReceive();
+		if (first)
+			receivedToEmpty = false;
+		int total = len;
 		for (;;)
 		{
-			LogUtils.trace(log, "{0} try to write bytes {3} offset {1} len {2}", name, off, len,new String(b,off,len));
+			if (log.isTraceEnabled())
+				trace("try to write bytes offset " + off + " len " + len);
 			int remaining = putBuffer.remaining();
 			if (remaining == 0)
 			{
-				getPutSpace();
+				if (!getPutSpace())
+					return total - len;
 				checkStateForReceive();
 			}
 			else
@@ -304,12 +803,16 @@ public class PipedInputStream extends InputStream
 					putBuffer.put(b, off, remaining);
 					off += remaining;
 					len -= remaining;
+                    receivedToEmpty |= available == 0;
                     available+=remaining;
+                    checkHighWatermark();
 				}
 				else
 				{
 					putBuffer.put(b, off, len);
+                    receivedToEmpty |= available == 0;
                     available += len;
+                    checkHighWatermark();
 					len = 0;
 				}
 
@@ -318,9 +821,11 @@ public class PipedInputStream extends InputStream
                     getBuffer.limit(putBuffer.position());
                 }
                 this.notifyAll();
-				LogUtils.trace(log, "{2} byte received getBuffer:{0} putBuffer:{1}", getBuffer, putBuffer, name);
+                signalSelector();
+				if (log.isTraceEnabled())
+					LogUtils.trace(log, "{2} byte received getBuffer:{0} putBuffer:{1}", getBuffer, putBuffer, name);
 				if (len == 0)
-					return;
+					return total;
 			}
 
 		}
@@ -331,14 +836,18 @@ public class PipedInputStream extends InputStream
 		src.connect(this);
 	}
 
-	private void getPutSpace() throws IOException
+	/**
+	 * get new put space, wait for reader if pipe is full
+	 *
+	 * @return false if writer is going to wait with pending high watermark callback. Consumers must know it before
+	 *         writer returns, so writer runs callback outside of lock and tries again
+	 */
+	private boolean getPutSpace() throws IOException
 	{
-		if (log.isTraceEnabled())
-			trace("Get space");
-		if (putBuffers.getFirst() == putBuffers.getLast()
-				&& (putBuffer.limit() < putBuffer.capacity() || putBuffers.size() > 1))
+		if (!tryGetPutSpace())
 		{
-
+			if (highPending && onHigh != null)
+				return false;
 			try
 			{
 				this.wait();
@@ -347,33 +856,240 @@ public class PipedInputStream extends InputStream
 			{
 				throw new IOException("Wait buffer interrupting");
 			}
-			return;
 		}
-		if (!putBuffers.contains(initialBuffer))
+		return true;
+	}
+
+	/**
+	 * wrapped pipe reached reader position, writer has to wait for reader
+	 */
+	private boolean isFull()
+	{
+		return putBuffers.getFirst() == putBuffers.getLast()
+				&& (putBuffer.limit() < putBuffer.capacity() || putBuffers.size() > 1);
+	}
+
+	/**
+	 * get new put space without waiting
+	 *
+	 * @return false if writer has to wait for reader, otherwise put buffer has space for at least one byte
+	 */
+	private boolean tryGetPutSpace()
+	{
+		if (log.isTraceEnabled())
+			trace("Get space");
+		if (available == 0 && putBuffers.size() == 1)
+		{
+			rewind();
+			return true;
+		}
+		if (isFull())
+			return spillWrapped();
+		if (initialUses == 0)
 		{
-			putBuffers.addLast(initialBuffer);
-			putBuffer = initialBuffer.duplicate();
+			addSegment(initialBuffer);
+			putBuffer = view(writeViews, initialBuffer);
 			currentSize += putBuffer.capacity();
-			LogUtils.trace(log, "{0} use initial buffer", name);
-			return;
+			if (log.isTraceEnabled())
+				trace("use initial buffer");
+			return true;
 		}
-		if (maximumSize > currentSize || maximumSize == 0)
+		int newSize = maximumSize == 0 ? stepSize : Math.min(maximumSize - currentSize, stepSize);
+		if ((maximumSize > currentSize || maximumSize == 0) && reserve(newSize))
 		{
-			LogUtils.trace(log, "{0} create new buffer", name);
-			ByteBuffer newBuffer = allocator.allocate(Math.min(maximumSize - currentSize, stepSize));
+			if (log.isTraceEnabled())
+				trace("create new buffer");
+			ByteBuffer newBuffer = allocator.allocate(newSize);
+            if (budget != null && newBuffer.capacity() != newSize)
+            {
+                budget.forceReserve(newBuffer.capacity() - newSize);
+                reserved += newBuffer.capacity() - newSize;
+            }
             stepSize*=modifier;
-			putBuffers.addLast(newBuffer);
-			putBuffer = newBuffer.duplicate();
+			addSegment(newBuffer);
+			putBuffer = view(writeViews, newBuffer);
 			currentSize += putBuffer.capacity();
-			return;
+			return true;
 		}
-		LogUtils.trace(log, "{0} use first buffer", name);
+		// memory freed by reader in first buffer is used before disk
+		if (getBuffer.position() == 0)
+			return spill();
+		if (log.isTraceEnabled())
+			trace("use first buffer");
 		ByteBuffer firstBuffer = putBuffers.getFirst();
-		putBuffers.addLast(firstBuffer);
-		putBuffer = firstBuffer.duplicate();
-		putBuffer.position(0);
+		addSegment(firstBuffer);
+		putBuffer = view(writeViews, firstBuffer);
 		putBuffer.limit(getBuffer.position());
 		//System.out.println("======= getPutSpace ======== \n"+this);
+		return true;
+	}
+
+	private void addSegment(ByteBuffer segment)
+	{
+		putBuffers.addLast(segment);
+		if (segment == initialBuffer)
+			initialUses++;
+	}
+
+	private ByteBuffer removeFirstSegment()
+	{
+		ByteBuffer segment = putBuffers.removeFirst();
+		if (segment == initialBuffer)
+			initialUses--;
+		return segment;
+	}
+
+	/**
+	 * cleared view of segment, views are created once per segment
+	 */
+	private static ByteBuffer view(Map<ByteBuffer, ByteBuffer> views, ByteBuffer segment)
+	{
+		ByteBuffer view = views.get(segment);
+		if (view == null)
+		{
+			view = segment.duplicate();
+			views.put(segment, view);
+		}
+		view.clear();
+		return view;
+	}
+
+	/**
+	 * give segment back to allocator, segment which peeked view may refer to is left to garbage collector
+	 */
+	private void dispose(BufferAllocator owner, ByteBuffer segment)
+	{
+		if (peeked.remove(segment))
+			owner.detach(segment);
+		else
+			owner.dispose(segment);
+	}
+
+	private void forgetViews(ByteBuffer segment)
+	{
+		readViews.remove(segment);
+		writeViews.remove(segment);
+		chunkViews.remove(segment);
+	}
+
+	/**
+	 * append segment mapped to temporary file instead of waiting for reader
+	 *
+	 * @return false if no disk segment could be allocated
+	 */
+	private boolean spill()
+	{
+		ByteBuffer segment = allocateSpilled(overflowSegmentSize);
+		if (segment == null)
+			return false;
+		addSegment(segment);
+		putBuffer = view(writeViews, segment);
+		return true;
+	}
+
+	/**
+	 * spill when writer wrapped into first segment and reached reader position. Reader can't skip from wrapped
+	 * part of first segment to a following one, so the wrapped bytes are moved to the disk segment instead.
+	 * Reader already moved past first segment has freed it to its capacity, so pipe is full only if it has one
+	 * segment and then writer waits
+	 *
+	 * @return false if writer has to wait for reader
+	 */
+	private boolean spillWrapped()
+	{
+		if (putBuffers.size() == 1)
+			return false;
+		ByteBuffer wrappedPart = putBuffer;
+		ByteBuffer segment = allocateSpilled(Math.max(overflowSegmentSize, wrappedPart.position()));
+		if (segment == null)
+			return false;
+		wrappedPart.flip();
+		if (putBuffers.removeLast() == initialBuffer)
+			initialUses--;
+		addSegment(segment);
+		putBuffer = view(writeViews, segment);
+		putBuffer.put(wrappedPart);
+		return true;
+	}
+
+	/**
+	 * @return disk segment or null if overflow is disabled, its limit is reached or file can't be mapped. After
+	 *         first mapping failure overflow is disabled until {@link #setOverflow} is called again
+	 */
+	private ByteBuffer allocateSpilled(int size)
+	{
+		if (overflowAllocator == null || overflowFailed
+				|| (overflowLimit > 0 && spilledSize + size > overflowLimit))
+			return null;
+		ByteBuffer segment;
+		try
+		{
+			segment = overflowAllocator.allocate(size);
+		}
+		catch (RuntimeException e)
+		{
+			// don't try and log on every wait, disk won't get better soon
+			overflowFailed = true;
+			LogUtils.warn(log, e, "{0} can''t spill to disk, overflow is disabled, wait for reader", name);
+			return null;
+		}
+		if (log.isTraceEnabled())
+			trace("spill new segment, spilled " + spilledSize + " bytes");
+		spilled.add(segment);
+		spilledSize += segment.capacity();
+		return segment;
+	}
+
+	private void disposeSpilled(ByteBuffer segment)
+	{
+		spilled.remove(segment);
+		forgetViews(segment);
+		spilledSize -= segment.capacity();
+		// transferTo writes its chunk outside of lock, unmap the segment when transfer ends
+		if (segment == transferring)
+			retired = segment;
+		else
+			dispose(overflowAllocator, segment);
+	}
+
+	/**
+	 * Enable spilling data to disk when pipe can't grow in memory, so writer doesn't wait for slow reader.
+	 *
+	 * @param overflowAllocator allocator of disk segments, usually {@link MappedBufferAllocator}, null disables
+	 *                          overflow
+	 * @param segmentSize       size of one disk segment
+	 * @param limit             maximum bytes spilled to disk, 0 for unlimited. Writer waits when limit is reached
+	 */
+	public synchronized void setOverflow(BufferAllocator overflowAllocator, int segmentSize, long limit)
+	{
+		if (overflowAllocator != null && segmentSize <= 0)
+			throw new IllegalArgumentException("illegal overflow segment size " + segmentSize);
+		this.overflowAllocator = overflowAllocator;
+		this.overflowSegmentSize = segmentSize;
+		this.overflowLimit = limit;
+		this.overflowFailed = false;
+	}
+
+	/**
+	 * @return bytes of disk segments held by the pipe
+	 */
+	public synchronized long getSpilledSize()
+	{
+		return spilledSize;
+	}
+
+	private boolean reserve(int size)
+	{
+		if (budget == null)
+			return true;
+		if (!budget.tryReserve(reserved, size))
+		{
+			if (log.isTraceEnabled())
+				trace("memory budget exhausted: " + budget);
+			return false;
+		}
+		reserved += size;
+		return true;
 	}
 
 	private void checkStateForReceive() throws IOException {
@@ -386,10 +1102,98 @@ public class PipedInputStream extends InputStream
         }
     }
 
+	/**
+	 * Set flow control watermarks. When buffered data reaches high watermark onHigh callback is run, when reader
+	 * drains pipe to low watermark after that onDrained callback is run. Callbacks are run by writer and reader
+	 * threads outside of pipe lock, writer going to wait for free space runs onHigh before it waits.
+	 *
+	 * @param high buffered bytes to run onHigh, 0 disables watermarks
+	 * @param low  buffered bytes to run onDrained, must be less than high
+	 */
+	public synchronized void setWatermarks(int high, int low)
+	{
+		if (high < 0 || low < 0 || (high > 0 && low >= high))
+			throw new IllegalArgumentException("illegal watermarks high " + high + " low " + low);
+		this.highWatermark = high;
+		this.lowWatermark = low;
+	}
+
+	public int getHighWatermark()
+	{
+		return highWatermark;
+	}
+
+	public int getLowWatermark()
+	{
+		return lowWatermark;
+	}
+
+	public void setOnHigh(Runnable onHigh)
+	{
+		this.onHigh = onHigh;
+	}
+
+	public void setOnDrained(Runnable onDrained)
+	{
+		this.onDrained = onDrained;
+	}
+
+	private void checkHighWatermark()
+	{
+		if (highWatermark > 0 && !aboveHigh && available >= highWatermark)
+		{
+			aboveHigh = true;
+			highPending = true;
+		}
+	}
+
+	private void checkLowWatermark()
+	{
+		if (aboveHigh && available <= lowWatermark)
+		{
+			aboveHigh = false;
+			drainedPending = true;
+		}
+	}
+
+	/**
+	 * run watermark callbacks registered under pipe lock, called without lock
+	 */
+	protected void runWatermarkCallbacks()
+	{
+		if (!highPending && !drainedPending)
+			return;
+		boolean high;
+		boolean drained;
+		synchronized (this)
+		{
+			high = highPending;
+			drained = drainedPending;
+			highPending = false;
+			drainedPending = false;
+		}
+		if (high && onHigh != null)
+			onHigh.run();
+		if (drained && onDrained != null)
+			onDrained.run();
+	}
+
+	/**
+	 * Check that last receive made pipe non-empty, i.e. reader had consumed all data before it. Must be called by
+	 * writer thread.
+	 *
+	 * @return true if reader should be notified about new data
+	 */
+	boolean isReceivedToEmpty()
+	{
+		return receivedToEmpty;
+	}
+
 	public synchronized void receivedLast()
 	{
 		closedByWriter = true;
 		this.notifyAll();
+		signalSelector();
 	}
 
 	@Override
@@ -397,13 +1201,24 @@ public class PipedInputStream extends InputStream
 	{
 
 		closedByReader = true;
+		releaseBudget();
+		for (ByteBuffer segment : spilled.toArray(new ByteBuffer[spilled.size()]))
+			disposeSpilled(segment);
+		// owner frees the rest when closed pipe is released, except segments which may be touched outside of lock
+		if (transferring != null)
+			allocator.detach(transferring);
+		for (ByteBuffer segment : peeked)
+			allocator.detach(segment);
+		peeked.clear();
 		this.notifyAll();
+		signalSelector();
 	}
 
 	@Override
 	public synchronized int available() throws IOException
 	{
-        LogUtils.trace(log,"available()::state - {0} / available {1}",this,available);
+		if (log.isTraceEnabled())
+			LogUtils.trace(log, "available()::state - {0} / available {1}", this, available);
 		if (closedByReader)
 			return -1;
 		if(available ==0 && closedByWriter)
@@ -423,6 +1238,49 @@ public class PipedInputStream extends InputStream
 		log.trace(name + ": " + msg);
 	}
 
+	/**
+	 * Make pipe draw memory from shared budget. Memory already held by the pipe is reserved at once.
+	 *
+	 * @param budget budget or null to detach pipe from budget
+	 */
+	public synchronized void setBudget(MemoryBudget budget)
+	{
+		releaseBudget();
+		this.budget = budget;
+		if (budget != null)
+		{
+			budget.register();
+			reserved = getAllocatedSize();
+			budget.forceReserve((int) reserved);
+		}
+	}
+
+	public MemoryBudget getBudget()
+	{
+		return budget;
+	}
+
+	/**
+	 * @return bytes of memory held by the pipe
+	 */
+	protected int getAllocatedSize()
+	{
+		return currentSize;
+	}
+
+	/**
+	 * return all memory reserved by the pipe to budget
+	 */
+	protected synchronized void releaseBudget()
+	{
+		if (budget == null)
+			return;
+		budget.release(reserved);
+		budget.unregister();
+		reserved = 0;
+		budget = null;
+	}
+
 	public void setWaitTimeout(long waitTimeout) {
 		this.waitTimeout = waitTimeout;
 	}
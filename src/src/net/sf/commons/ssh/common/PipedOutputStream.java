@@ -4,6 +4,9 @@
 package net.sf.commons.ssh.common;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -11,11 +14,18 @@ import org.apache.commons.logging.LogFactory;
 /**
  * @author Konstantin Aleksandrov (mail@aleksandrov.pro)
  */
-public class PipedOutputStream extends OutputStream
+public class PipedOutputStream extends OutputStream implements GatheringByteChannel
 {
     private static final Log log = LogFactory.getLog(PipedOutputStream.class);
 
     private Runnable onWrite = null;
+    private volatile Runnable onClose = null;
+
+    private boolean coalesce = false;
+    private long notifyInterval = 0;
+    private int notifyThreshold = 0;
+    private long pendingBytes = 0;
+    private long lastNotify = 0;
 
     protected String name = "pOS";
 
@@ -49,8 +59,7 @@ public class PipedOutputStream extends OutputStream
             trace("Write one byte");
 
         sink.receive(b);
-        if(onWrite!=null)
-            onWrite.run();
+        written(1, sink.isReceivedToEmpty());
     }
 
     @Override
@@ -60,8 +69,135 @@ public class PipedOutputStream extends OutputStream
             trace("Write " + len + " bytes");
 
         sink.receive(b, off, len);
-        if(onWrite!=null)
-            onWrite.run();
+        written(len, sink.isReceivedToEmpty());
+    }
+
+    /**
+     * Write all remaining bytes of buffer to pipe, wait if pipe is full.
+     *
+     * @param src data to write
+     * @return count of written bytes
+     * @throws IOException if pipe is closed
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        if (log.isTraceEnabled())
+            trace("Write " + src.remaining() + " bytes from buffer");
+
+        int count = src.remaining();
+        sink.receive(src);
+        written(count, sink.isReceivedToEmpty());
+        return count;
+    }
+
+    /**
+     * Write bytes which fit into pipe without waiting for reader.
+     *
+     * @param src data to write
+     * @return count of written bytes, may be 0
+     * @throws IOException if pipe is closed
+     * @see PipeSelector
+     */
+    public int writeNow(ByteBuffer src) throws IOException
+    {
+        int count = sink.receiveNow(src);
+        if (count > 0)
+            written(count, sink.isReceivedToEmpty());
+        return count;
+    }
+
+    /**
+     * @return pipe this stream writes to
+     */
+    public PipedInputStream getSink()
+    {
+        return sink;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+    {
+        if (offset < 0 || length < 0 || offset > srcs.length - length)
+            throw new IndexOutOfBoundsException();
+        if (log.isTraceEnabled())
+            trace("Gather write from " + length + " buffers");
+
+        long count = 0;
+        // every receive resets the edge, reader must be notified if any buffer was put to drained pipe
+        boolean toEmpty = false;
+        for (int i = offset; i < offset + length; i++)
+        {
+            count += srcs[i].remaining();
+            sink.receive(srcs[i]);
+            toEmpty |= sink.isReceivedToEmpty();
+        }
+        written(count, toEmpty);
+        return count;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException
+    {
+        return write(srcs, 0, srcs.length);
+    }
+
+    /**
+     * run onWrite callback according to notification policy
+     *
+     * @param count   count of bytes written
+     * @param toEmpty write put data to pipe drained by reader
+     */
+    private void written(long count, boolean toEmpty)
+    {
+        sink.runWatermarkCallbacks();
+        Runnable callback = onWrite;
+        if (callback == null)
+            return;
+        if (!coalesce)
+        {
+            callback.run();
+            return;
+        }
+        pendingBytes += count;
+        boolean notify = toEmpty;
+        if (!notify && notifyThreshold > 0 && pendingBytes >= notifyThreshold)
+            notify = true;
+        if (!notify && notifyInterval > 0 && System.nanoTime() - lastNotify >= notifyInterval)
+            notify = true;
+        if (!notify)
+            return;
+        pendingBytes = 0;
+        if (notifyInterval > 0)
+            lastNotify = System.nanoTime();
+        callback.run();
+    }
+
+    /**
+     * Coalesce onWrite notifications. Callback is run when write makes drained pipe non-empty. While reader didn't
+     * drain the pipe callback is run again only after threshold bytes are written or interval elapsed since last
+     * notification, both are checked on write. So reader notified by callback should read until pipe is empty.
+     *
+     * @param coalesce       false to run callback on every write
+     * @param intervalMillis minimum interval between notifications of non-drained pipe, 0 to disable
+     * @param thresholdBytes bytes written since last notification to notify again, 0 to disable
+     */
+    public void setNotifyCoalescing(boolean coalesce, long intervalMillis, int thresholdBytes)
+    {
+        this.coalesce = coalesce;
+        this.notifyInterval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.notifyThreshold = thresholdBytes;
+    }
+
+    public boolean isNotifyCoalescing()
+    {
+        return coalesce;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return sink != null && !sink.closedByWriter && !sink.closedByReader;
     }
 
     @Override
@@ -69,6 +205,10 @@ public class PipedOutputStream extends OutputStream
     {
         if (sink != null)
             sink.receivedLast();
+        Runnable callback = onClose;
+        onClose = null;
+        if (callback != null)
+            callback.run();
     }
 
     @Override
@@ -91,4 +231,17 @@ public class PipedOutputStream extends OutputStream
     {
         this.onWrite = onWrite;
     }
+
+    public Runnable getOnClose()
+    {
+        return onClose;
+    }
+
+    /**
+     * @param onClose callback run once on first {@link #close()}
+     */
+    public void setOnClose(Runnable onClose)
+    {
+        this.onClose = onClose;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,587 @@
+package net.sf.commons.ssh.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single producer / single consumer pipe over a fixed size ring buffer.
+ * <p/>
+ * Exactly one thread may write (through {@link PipedOutputStream}) and exactly one thread may read at a time.
+ * Threads park only when the ring is empty (reader) or full (writer) and are unparked by the opposite side.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class RingPipedInputStream extends PipedInputStream
+{
+    private static final Log log = LogFactory.getLog(RingPipedInputStream.class);
+
+    private final ByteBuffer ring;
+    private final ByteBuffer readView;
+    private final ByteBuffer writeView;
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * total count of bytes read, written by consumer only
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * total count of bytes written, written by producer only
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * true after high watermark is reached until pipe is drained to low watermark
+     */
+    private final AtomicBoolean aboveHigh = new AtomicBoolean();
+
+    private volatile Thread waitingReader;
+    private volatile Thread waitingWriter;
+
+    /**
+     * count of threads copying to or from ring, ring under them is left to garbage collector on close
+     */
+    private final AtomicInteger copying = new AtomicInteger();
+    private volatile boolean peeked = false;
+
+    /**
+     * @param capacity  ring size, rounded up to the nearest power of two
+     * @param allocator allocator to take ring memory from
+     */
+    public RingPipedInputStream(int capacity, BufferAllocator allocator)
+    {
+        super(allocator);
+        if (capacity <= 0)
+            throw new IllegalArgumentException("illegal ring capacity " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        ring = allocator.allocateExact(size);
+        readView = ring.duplicate();
+        writeView = ring.duplicate();
+        if (log.isTraceEnabled())
+            LogUtils.trace(log, "ring pipe {0} created with capacity {1}", name, size);
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int getInitialSize()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int getMaximumSize()
+    {
+        return capacity;
+    }
+
+    @Override
+    protected int getAllocatedSize()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        checkStateForRead();
+        for (;;)
+        {
+            long h = head.get();
+            if (tail.get() != h)
+            {
+                int result;
+                enter();
+                try
+                {
+                    result = ring.get((int) (h & mask)) & 0xFF;
+                }
+                finally
+                {
+                    exit();
+                }
+                release(h + 1);
+                return result;
+            }
+            if (!awaitData(h))
+                return -1;
+        }
+    }
+
+    @Override
+    public int read(byte[] bytes) throws IOException
+    {
+        return read(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException
+    {
+        if (b == null)
+            throw new NullPointerException();
+        else if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        else if (len == 0)
+            return 0;
+        checkStateForRead();
+        for (;;)
+        {
+            long h = head.get();
+            int ready = (int) (tail.get() - h);
+            if (ready > 0)
+            {
+                int count = Math.min(ready, len);
+                int position = (int) (h & mask);
+                int first = Math.min(count, capacity - position);
+                enter();
+                try
+                {
+                    readView.clear();
+                    readView.position(position);
+                    readView.get(b, off, first);
+                    if (first < count)
+                    {
+                        readView.clear();
+                        readView.get(b, off + first, count - first);
+                    }
+                }
+                finally
+                {
+                    exit();
+                }
+                release(h + count);
+                return count;
+            }
+            if (!awaitData(h))
+                return -1;
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException
+    {
+        if (!dst.hasRemaining())
+            return 0;
+        checkStateForRead();
+        for (;;)
+        {
+            long h = head.get();
+            int ready = (int) (tail.get() - h);
+            if (ready > 0)
+            {
+                int count = Math.min(ready, dst.remaining());
+                int position = (int) (h & mask);
+                int first = Math.min(count, capacity - position);
+                enter();
+                try
+                {
+                    readView.clear();
+                    readView.position(position);
+                    copy(readView, dst, first);
+                    if (first < count)
+                    {
+                        readView.clear();
+                        copy(readView, dst, count - first);
+                    }
+                }
+                finally
+                {
+                    exit();
+                }
+                release(h + count);
+                return count;
+            }
+            if (!awaitData(h))
+                return -1;
+        }
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException
+    {
+        checkStateForRead();
+        long total = 0;
+        for (;;)
+        {
+            long h = head.get();
+            int ready = (int) (tail.get() - h);
+            if (ready == 0)
+            {
+                if (!awaitData(h))
+                    return total;
+                continue;
+            }
+            int position = (int) (h & mask);
+            int count = Math.min(ready, capacity - position);
+            enter();
+            try
+            {
+                readView.clear();
+                readView.position(position);
+                readView.limit(position + count);
+                while (readView.hasRemaining())
+                    target.write(readView);
+            }
+            finally
+            {
+                exit();
+            }
+            release(h + count);
+            total += count;
+        }
+    }
+
+    @Override
+    public ByteBuffer[] peekSegments()
+    {
+        if (closedByReader)
+            return new ByteBuffer[0];
+        long h = head.get();
+        int ready = (int) (tail.get() - h);
+        if (ready == 0)
+            return new ByteBuffer[0];
+        peeked = true;
+        int position = (int) (h & mask);
+        int first = Math.min(ready, capacity - position);
+        ByteBuffer firstView = ring.asReadOnlyBuffer();
+        firstView.position(position);
+        firstView.limit(position + first);
+        if (first == ready)
+            return new ByteBuffer[]{firstView};
+        ByteBuffer secondView = ring.asReadOnlyBuffer();
+        secondView.limit(ready - first);
+        return new ByteBuffer[]{firstView, secondView};
+    }
+
+    @Override
+    public void receive(int b) throws IOException
+    {
+        checkStateForReceive();
+        for (;;)
+        {
+            long t = tail.get();
+            if (t - head.get() < capacity)
+            {
+                enter();
+                try
+                {
+                    ring.put((int) (t & mask), (byte) (b & 0xFF));
+                }
+                finally
+                {
+                    exit();
+                }
+                publish(t + 1);
+                receivedToEmpty = head.get() >= t;
+                return;
+            }
+            awaitSpace(t);
+        }
+    }
+
+    @Override
+    public void receive(byte b[], int off, int len) throws IOException
+    {
+        checkStateForReceive();
+        long start = tail.get();
+        while (len > 0)
+        {
+            long t = tail.get();
+            int free = capacity - (int) (t - head.get());
+            if (free > 0)
+            {
+                int count = Math.min(free, len);
+                int position = (int) (t & mask);
+                int first = Math.min(count, capacity - position);
+                enter();
+                try
+                {
+                    writeView.clear();
+                    writeView.position(position);
+                    writeView.put(b, off, first);
+                    if (first < count)
+                    {
+                        writeView.clear();
+                        writeView.put(b, off + first, count - first);
+                    }
+                }
+                finally
+                {
+                    exit();
+                }
+                publish(t + count);
+                off += count;
+                len -= count;
+                continue;
+            }
+            awaitSpace(t);
+        }
+        receivedToEmpty = head.get() >= start;
+    }
+
+    @Override
+    public void receive(ByteBuffer src) throws IOException
+    {
+        checkStateForReceive();
+        long start = tail.get();
+        while (src.hasRemaining())
+        {
+            long t = tail.get();
+            int free = capacity - (int) (t - head.get());
+            if (free > 0)
+            {
+                int count = Math.min(free, src.remaining());
+                int position = (int) (t & mask);
+                int first = Math.min(count, capacity - position);
+                enter();
+                try
+                {
+                    writeView.clear();
+                    writeView.position(position);
+                    copy(src, writeView, first);
+                    if (first < count)
+                    {
+                        writeView.clear();
+                        copy(src, writeView, count - first);
+                    }
+                }
+                finally
+                {
+                    exit();
+                }
+                publish(t + count);
+                continue;
+            }
+            awaitSpace(t);
+        }
+        receivedToEmpty = head.get() >= start;
+    }
+
+    @Override
+    public int receiveNow(ByteBuffer src) throws IOException
+    {
+        checkStateForReceive();
+        long t = tail.get();
+        int count = Math.min(capacity - (int) (t - head.get()), src.remaining());
+        if (count == 0)
+            return 0;
+        int position = (int) (t & mask);
+        int first = Math.min(count, capacity - position);
+        enter();
+        try
+        {
+            writeView.clear();
+            writeView.position(position);
+            copy(src, writeView, first);
+            if (first < count)
+            {
+                writeView.clear();
+                copy(src, writeView, count - first);
+            }
+        }
+        finally
+        {
+            exit();
+        }
+        publish(t + count);
+        receivedToEmpty = head.get() >= t;
+        return count;
+    }
+
+    @Override
+    public boolean isWritable()
+    {
+        return closedByReader || closedByWriter || tail.get() - head.get() < capacity;
+    }
+
+    @Override
+    public void receivedLast()
+    {
+        closedByWriter = true;
+        wakeUp(waitingReader);
+        signalSelector();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closedByReader = true;
+        // owner frees ring when closed pipe is released, unless it may be touched yet
+        if (copying.get() > 0 || peeked)
+            allocator.detach(ring);
+        releaseBudget();
+        wakeUp(waitingWriter);
+        signalSelector();
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        if (closedByReader)
+            return -1;
+        int ready = (int) (tail.get() - head.get());
+        if (ready == 0 && closedByWriter)
+            return -1;
+        return ready;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RingPipedInputStream " + name + "\ncapacity " + capacity + "\nhead " + head.get() + "\ntail "
+                + tail.get();
+    }
+
+    private void checkStateForRead() throws IOException
+    {
+        if (!connected)
+            throw new IOException("Pipe not connected");
+        else if (closedByReader)
+            throw new IOException("Pipe closed");
+    }
+
+    private void checkStateForReceive() throws IOException
+    {
+        if (!connected)
+            throw new IOException("Pipe not connected");
+        else if (closedByWriter || closedByReader)
+        {
+            if (closedByWriter && closedByReader)
+                throw new IOException("Pipe closed by writer and reader");
+            throw new IOException("Pipe closed by " + (closedByWriter ? "writer" : "reader"));
+        }
+    }
+
+    /**
+     * start copying to or from ring
+     *
+     * @throws IOException if pipe is closed, its ring may be freed already
+     */
+    private void enter() throws IOException
+    {
+        copying.incrementAndGet();
+        if (closedByReader)
+        {
+            copying.decrementAndGet();
+            throw new IOException("Pipe closed");
+        }
+    }
+
+    private void exit()
+    {
+        copying.decrementAndGet();
+    }
+
+    /**
+     * consumer side: free ring space and wake up producer if it waits for it
+     */
+    private void release(long newHead)
+    {
+        head.set(newHead);
+        wakeUp(waitingWriter);
+        signalSelector();
+        if (highWatermark > 0 && tail.get() - newHead <= lowWatermark && aboveHigh.get()
+                && aboveHigh.compareAndSet(true, false) && onDrained != null)
+            onDrained.run();
+    }
+
+    /**
+     * producer side: publish written bytes and wake up consumer if it waits for them
+     */
+    private void publish(long newTail)
+    {
+        tail.set(newTail);
+        wakeUp(waitingReader);
+        signalSelector();
+        if (highWatermark > 0 && newTail - head.get() >= highWatermark && !aboveHigh.get()
+                && aboveHigh.compareAndSet(false, true) && onHigh != null)
+            onHigh.run();
+    }
+
+    private static void wakeUp(Thread thread)
+    {
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * wait until ring is not empty
+     *
+     * @param h current head position
+     * @return false on end of stream
+     * @throws IOException on timeout, interruption or closing by reader
+     */
+    private boolean awaitData(long h) throws IOException
+    {
+        long deadline = waitTimeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeout) : 0;
+        waitingReader = Thread.currentThread();
+        try
+        {
+            while (tail.get() == h)
+            {
+                if (closedByWriter)
+                    return tail.get() != h;
+                if (closedByReader)
+                    throw new IOException("Pipe closed");
+                if (deadline == 0)
+                    LockSupport.park(this);
+                else
+                {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0)
+                        throw new IOException("Read timeout");
+                    LockSupport.parkNanos(this, left);
+                }
+                if (Thread.interrupted())
+                    throw new IOException("interrupt read waiting");
+            }
+            return true;
+        }
+        finally
+        {
+            waitingReader = null;
+        }
+    }
+
+    /**
+     * wait until ring is not full
+     *
+     * @param t current tail position
+     * @throws IOException on interruption or closing
+     */
+    private void awaitSpace(long t) throws IOException
+    {
+        waitingWriter = Thread.currentThread();
+        try
+        {
+            while (t - head.get() >= capacity)
+            {
+                checkStateForReceive();
+                LockSupport.park(this);
+                if (Thread.interrupted())
+                    throw new IOException("Wait buffer interrupting");
+            }
+        }
+        finally
+        {
+            waitingWriter = null;
+        }
+    }
+}
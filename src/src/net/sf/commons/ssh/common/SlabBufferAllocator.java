@@ -0,0 +1,176 @@
+package net.sf.commons.ssh.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffer pool with power-of-two size classes.
+ * <p/>
+ * Disposed buffers are kept in a shared lock-free free list of their size class. There is no per-thread tier: pipes
+ * allocate segments on writer thread and dispose them on reader thread, so thread caches would rarely hit and would
+ * pile buffers up in reader threads. Total amount of retained memory never exceeds {@link #getMaxRetainedBytes()},
+ * buffers disposed over the limit are left to garbage collector and counted as evictions.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class SlabBufferAllocator extends BufferAllocator
+{
+    public static final int DEFAULT_MIN_SIZE = 256;
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_MAX_RETAINED = 64L * 1024 * 1024;
+
+    private final int minShift;
+    private final int maxShift;
+    private final long maxRetainedBytes;
+
+    private final List<ConcurrentLinkedQueue<ByteBuffer>> freeLists;
+
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SlabBufferAllocator()
+    {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_MAX_RETAINED);
+    }
+
+    /**
+     * @param minSize          smallest size class, rounded up to power of two
+     * @param maxSize          largest pooled size class, rounded up to power of two
+     * @param maxRetainedBytes hard limit of memory kept by the pool
+     */
+    public SlabBufferAllocator(int minSize, int maxSize, long maxRetainedBytes)
+    {
+        if (minSize <= 0 || maxSize < minSize || maxSize > (1 << 30) || maxRetainedBytes < 0)
+            throw new IllegalArgumentException("illegal slab pool configuration");
+        this.minShift = shiftFor(minSize);
+        this.maxShift = shiftFor(maxSize);
+        this.maxRetainedBytes = maxRetainedBytes;
+        int classes = maxShift - minShift + 1;
+        freeLists = new ArrayList<ConcurrentLinkedQueue<ByteBuffer>>(classes);
+        for (int i = 0; i < classes; i++)
+            freeLists.add(new ConcurrentLinkedQueue<ByteBuffer>());
+    }
+
+    @Override
+    public ByteBuffer allocate(int size)
+    {
+        int shift = shiftFor(Math.max(size, 1 << minShift));
+        if (shift > maxShift)
+        {
+            misses.incrementAndGet();
+            return allocateMemory(size);
+        }
+        return take(shift);
+    }
+
+    @Override
+    public ByteBuffer allocateExact(int size)
+    {
+        if (size < (1 << minShift) || Integer.bitCount(size) != 1 || shiftFor(size) > maxShift)
+        {
+            misses.incrementAndGet();
+            return allocateMemory(size);
+        }
+        return take(shiftFor(size));
+    }
+
+    @Override
+    public ByteBuffer allocateNoMore(int size)
+    {
+        if (size < (1 << minShift))
+        {
+            misses.incrementAndGet();
+            return allocateMemory(size);
+        }
+        int shift = Math.min(31 - Integer.numberOfLeadingZeros(size), maxShift);
+        return take(shift);
+    }
+
+    @Override
+    public void dispose(ByteBuffer buffer)
+    {
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1 || capacity < (1 << minShift) || buffer.isDirect() != isDirect()
+                || buffer.isReadOnly())
+            return;
+        int shift = shiftFor(capacity);
+        if (shift > maxShift)
+            return;
+        if (!tryRetain(capacity))
+        {
+            evictions.incrementAndGet();
+            return;
+        }
+        buffer.clear();
+        freeLists.get(shift - minShift).offer(buffer);
+    }
+
+    public long getRetainedBytes()
+    {
+        return retainedBytes.get();
+    }
+
+    public long getMaxRetainedBytes()
+    {
+        return maxRetainedBytes;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SlabBufferAllocator retained " + retainedBytes.get() + "/" + maxRetainedBytes + " hits " + hits.get()
+                + " misses " + misses.get() + " evictions " + evictions.get();
+    }
+
+    private ByteBuffer take(int shift)
+    {
+        ByteBuffer result = freeLists.get(shift - minShift).poll();
+        if (result == null)
+        {
+            misses.incrementAndGet();
+            return allocateMemory(1 << shift);
+        }
+        retainedBytes.addAndGet(-result.capacity());
+        hits.incrementAndGet();
+        result.clear();
+        return result;
+    }
+
+    private boolean tryRetain(int capacity)
+    {
+        for (;;)
+        {
+            long current = retainedBytes.get();
+            if (current + capacity > maxRetainedBytes)
+                return false;
+            if (retainedBytes.compareAndSet(current, current + capacity))
+                return true;
+        }
+    }
+
+    private static int shiftFor(int size)
+    {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
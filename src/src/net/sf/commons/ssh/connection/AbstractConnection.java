@@ -1,11 +1,13 @@
 package net.sf.commons.ssh.connection;
 
 import net.sf.commons.ssh.common.AbstractContainer;
+import net.sf.commons.ssh.common.LifecycleFuture;
 import net.sf.commons.ssh.common.LogUtils;
 import net.sf.commons.ssh.common.Status;
 import net.sf.commons.ssh.common.UnexpectedRuntimeException;
 import net.sf.commons.ssh.errors.Error;
 import net.sf.commons.ssh.errors.ErrorLevel;
+import net.sf.commons.ssh.event.Event;
 import net.sf.commons.ssh.event.ProducerType;
 import net.sf.commons.ssh.event.events.AuthenticatedEvent;
 import net.sf.commons.ssh.options.Properties;
@@ -20,6 +22,8 @@ import java.io.IOException;
  */
 public abstract class AbstractConnection extends AbstractContainer<Session> implements Connection {
 
+    private final LifecycleFuture<Connection> connectedFuture = new LifecycleFuture<Connection>();
+    private final LifecycleFuture<Connection> authenticatedFuture = new LifecycleFuture<Connection>();
 
     public AbstractConnection(Properties properties) {
         super(properties);
@@ -71,6 +75,37 @@ public abstract class AbstractConnection extends AbstractContainer<Session> impl
         return session;
     }
 
+    @Override
+    public LifecycleFuture<Connection> whenConnected() {
+        return connectedFuture;
+    }
+
+    @Override
+    public LifecycleFuture<Connection> whenAuthenticated() {
+        return authenticatedFuture;
+    }
+
+    @Override
+    protected void lifecycleEvent(Event event) {
+        // events of custom classes may have no type
+        if (event.getEventType() != null) {
+            switch (event.getEventType()) {
+                case CONNECTED:
+                    connectedFuture.complete(this);
+                    break;
+                case AUTHENTICATED:
+                    authenticatedFuture.complete(this);
+                    break;
+                case CLOSED:
+                    // nobody will complete them after close
+                    connectedFuture.fail(new ConnectionException("connection closed before connected"));
+                    authenticatedFuture.fail(new AuthenticationException("connection closed before authenticated"));
+                    break;
+            }
+        }
+        super.lifecycleEvent(event);
+    }
+
     @Override
     public boolean isConnecting() {
         return getContainerStatus() == Status.CONNECTING;
@@ -4,7 +4,9 @@ package net.sf.commons.ssh.connection;
 import java.io.IOException;
 import java.security.PublicKey;
 
+import net.sf.commons.ssh.common.Closable;
 import net.sf.commons.ssh.common.Container;
+import net.sf.commons.ssh.common.LifecycleFuture;
 import net.sf.commons.ssh.session.ExecSession;
 import net.sf.commons.ssh.session.SFTPSession;
 import net.sf.commons.ssh.session.ScpSession;
@@ -23,6 +25,21 @@ public interface Connection extends Container
     boolean isAuthenticated();
     boolean isAuthenticating();
 
+    /**
+     * @return future completed when connection is established, fails if connection is closed before
+     */
+    LifecycleFuture<Connection> whenConnected();
+
+    /**
+     * @return future completed when connection is authenticated, fails if connection is closed before
+     */
+    LifecycleFuture<Connection> whenAuthenticated();
+
+    /**
+     * @return future completed when connection is closed
+     */
+    LifecycleFuture<Closable> whenClosed();
+
     ShellSession createShellSession();
     SubsystemSession createSubsystemSession();
     ExecSession createExecSession();
@@ -39,6 +39,22 @@ public class ConnectionPropertiesBuilder extends PropertiesBuilder
     @PropertyType(Long.class)
     public static final String KEY_AUTHENTICATE_TIMEOUT = "net.sf.commons.ssh.options.ConnectionOptionsBuilder.authTimeout";
 
+    public static final PropertyKey<Long> KEX_TIMEOUT = PropertyKey.of(KEY_KEX_TIMEOUT, Long.class);
+    public static final PropertyKey<Integer> PORT = PropertyKey.of(KEY_PORT, Integer.class);
+    public static final PropertyKey<Boolean> SEND_IGNORE = PropertyKey.of(KEY_SEND_IGNORE, Boolean.class);
+    public static final PropertyKey<Long> SOCKET_TIMEOUT = PropertyKey.of(KEY_SOCKET_TIMEOUT, Long.class);
+    public static final PropertyKey<Long> CONNECT_TIMEOUT = PropertyKey.of(KEY_CONNECT_TIMEOUT, Long.class);
+    public static final PropertyKey<ProxyType> PROXY_TYPE = PropertyKey.of(KEY_PROXY_TYPE, ProxyType.class);
+    public static final PropertyKey<String> PROXY_HOST = PropertyKey.of(KEY_PROXY_HOST, String.class);
+    public static final PropertyKey<Integer> PROXY_PORT = PropertyKey.of(KEY_PROXY_PORT, Integer.class);
+    public static final PropertyKey<String> PROXY_USER = PropertyKey.of(KEY_PROXY_USER, String.class);
+    public static final PropertyKey<String> PROXY_PASSWD = PropertyKey.of(KEY_PROXY_PASSWD, String.class);
+    public static final PropertyKey<String> HOST = PropertyKey.of(KEY_HOST, String.class);
+    public static final PropertyKey<AuthenticationMethod> AUTHENTICATION_METHOD =
+            PropertyKey.of(KEY_AUTHENTICATION_METHOD, AuthenticationMethod.class);
+    public static final PropertyKey<Boolean> NEED_AUTHENTICATION = PropertyKey.of(KEY_NEED_AUTHENTICATION, Boolean.class);
+    public static final PropertyKey<Long> AUTHENTICATE_TIMEOUT = PropertyKey.of(KEY_AUTHENTICATE_TIMEOUT, Long.class);
+
     public ConnectionPropertiesBuilder()
     {
         defaultProperties.put(KEY_PORT, Integer.valueOf(22));
@@ -58,37 +74,37 @@ public class ConnectionPropertiesBuilder extends PropertiesBuilder
 
     public Long getKexTimeout(Properties opt)
     {
-        return (Long) getProperty(opt, KEY_KEX_TIMEOUT);
+        return getProperty(opt, KEX_TIMEOUT);
     }
 
     public void setKexTimeout(Configurable opt, Long value)
     {
-        setProperty(opt,KEY_KEX_TIMEOUT, value);
+        setProperty(opt, KEX_TIMEOUT, value);
     }
 
     public Integer getPort(Properties opt)
     {
-        return (Integer) getProperty(opt, KEY_PORT);
+        return getProperty(opt, PORT);
     }
 
     public void setPort(Configurable opt, Integer value)
     {
-        setProperty(opt,KEY_PORT, value);
+        setProperty(opt, PORT, value);
     }
 
     public Boolean getSendIgnore(Properties opt)
     {
-        return (Boolean) getProperty(opt, KEY_SEND_IGNORE);
+        return getProperty(opt, SEND_IGNORE);
     }
 
     public void setSendIgnore(Configurable opt, Boolean value)
     {
-        setProperty(opt,KEY_SEND_IGNORE, value);
+        setProperty(opt, SEND_IGNORE, value);
     }
 
     public Long getSoTimeout(Properties opt)
     {
-        return (Long) getProperty(opt, KEY_SOCKET_TIMEOUT);
+        return getProperty(opt, SOCKET_TIMEOUT);
     }
 
     public void setSoTimeout(Configurable opt, Long value)
@@ -98,93 +114,93 @@ public class ConnectionPropertiesBuilder extends PropertiesBuilder
 
     public Long getConnectTimeout(Properties opt)
     {
-        return (Long) getProperty(opt, KEY_CONNECT_TIMEOUT);
+        return getProperty(opt, CONNECT_TIMEOUT);
     }
 
     public void setConnectTimeout(Configurable opt, Long value)
     {
-        setProperty(opt, KEY_CONNECT_TIMEOUT, value);
+        setProperty(opt, CONNECT_TIMEOUT, value);
     }
 
     public String getHost(Properties opt)
     {
-        return (String) getProperty(opt, KEY_HOST);
+        return getProperty(opt, HOST);
     }
 
     public void setHost(Configurable opt, String value)
     {
-        setProperty(opt,KEY_HOST, value);
+        setProperty(opt, HOST, value);
     }
 
     public ProxyType getProxyType(Properties opt)
     {
-        return (ProxyType) getProperty(opt, KEY_PROXY_TYPE);
+        return getProperty(opt, PROXY_TYPE);
     }
 
     public void setProxyType(Configurable opt, ProxyType value)
     {
-        setProperty(opt, KEY_PROXY_TYPE, value);
+        setProperty(opt, PROXY_TYPE, value);
     }
 
     public String getProxyHost(Properties opt) {
-        return (String)getProperty(opt, KEY_PROXY_HOST);
+        return getProperty(opt, PROXY_HOST);
     }
 
     public void setProxyHost(Configurable opt, String value) {
-        setProperty(opt, KEY_PROXY_HOST, value);
+        setProperty(opt, PROXY_HOST, value);
     }
 
     public Integer getProxyPort(Properties opt) {
-        return (Integer)getProperty(opt, KEY_PROXY_PORT);
+        return getProperty(opt, PROXY_PORT);
     }
 
     public void setProxyPort(Configurable opt, Integer value) {
-        setProperty(opt, KEY_PROXY_PORT, value);
+        setProperty(opt, PROXY_PORT, value);
     }
 
     public String getProxyUser(Properties opt) {
-        return (String)getProperty(opt, KEY_PROXY_USER);
+        return getProperty(opt, PROXY_USER);
     }
 
     public void setProxyUser(Configurable opt, String value) {
-        setProperty(opt, KEY_PROXY_USER, value);
+        setProperty(opt, PROXY_USER, value);
     }
 
     public String getProxyPasswd(Properties opt) {
-        return (String)getProperty(opt, KEY_PROXY_PASSWD);
+        return getProperty(opt, PROXY_PASSWD);
     }
 
     public void setProxyPasswd(Configurable opt, String value) {
-        setProperty(opt, KEY_PROXY_PASSWD, value);
+        setProperty(opt, PROXY_PASSWD, value);
     }
 
 	public void setAuthenticationMethod(Configurable config,AuthenticationMethod value)
 	{
-		setProperty(config, KEY_AUTHENTICATION_METHOD, value);
+		setProperty(config, AUTHENTICATION_METHOD, value);
 	}
 	
 	public AuthenticationMethod getAuthenticationMethod(Properties config)
 	{
-		return (AuthenticationMethod) getProperty(config, KEY_AUTHENTICATION_METHOD);		
+		return getProperty(config, AUTHENTICATION_METHOD);		
 	}
 	
     public Long getAuthenticateTimeout(Properties opt)
     {
-        return (Long) getProperty(opt, KEY_AUTHENTICATE_TIMEOUT);
+        return getProperty(opt, AUTHENTICATE_TIMEOUT);
     }
 
     public void setAuthenticateTimeout(Configurable opt, Long value)
     {
-        setProperty(opt,KEY_AUTHENTICATE_TIMEOUT, value);
+        setProperty(opt, AUTHENTICATE_TIMEOUT, value);
     }
 
     public void setNeedAuthentication(Configurable opt, Boolean needAuthentication) {
-        setProperty(opt, KEY_NEED_AUTHENTICATION, needAuthentication);
+        setProperty(opt, NEED_AUTHENTICATION, needAuthentication);
     }
 
     public Boolean isNeedAuthentication(Properties opt) {
-        Object result =  getProperty(opt, KEY_NEED_AUTHENTICATION);
-        return result == null ? true: (Boolean) result;
+        Boolean result = getProperty(opt, NEED_AUTHENTICATION);
+        return result == null ? true: result;
     }
 
 
@@ -5,6 +5,7 @@ package net.sf.commons.ssh.connector;
 
 import net.sf.commons.ssh.Feature;
 import net.sf.commons.ssh.common.AbstractContainer;
+import net.sf.commons.ssh.common.OrderedEventExecutor;
 import net.sf.commons.ssh.common.UnexpectedRuntimeException;
 import net.sf.commons.ssh.connection.*;
 import net.sf.commons.ssh.event.ProducerType;
@@ -15,10 +16,12 @@ import net.sf.commons.ssh.session.SftpSessionPropertiesBuilder;
 import net.sf.commons.ssh.session.ShellSessionPropertiesBuilder;
 import net.sf.commons.ssh.verification.VerificationPropertiesBuilder;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * @author fob
@@ -30,7 +33,9 @@ import java.util.Set;
  */
 public abstract class AbstractConnector extends AbstractContainer<Connection> implements Connector {
 
-
+    private OrderedEventExecutor eventExecutor;
+    private boolean eventExecutorStopped = false;
+    private final Object eventExecutorLock = new Object();
 
     public AbstractConnector(Properties properties) {
         super(properties);
@@ -60,22 +65,69 @@ public abstract class AbstractConnector extends AbstractContainer<Connection> im
         return new HashSet<Feature>(Arrays.asList(features));
     }
 
+    /**
+     * @return executor selected by {@link ConnectorPropertiesBuilder#getEventProcessing}, own executor of connector
+     *         is created on first asynchronous event
+     */
+    @Override
+    protected OrderedEventExecutor getEventExecutor() {
+        ConnectorPropertiesBuilder cpb = ConnectorPropertiesBuilder.getInstance();
+        EventProcessingMode mode = cpb.getEventProcessing(this);
+        if (mode == null || mode == EventProcessingMode.SHARED)
+            return super.getEventExecutor();
+        synchronized (eventExecutorLock) {
+            if (eventExecutor == null && !eventExecutorStopped) {
+                int threads = cpb.getEventThreads(this);
+                ThreadFactory factory = cpb.getEventThreadFactory(this);
+                if (mode == EventProcessingMode.VIRTUAL && factory == null) {
+                    factory = OrderedEventExecutor.virtualThreadFactory();
+                    if (factory != null)
+                        threads = Integer.MAX_VALUE;
+                }
+                eventExecutor = new OrderedEventExecutor(threads, cpb.getEventLaneCapacity(this), factory);
+            }
+            return eventExecutor;
+        }
+    }
+
+    /**
+     * close connector and stop its event executor after queued events are processed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        }
+        finally {
+            synchronized (eventExecutorLock) {
+                eventExecutorStopped = true;
+                if (eventExecutor != null)
+                    eventExecutor.shutdown();
+                eventExecutor = null;
+            }
+        }
+    }
+
     @Override
     public ProducerType getProducerType() {
         return ProducerType.CONNECTOR;
     }
 
+    /**
+     * create and connect connection, connection properties override configuration of this connector only for the
+     * new connection, connector configuration isn't changed
+     */
     @Override
     public Connection openConnection(String host, int port, Properties connectionProperties) throws ConnectionException, AuthenticationException, HostCheckingException {
         Connection connection = createConnection();
-        ConnectionPropertiesBuilder.getInstance().setHost(connection, host);
-        ConnectionPropertiesBuilder.getInstance().setPort(connection, port);
         try {
-            this.updateFrom(connectionProperties);
+            connection.updateFrom(connectionProperties);
         }
         catch (CloneNotSupportedException e) {
             throw new UnexpectedRuntimeException(e.getMessage(), e);
         }
+        ConnectionPropertiesBuilder.getInstance().setHost(connection, host);
+        ConnectionPropertiesBuilder.getInstance().setPort(connection, port);
 
         boolean auth =  ConnectionPropertiesBuilder.getInstance().isNeedAuthentication(connectionProperties);
         connection.connect(auth);
@@ -2,6 +2,8 @@ package net.sf.commons.ssh.connector;
 
 import net.sf.commons.ssh.options.*;
 
+import java.util.concurrent.ThreadFactory;
+
 
 /**
  * @author fob
@@ -15,9 +17,29 @@ public class ConnectorPropertiesBuilder extends PropertiesBuilder
     @PropertyType(Boolean.class)
     public static final String CREATE_EVENT_THREAD = "net.sf.commons.ssh.connector.createEventThread";
 
+    @PropertyType(EventProcessingMode.class)
+    public static final String EVENT_PROCESSING = "net.sf.commons.ssh.connector.eventProcessing";
+
+    @PropertyType(Integer.class)
+    public static final String EVENT_THREADS = "net.sf.commons.ssh.connector.eventThreads";
+
+    @PropertyType(Integer.class)
+    public static final String EVENT_LANE_CAPACITY = "net.sf.commons.ssh.connector.eventLaneCapacity";
+
+    @PropertyType(ThreadFactory.class)
+    public static final String EVENT_THREAD_FACTORY = "net.sf.commons.ssh.connector.eventThreadFactory";
+
+    @PropertyType(Boolean.class)
+    public static final String EVENT_RECYCLING = "net.sf.commons.ssh.connector.eventRecycling";
+
     public ConnectorPropertiesBuilder()
     {
         defaultProperties.put(CREATE_EVENT_THREAD,false);
+        defaultProperties.put(EVENT_PROCESSING, EventProcessingMode.SHARED);
+        defaultProperties.put(EVENT_THREADS, 3);
+        defaultProperties.put(EVENT_LANE_CAPACITY, 1024);
+        defaultProperties.put(EVENT_THREAD_FACTORY, null);
+        defaultProperties.put(EVENT_RECYCLING, false);
     }
 
     public synchronized static ConnectorPropertiesBuilder getInstance()
@@ -39,4 +61,90 @@ public class ConnectorPropertiesBuilder extends PropertiesBuilder
     {
         setProperty(opt,CREATE_EVENT_THREAD,flag);
     }
+
+    public EventProcessingMode getEventProcessing(Properties opt)
+    {
+        return (EventProcessingMode) getProperty(opt, EVENT_PROCESSING);
+    }
+
+    /**
+     * @param opt  connector
+     * @param mode where asynchronous handlers of connector, its connections and sessions are run
+     */
+    public void setEventProcessing(Configurable opt, EventProcessingMode mode)
+    {
+        setProperty(opt, EVENT_PROCESSING, mode);
+    }
+
+    /**
+     * @return count of threads of connector pool in {@link EventProcessingMode#CONNECTOR} mode
+     */
+    public Integer getEventThreads(Properties opt)
+    {
+        return (Integer) getProperty(opt, EVENT_THREADS);
+    }
+
+    public void setEventThreads(Configurable opt, int threads)
+    {
+        setProperty(opt, EVENT_THREADS, threads);
+    }
+
+    /**
+     * @return maximum count of not processed events of one producer, producer waits when it is reached
+     */
+    public Integer getEventLaneCapacity(Properties opt)
+    {
+        return (Integer) getProperty(opt, EVENT_LANE_CAPACITY);
+    }
+
+    public void setEventLaneCapacity(Configurable opt, int capacity)
+    {
+        setProperty(opt, EVENT_LANE_CAPACITY, capacity);
+    }
+
+    /**
+     * @return factory of threads of connector pool, null for default
+     */
+    public ThreadFactory getEventThreadFactory(Properties opt)
+    {
+        return (ThreadFactory) getProperty(opt, EVENT_THREAD_FACTORY);
+    }
+
+    public void setEventThreadFactory(Configurable opt, ThreadFactory factory)
+    {
+        setProperty(opt, EVENT_THREAD_FACTORY, factory);
+    }
+
+    public boolean isEventRecycling(Properties opt)
+    {
+        return Boolean.TRUE.equals(getProperty(opt, EVENT_RECYCLING));
+    }
+
+    /**
+     * Reuse {@link net.sf.commons.ssh.event.events.ReadAvailableEvent},
+     * {@link net.sf.commons.ssh.event.events.SetPropertyEvent} and
+     * {@link net.sf.commons.ssh.event.events.PropertyChangedEvent} after synchronous dispatch instead of creating
+     * new ones. Immediate listeners must not keep such events, see {@link net.sf.commons.ssh.event.RecyclableEvent}.
+     * Processor reads flag when it fires first recyclable event.
+     *
+     * @param opt  connector
+     * @param flag true to reuse events
+     */
+    public void setEventRecycling(Configurable opt, boolean flag)
+    {
+        setProperty(opt, EVENT_RECYCLING, flag);
+    }
+
+    @Override
+    protected TypeConverter createConverter()
+    {
+        return new DefaultConverter(this.getClass())
+        {
+            @ConvertMethod(from = String.class, to = EventProcessingMode.class)
+            public EventProcessingMode stringToMode(String value)
+            {
+                return EventProcessingMode.valueOf(value.trim().toUpperCase());
+            }
+        };
+    }
 }
@@ -0,0 +1,25 @@
+package net.sf.commons.ssh.connector;
+
+/**
+ * Where handlers of type {@link net.sf.commons.ssh.event.HandlerType#PUSH_TO_PROCESS} are run,
+ * see {@link ConnectorPropertiesBuilder#setEventProcessing}.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public enum EventProcessingMode
+{
+    /**
+     * JVM-wide {@link net.sf.commons.ssh.common.EventProcessorThread}, enabled by its static {@code enable()}
+     */
+    SHARED,
+    /**
+     * pool of connector, started with first event and stopped when connector is closed
+     */
+    CONNECTOR,
+    /**
+     * pool of connector which starts virtual thread for every busy producer, falls back to {@link #CONNECTOR}
+     * on JVM without virtual threads
+     */
+    VIRTUAL;
+}
@@ -6,6 +6,7 @@ public abstract class AbstractEvent implements Event
     protected int priority = 0;
     protected AbstractEventProcessor producer = null;
     protected EventType eventType;
+    protected boolean pooled = false;
 
     public AbstractEvent(AbstractEventProcessor producer)
     {
@@ -56,4 +57,17 @@ public abstract class AbstractEvent implements Event
     {
         this.eventType = eventType;
     }
+
+    /**
+     * @return true if event is reused by producer after dispatch, see {@link RecyclableEvent}
+     */
+    public boolean isPooled()
+    {
+        return pooled;
+    }
+
+    public void setPooled(boolean pooled)
+    {
+        this.pooled = pooled;
+    }
 }
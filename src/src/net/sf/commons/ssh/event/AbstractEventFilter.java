@@ -25,12 +25,53 @@ public abstract class AbstractEventFilter implements EventFilter
         return result;
     }
 
+    /**
+     * Check filter without event, used by {@link EventDispatchIndex} to skip handlers which can't accept event.
+     *
+     * @param eventClass class of event, null for any class
+     * @return false if filter rejects every event with given class and types
+     */
+    public boolean mayAccept(EventType eventType, ProducerType producerType, Class<?> eventClass)
+    {
+        boolean result = mayAcceptEvent(eventType, producerType, eventClass);
+        for (EventFilter filter : orFilters)
+        {
+            result = result || EventDispatchIndex.mayAccept(filter, eventType, producerType, eventClass);
+        }
+
+        for (EventFilter filter : andFilters)
+        {
+            result = result && EventDispatchIndex.mayAccept(filter, eventType, producerType, eventClass);
+        }
+        return result;
+    }
+
+    /**
+     * @return false if {@link #checkEvent(Event)} is false for every event with given class and types
+     */
+    protected boolean mayAcceptEvent(EventType eventType, ProducerType producerType, Class<?> eventClass)
+    {
+        return true;
+    }
+
+    /**
+     * change this filter, must be called before handler with this filter is added to event processor
+     *
+     * @param filter filter which also must accept event
+     * @return this filter
+     */
     public EventFilter andFilterBy(EventFilter filter)
     {
         andFilters.add(filter);
         return this;
     }
 
+    /**
+     * change this filter, must be called before handler with this filter is added to event processor
+     *
+     * @param filter alternative filter
+     * @return this filter
+     */
     public EventFilter orFilterBy(EventFilter filter)
     {
         orFilters.add(filter);
@@ -2,18 +2,23 @@ package net.sf.commons.ssh.event;
 
 import net.sf.commons.ssh.common.EventProcessorThread;
 import net.sf.commons.ssh.common.LogUtils;
+import net.sf.commons.ssh.common.OrderedEventExecutor;
 import net.sf.commons.ssh.common.Status;
+import net.sf.commons.ssh.connector.ConnectorPropertiesBuilder;
 import net.sf.commons.ssh.errors.Error;
 import net.sf.commons.ssh.event.events.IncludeDefaultEvent;
 import net.sf.commons.ssh.event.events.PropertyChangedEvent;
+import net.sf.commons.ssh.event.events.ReadAvailableEvent;
 import net.sf.commons.ssh.event.events.SetPropertyEvent;
 import net.sf.commons.ssh.event.events.UpdateConfigurableEvent;
 import net.sf.commons.ssh.options.ContainerConfigurable;
 import net.sf.commons.ssh.options.Properties;
 
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author fob
@@ -21,8 +26,23 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * @since 2.0
  */
 public abstract class AbstractEventProcessor extends ContainerConfigurable implements EventProcessor {
+    private static volatile EventMetrics metrics = EventMetrics.NONE;
+
     protected AbstractEventProcessor parentEngine;
-    protected List<EventHandler> handlers = new CopyOnWriteArrayList<EventHandler>();
+    final EventDispatchIndex handlerIndex = new EventDispatchIndex();
+    /**
+     * handlers of this processor, live view of {@link EventDispatchIndex}
+     */
+    protected final List<EventHandler> handlers = handlerIndex.asList();
+    private volatile int parentVersion;
+    private volatile EventRoutes routes;
+
+    // pools of recyclable events, one idle event of each type is enough for synchronous dispatch
+    private final AtomicReference<ReadAvailableEvent> readAvailablePool = new AtomicReference<ReadAvailableEvent>();
+    private final AtomicReference<SetPropertyEvent> setPropertyPool = new AtomicReference<SetPropertyEvent>();
+    private final AtomicReference<PropertyChangedEvent> propertyChangedPool =
+            new AtomicReference<PropertyChangedEvent>();
+    private volatile Boolean recycling;
 
     protected final Object statusLock = new Object();
     protected Status status = Status.CREATED;
@@ -41,39 +61,178 @@ public abstract class AbstractEventProcessor extends ContainerConfigurable imple
             parentEngine.notifyFirst(this.parentEngine);
 
         this.parentEngine = parentEngine;
+        parentVersion++;
     }
 
     protected void notifyLast(AbstractEventProcessor parentEngine) {
-        if (this.parentEngine == null)
+        if (this.parentEngine == null) {
             this.parentEngine = parentEngine;
+            parentVersion++;
+        }
         else
             this.parentEngine.notifyLast(parentEngine);
     }
 
+    /**
+     * @param eventMetrics metrics of all processors, {@link EventMetrics#NONE} to disable measurements
+     * @see EventStatistics#install()
+     */
+    public static void setEventMetrics(EventMetrics eventMetrics) {
+        metrics = eventMetrics == null ? EventMetrics.NONE : eventMetrics;
+    }
+
+    public static EventMetrics getEventMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Pass event to handlers of this processor and its parents by single pass over precomputed route.
+     */
     protected void fire(Event event) {
-        if (handlers == null || handlers.isEmpty())
-            pushToProcess(event);
-        processNow(event);
-        if (parentEngine != null)
-            parentEngine.fire(event);
+        EventMetrics metrics = AbstractEventProcessor.metrics;
+        if (metrics != EventMetrics.NONE && event.getProducer() == this)
+            metrics.fired(event);
+        EventRoutes routes = this.routes;
+        if (routes == null || !routes.isValid(this)) {
+            routes = new EventRoutes(this);
+            this.routes = routes;
+        }
+        EventHandler[] route = routes.route(event);
+        OrderedEventExecutor executor = null;
+        boolean pushing = true;
+        for (EventHandler handler : route) {
+            if (!handler.getEventFilter().check(event))
+                continue;
+            if (handler.getHandlerType() == HandlerType.IMMEDIATE_PROCESS) {
+                handleNow(event, handler, metrics);
+                continue;
+            }
+            if (!pushing)
+                continue;
+            if (executor == null)
+                executor = getEventExecutor();
+            pushing = push(event, handler, executor, metrics);
+        }
     }
 
     protected void processNow(Event event) {
-        for (EventHandler handler : handlers)
+        processNow(event, handlerIndex.route(event));
+    }
+
+    /**
+     * @param route handlers which may accept event, see {@link EventDispatchIndex#route(Event)}
+     */
+    protected void processNow(Event event, EventHandler[] route) {
+        EventMetrics metrics = AbstractEventProcessor.metrics;
+        for (EventHandler handler : route)
             if (handler.getHandlerType() == HandlerType.IMMEDIATE_PROCESS &&
                     handler.getEventFilter().check(event))
-                handler.handle(event);
+                handleNow(event, handler, metrics);
     }
 
     protected void pushToProcess(Event event) {
-        for (EventHandler handler : handlers) {
-            LogUtils.trace(log, "pushToProcess handler ", handler);
-            if (handler.getHandlerType() == HandlerType.PUSH_TO_PROCESS && EventProcessorThread.isEnableThread() &&
-                    handler.getEventFilter().check(event))
-                EventProcessorThread.getInstance().submit(event, handler);
+        pushToProcess(event, handlerIndex.route(event));
+    }
+
+    protected void pushToProcess(Event event, EventHandler[] route) {
+        EventMetrics metrics = AbstractEventProcessor.metrics;
+        OrderedEventExecutor executor = null;
+        for (final EventHandler handler : route) {
+            if (handler.getHandlerType() == HandlerType.IMMEDIATE_PROCESS || !handler.getEventFilter().check(event))
+                continue;
+            if (executor == null)
+                executor = getEventExecutor();
+            if (!push(event, handler, executor, metrics))
+                return;
         }
     }
 
+    private void handleNow(Event event, EventHandler handler, EventMetrics metrics) {
+        if (metrics == EventMetrics.NONE) {
+            handler.handle(event);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            handler.handle(event);
+        }
+        finally {
+            metrics.handled(event, handler, 0, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * pass accepted event to asynchronous or batch handler
+     *
+     * @return false if executor is stopped
+     */
+    private boolean push(Event fired, final EventHandler handler, OrderedEventExecutor executor,
+                         EventMetrics metrics) {
+        if (log.isTraceEnabled())
+            LogUtils.trace(log, "pushToProcess handler {0}", handler);
+        if (handler.getHandlerType() == HandlerType.BATCH_PROCESS) {
+            if (handler instanceof BatchEventHandler)
+                ((BatchEventHandler) handler).offer(retain(fired), executor);
+            else
+                handler.handle(fired);
+            return true;
+        }
+        if (executor == null)
+            return true;
+        final Event event = retain(fired);
+        final long submitted = metrics == EventMetrics.NONE ? 0 : System.nanoTime();
+        try {
+            executor.execute(event.getProducer() == null ? handler : event.getProducer(), new Runnable() {
+                public void run() {
+                    EventMetrics metrics = AbstractEventProcessor.metrics;
+                    if (submitted == 0 || metrics == EventMetrics.NONE) {
+                        handler.handle(event);
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        handler.handle(event);
+                    }
+                    finally {
+                        metrics.handled(event, handler, start - submitted, System.nanoTime() - start);
+                    }
+                }
+            });
+            return true;
+        }
+        catch (RejectedExecutionException e) {
+            LogUtils.debug(log, "event processing is stopped, event {0} is dropped", event);
+            return false;
+        }
+    }
+
+    /**
+     * pooled event is reused after synchronous dispatch, so handler which keeps it gets a copy
+     */
+    private static Event retain(Event event) {
+        return event instanceof RecyclableEvent ? ((RecyclableEvent) event).retain() : event;
+    }
+
+    /**
+     * @return number which is changed when handlers or parent of this processor are changed
+     */
+    long getTopologyStamp() {
+        // handlers are null while super constructor configures properties
+        int handlersVersion = handlerIndex == null ? -1 : handlerIndex.getVersion();
+        return ((long) parentVersion << 32) | (handlersVersion & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return executor of {@link HandlerType#PUSH_TO_PROCESS} handlers, executor of parent by default.
+     *         Null if events shouldn't be processed asynchronously.
+     */
+    protected OrderedEventExecutor getEventExecutor() {
+        if (parentEngine != null)
+            return parentEngine.getEventExecutor();
+        EventProcessorThread thread = EventProcessorThread.getInstance();
+        return thread == null ? null : thread.getExecutor();
+    }
+
     /*
       * (non-Javadoc)
       *
@@ -103,7 +262,7 @@ public abstract class AbstractEventProcessor extends ContainerConfigurable imple
       * .ssh.event.EventHandler, net.sf.commons.ssh.event.EventFilter)
       */
     public void addEventHandler(EventHandler handler) {
-        handlers.add(handler);
+        handlerIndex.add(handler);
     }
 
     /*
@@ -114,37 +273,162 @@ public abstract class AbstractEventProcessor extends ContainerConfigurable imple
       * .ssh.event.EventHandler)
       */
     public void removeEventHandler(EventHandler handler) {
-        handlers.remove(handler);
+        if (handlerIndex.remove(handler) && handler instanceof BatchEventHandler)
+            ((BatchEventHandler) handler).flush();
     }
 
     public abstract ProducerType getProducerType();
 
+    /**
+     * Check handlers of this processor and its parents, events which nobody observes shouldn't be created.
+     *
+     * @param type type of event fired by this processor
+     * @return true if some handler may accept event
+     */
+    protected boolean isObserved(EventType type) {
+        ProducerType producerType = getProducerType();
+        for (AbstractEventProcessor processor = this; processor != null; processor = processor.parentEngine) {
+            if (processor.handlerIndex != null && processor.handlerIndex.isObserved(type, producerType))
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public void setProperty(String key, Object value) {
+        if (ConnectorPropertiesBuilder.EVENT_RECYCLING.equals(key))
+            recycling = null;
+        boolean set = isObserved(EventType.SET_PROPERTY);
+        boolean changed = isObserved(EventType.PROPERTY_CHANGED);
+        if (!set && !changed) {
+            super.setProperty(key, value);
+            return;
+        }
         Object old = getProperty(key);
-        fire(new SetPropertyEvent(this, key, value, old));
+        if (set)
+            fireSetProperty(key, value, old);
         super.setProperty(key, value);
-        fire(new PropertyChangedEvent(this, key, getProperty(key), old));
+        if (changed)
+            firePropertyChanged(key, getProperty(key), old);
+    }
+
+    /**
+     * @return true if recyclable events should be reused, flag is read once
+     * @see ConnectorPropertiesBuilder#setEventRecycling
+     */
+    protected boolean isEventRecycling() {
+        // pools are null while super constructor configures properties
+        if (readAvailablePool == null)
+            return false;
+        Boolean result = recycling;
+        if (result == null) {
+            result = ConnectorPropertiesBuilder.getInstance().isEventRecycling(this);
+            recycling = result;
+        }
+        return result;
+    }
+
+    /**
+     * fire {@link ReadAvailableEvent}, event is taken from pool if recycling is enabled
+     *
+     * @param in      stream which has data
+     * @param isError true for stderr
+     */
+    protected void fireReadAvailable(InputStream in, boolean isError) {
+        if (!isObserved(EventType.READ_AVAILABLE))
+            return;
+        if (!isEventRecycling()) {
+            fire(new ReadAvailableEvent(this, in, isError));
+            return;
+        }
+        ReadAvailableEvent event = readAvailablePool.getAndSet(null);
+        if (event == null) {
+            event = new ReadAvailableEvent(this, in, isError);
+            event.setPooled(true);
+        }
+        else
+            event.reset(in, isError);
+        try {
+            fire(event);
+        }
+        finally {
+            event.reset(null, false);
+            readAvailablePool.set(event);
+        }
+    }
+
+    private void fireSetProperty(String key, Object value, Object old) {
+        if (!isEventRecycling()) {
+            fire(new SetPropertyEvent(this, key, value, old));
+            return;
+        }
+        SetPropertyEvent event = setPropertyPool.getAndSet(null);
+        if (event == null) {
+            event = new SetPropertyEvent(this, key, value, old);
+            event.setPooled(true);
+        }
+        else
+            event.reset(key, value, old);
+        try {
+            fire(event);
+        }
+        finally {
+            event.reset(null, null, null);
+            setPropertyPool.set(event);
+        }
+    }
+
+    private void firePropertyChanged(String key, Object value, Object old) {
+        if (!isEventRecycling()) {
+            fire(new PropertyChangedEvent(this, key, value, old));
+            return;
+        }
+        PropertyChangedEvent event = propertyChangedPool.getAndSet(null);
+        if (event == null) {
+            event = new PropertyChangedEvent(this, key, value, old);
+            event.setPooled(true);
+        }
+        else
+            event.reset(key, value, old);
+        try {
+            fire(event);
+        }
+        finally {
+            event.reset(null, null, null);
+            propertyChangedPool.set(event);
+        }
     }
 
     @Override
     public void updateFrom(Properties properties) throws CloneNotSupportedException {
-        fire(new UpdateConfigurableEvent(this, properties, this, false));
+        boolean observed = isObserved(EventType.UPDATE_CONFIGURABLE);
+        if (observed)
+            fire(new UpdateConfigurableEvent(this, properties, this, false));
         super.updateFrom(properties);
-        fire(new UpdateConfigurableEvent(this, properties, this, true));
+        if (observed)
+            fire(new UpdateConfigurableEvent(this, properties, this, true));
     }
 
 
     @Override
     public void includeDefault(Properties properties) {
-        fire(new IncludeDefaultEvent(this, properties, this, false));
+        boolean observed = isObserved(EventType.INCLUDE_DEFAULT);
+        if (observed)
+            fire(new IncludeDefaultEvent(this, properties, this, false));
         super.includeDefault(properties);
-        fire(new IncludeDefaultEvent(this, properties, this, true));
+        if (observed)
+            fire(new IncludeDefaultEvent(this, properties, this, true));
     }
 
     @Override
     public EventHandler addListener(EventListener listener, EventFilter filter, HandlerType type) {
-        return new EventHandlerImpl(listener, type, filter);
+        EventHandler handler;
+        if (type == HandlerType.BATCH_PROCESS && listener instanceof BatchEventListener)
+            handler = new BatchEventHandler((BatchEventListener) listener, filter);
+        else
+            handler = new EventHandlerImpl(listener, type, filter);
+        addEventHandler(handler);
+        return handler;
     }
 
     @Override
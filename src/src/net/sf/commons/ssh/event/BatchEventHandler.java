@@ -0,0 +1,289 @@
+package net.sf.commons.ssh.event;
+
+import net.sf.commons.ssh.common.LogUtils;
+import net.sf.commons.ssh.common.OrderedEventExecutor;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handler which accumulates accepted events and passes them to {@link BatchEventListener} when batch reaches
+ * maximum size or its first event waits longer than maximum delay.
+ * <p/>
+ * Batches are delivered by event executor of processor, or by shared delivery executor if processor has no
+ * executor. Timer thread only triggers flush of delayed batch, so slow listener doesn't delay other handlers.
+ * Batches of one handler are delivered one by one in order. If executor of processor is shut down, batch is
+ * delivered in calling thread, still never concurrently with other batches of the handler.
+ * <p/>
+ * Shared delivery executor runs on virtual threads if JVM supports them, otherwise on several daemon threads. Its
+ * lanes are unbounded, so without executor of processor slow listener doesn't slow down event producers, its batches
+ * are queued instead.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class BatchEventHandler implements EventHandler
+{
+	private static final Log log = LogFactory.getLog(BatchEventHandler.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	public static final long DEFAULT_DELAY_MILLIS = 50;
+	private static final int DELIVERY_THREADS = 8;
+
+	private static ScheduledExecutorService timer = null;
+	private static OrderedEventExecutor deliveryExecutor = null;
+
+	private final BatchEventListener listener;
+	private final EventFilter filter;
+	private final int batchSize;
+	private final long delayNanos;
+	private final Object deliveryLock = new Object();
+	private final Object listenerLock = new Object();
+
+	private List<Event> batch = new ArrayList<Event>();
+	private OrderedEventExecutor executor;
+	private long batchNumber = 0;
+
+	/**
+	 * @param listener  listener
+	 * @param filter    filter of events
+	 * @param batchSize maximum count of events in batch
+	 * @param delay     maximum time first event of batch waits for delivery
+	 * @param unit      unit of delay
+	 */
+	public BatchEventHandler(BatchEventListener listener, EventFilter filter, int batchSize, long delay, TimeUnit unit)
+	{
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("batch size should be positive");
+		this.listener = listener;
+		this.filter = filter;
+		this.batchSize = batchSize;
+		this.delayNanos = unit.toNanos(delay);
+	}
+
+	public BatchEventHandler(BatchEventListener listener, EventFilter filter)
+	{
+		this(listener, filter, DEFAULT_BATCH_SIZE, DEFAULT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * add event to batch, called by processor for accepted event
+	 *
+	 * @param event    event
+	 * @param executor executor of processor, null to deliver in calling thread
+	 */
+	public void offer(Event event, OrderedEventExecutor executor)
+	{
+		long number;
+		boolean first;
+		boolean full;
+		synchronized (this)
+		{
+			this.executor = executor;
+			batch.add(event);
+			number = batchNumber;
+			first = batch.size() == 1;
+			full = batch.size() >= batchSize;
+		}
+		if (full)
+			flush(number);
+		else if (first)
+			schedule(number);
+	}
+
+	/**
+	 * deliver accumulated events now
+	 */
+	public void flush()
+	{
+		flush(-1);
+	}
+
+	/**
+	 * deliver single event without batching
+	 */
+	@Override
+	public void handle(Event event) throws EventHandlingException
+	{
+		List<Event> events = new ArrayList<Event>(1);
+		events.add(event);
+		deliver(events, 0);
+	}
+
+	@Override
+	public EventFilter getEventFilter()
+	{
+		return filter;
+	}
+
+	@Override
+	public HandlerType getHandlerType()
+	{
+		return HandlerType.BATCH_PROCESS;
+	}
+
+	public int getBatchSize()
+	{
+		return batchSize;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "BatchEventHandler: size=" + batchSize + " filter = " + filter;
+	}
+
+	/**
+	 * take batch and pass it to executor or listener, batches are taken and passed under one lock to keep order
+	 *
+	 * @param number number of batch to deliver, -1 for current batch
+	 */
+	private void flush(long number)
+	{
+		synchronized (deliveryLock)
+		{
+			final List<Event> events;
+			final long taken = AbstractEventProcessor.getEventMetrics() == EventMetrics.NONE ? 0 : System.nanoTime();
+			OrderedEventExecutor executor;
+			synchronized (this)
+			{
+				if (batch.isEmpty() || (number >= 0 && number != batchNumber))
+					return;
+				events = batch;
+				batch = new ArrayList<Event>(Math.min(batchSize, DEFAULT_BATCH_SIZE));
+				batchNumber++;
+				executor = this.executor;
+			}
+			if (executor == null)
+				executor = getDeliveryExecutor();
+			try
+			{
+				// lane of handler runs batches one by one
+				executor.execute(this, new Runnable()
+				{
+					public void run()
+					{
+						deliver(events, taken);
+					}
+				});
+				return;
+			}
+			catch (RejectedExecutionException e)
+			{
+				LogUtils.debug(log, "event executor is stopped, deliver batch in current thread");
+			}
+			deliver(events, taken);
+		}
+	}
+
+	private void schedule(final long number)
+	{
+		try
+		{
+			getTimer().schedule(new Runnable()
+			{
+				public void run()
+				{
+					// flush may wait for lane space of processor executor, timer thread must not
+					getDeliveryExecutor().execute(BatchEventHandler.this, new Runnable()
+					{
+						public void run()
+						{
+							flush(number);
+						}
+					});
+				}
+			}, delayNanos, TimeUnit.NANOSECONDS);
+		}
+		catch (RejectedExecutionException e)
+		{
+			flush(number);
+		}
+	}
+
+	/**
+	 * pass batch to listener, deliveries of lane and calling threads are serialized
+	 *
+	 * @param taken time when batch was completed, 0 if it isn't measured
+	 */
+	private void deliver(List<Event> events, long taken)
+	{
+		EventMetrics metrics = AbstractEventProcessor.getEventMetrics();
+		long start = taken == 0 || metrics == EventMetrics.NONE ? 0 : System.nanoTime();
+		try
+		{
+			synchronized (listenerLock)
+			{
+				listener.handle(events);
+			}
+		}
+		catch (EventHandlingException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			LogUtils.error(log, e, "batch listener error, {0} events", events.size());
+		}
+		finally
+		{
+			if (start != 0)
+				metrics.handled(events.get(0), this, start - taken, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @return executor which delivers batches of handlers without executor of processor and triggers delayed flushes
+	 */
+	private static synchronized OrderedEventExecutor getDeliveryExecutor()
+	{
+		if (deliveryExecutor == null)
+		{
+			ThreadFactory factory = OrderedEventExecutor.virtualThreadFactory();
+			int threads = Integer.MAX_VALUE;
+			if (factory == null)
+			{
+				// listeners may block, don't let a few slow ones occupy all threads
+				threads = Math.max(DELIVERY_THREADS, 2 * Runtime.getRuntime().availableProcessors());
+				factory = new ThreadFactory()
+				{
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "event-batch-delivery-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				};
+			}
+			deliveryExecutor = new OrderedEventExecutor(threads, 0, factory);
+		}
+		return deliveryExecutor;
+	}
+
+	private static synchronized ScheduledExecutorService getTimer()
+	{
+		if (timer == null)
+		{
+			timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "event-batch-timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return timer;
+	}
+}
@@ -0,0 +1,20 @@
+package net.sf.commons.ssh.event;
+
+import java.util.List;
+
+/**
+ * Listener which receives events by batches. Register it with {@link HandlerType#BATCH_PROCESS},
+ * see {@link BatchEventHandler}.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public interface BatchEventListener extends EventListener
+{
+	/**
+	 * will call for each batch of events in order they were fired, never concurrently
+	 *
+	 * @param events not empty list of events, owned by listener
+	 */
+	void handle(List<Event> events) throws EventHandlingException;
+}
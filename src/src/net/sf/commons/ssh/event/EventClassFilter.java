@@ -21,4 +21,16 @@ public class EventClassFilter extends AbstractEventFilter implements EventFilter
 		else
 			return cls == event.getClass();
 	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected boolean mayAcceptEvent(EventType eventType, ProducerType producerType, Class<?> eventClass)
+	{
+		if (eventClass == null)
+			return true;
+		if (subClassAllowed)
+			return cls.isAssignableFrom(eventClass);
+		else
+			return cls == eventClass;
+	}
 }
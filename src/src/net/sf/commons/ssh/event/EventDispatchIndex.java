@@ -0,0 +1,285 @@
+package net.sf.commons.ssh.event;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Handlers of event processor indexed by event class, {@link EventType} and {@link ProducerType}.
+ * <p/>
+ * For every combination met in fired events index keeps handlers whose filters may accept it, so event is checked
+ * only by such handlers. Combinations are resolved lazily and updated on each add or remove of handler.
+ * Filters are analyzed by {@link AbstractEventFilter#mayAccept}, so filter must not be changed after its handler
+ * is added.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class EventDispatchIndex
+{
+    private static final EventHandler[] EMPTY = new EventHandler[0];
+    private static final int EVENT_TYPES = EventType.values().length + 1;
+    private static final int PRODUCER_TYPES = ProducerType.values().length + 1;
+
+    private final List<EventHandler> handlers = new ArrayList<EventHandler>();
+    private final Map<Class<?>, AtomicReferenceArray<EventHandler[]>> routes =
+            new ConcurrentHashMap<Class<?>, AtomicReferenceArray<EventHandler[]>>();
+    private final AtomicIntegerArray observers = new AtomicIntegerArray(EVENT_TYPES * PRODUCER_TYPES);
+    private volatile int size = 0;
+    private volatile int version = 0;
+    private final List<EventHandler> view = new HandlerList();
+
+    public synchronized void add(EventHandler handler)
+    {
+        handlers.add(handler);
+        size = handlers.size();
+        version++;
+        countObservers(handler, 1);
+        for (Map.Entry<Class<?>, AtomicReferenceArray<EventHandler[]>> en : routes.entrySet())
+        {
+            AtomicReferenceArray<EventHandler[]> slots = en.getValue();
+            for (int i = 0; i < slots.length(); i++)
+            {
+                EventHandler[] route = slots.get(i);
+                if (route != null && mayAccept(handler.getEventFilter(), eventType(i), producerType(i), en.getKey()))
+                {
+                    EventHandler[] updated = Arrays.copyOf(route, route.length + 1);
+                    updated[route.length] = handler;
+                    slots.set(i, updated);
+                }
+            }
+        }
+    }
+
+    public synchronized boolean remove(EventHandler handler)
+    {
+        if (!handlers.remove(handler))
+            return false;
+        size = handlers.size();
+        version++;
+        countObservers(handler, -1);
+        for (AtomicReferenceArray<EventHandler[]> slots : routes.values())
+        {
+            for (int i = 0; i < slots.length(); i++)
+            {
+                EventHandler[] route = slots.get(i);
+                if (route != null)
+                    slots.set(i, without(route, handler));
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return number which is changed on each add or remove of handler
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return count of slots for {@link EventType} and {@link ProducerType} combinations
+     */
+    static int slots()
+    {
+        return EVENT_TYPES * PRODUCER_TYPES;
+    }
+
+    /**
+     * @return true if some handler may accept event of given type fired by producer of given type
+     */
+    public boolean isObserved(EventType eventType, ProducerType producerType)
+    {
+        return size != 0 && observers.get(slot(eventType, producerType)) > 0;
+    }
+
+    /**
+     * @return copy of registered handlers in order of registration
+     */
+    public synchronized List<EventHandler> getHandlers()
+    {
+        return Collections.unmodifiableList(new ArrayList<EventHandler>(handlers));
+    }
+
+    /**
+     * @return live list of handlers, changes of the list are applied to index. Handlers can be added only to the
+     *         end, iterator works on copy like iterator of {@link java.util.concurrent.CopyOnWriteArrayList}
+     */
+    public List<EventHandler> asList()
+    {
+        return view;
+    }
+
+    /**
+     * @param event fired event
+     * @return handlers which may accept event in order of registration, array must not be modified
+     */
+    public EventHandler[] route(Event event)
+    {
+        if (size == 0)
+            return EMPTY;
+        Class<?> cls = event.getClass();
+        int slot = slot(event.getEventType(), event.getProducerType());
+        AtomicReferenceArray<EventHandler[]> slots = routes.get(cls);
+        if (slots != null)
+        {
+            EventHandler[] route = slots.get(slot);
+            if (route != null)
+                return route;
+        }
+        return resolve(cls, slot);
+    }
+
+    private synchronized EventHandler[] resolve(Class<?> cls, int slot)
+    {
+        AtomicReferenceArray<EventHandler[]> slots = routes.get(cls);
+        if (slots == null)
+        {
+            slots = new AtomicReferenceArray<EventHandler[]>(EVENT_TYPES * PRODUCER_TYPES);
+            routes.put(cls, slots);
+        }
+        EventHandler[] route = slots.get(slot);
+        if (route != null)
+            return route;
+        List<EventHandler> result = new ArrayList<EventHandler>();
+        for (EventHandler handler : handlers)
+            if (mayAccept(handler.getEventFilter(), eventType(slot), producerType(slot), cls))
+                result.add(handler);
+        route = result.isEmpty() ? EMPTY : result.toArray(new EventHandler[result.size()]);
+        slots.set(slot, route);
+        return route;
+    }
+
+    /**
+     * @return false if filter rejects every event with given class and types
+     */
+    public static boolean mayAccept(EventFilter filter, EventType eventType, ProducerType producerType,
+                                    Class<?> eventClass)
+    {
+        if (filter == EventFilter.DENY_ALL)
+            return false;
+        if (filter instanceof AbstractEventFilter)
+            return ((AbstractEventFilter) filter).mayAccept(eventType, producerType, eventClass);
+        return true;
+    }
+
+    private void countObservers(EventHandler handler, int delta)
+    {
+        for (int i = 0; i < observers.length(); i++)
+            if (mayAccept(handler.getEventFilter(), eventType(i), producerType(i), null))
+                observers.addAndGet(i, delta);
+    }
+
+    private static EventHandler[] without(EventHandler[] route, EventHandler handler)
+    {
+        for (int i = 0; i < route.length; i++)
+        {
+            if (route[i] == handler)
+            {
+                if (route.length == 1)
+                    return EMPTY;
+                EventHandler[] updated = new EventHandler[route.length - 1];
+                System.arraycopy(route, 0, updated, 0, i);
+                System.arraycopy(route, i + 1, updated, i, route.length - i - 1);
+                return updated;
+            }
+        }
+        return route;
+    }
+
+    static int slot(EventType eventType, ProducerType producerType)
+    {
+        int type = eventType == null ? 0 : eventType.ordinal() + 1;
+        int producer = producerType == null ? 0 : producerType.ordinal() + 1;
+        return type * PRODUCER_TYPES + producer;
+    }
+
+    private static EventType eventType(int slot)
+    {
+        int type = slot / PRODUCER_TYPES;
+        return type == 0 ? null : EventType.values()[type - 1];
+    }
+
+    private static ProducerType producerType(int slot)
+    {
+        int producer = slot % PRODUCER_TYPES;
+        return producer == 0 ? null : ProducerType.values()[producer - 1];
+    }
+
+    private class HandlerList extends AbstractList<EventHandler>
+    {
+        @Override
+        public EventHandler get(int index)
+        {
+            synchronized (EventDispatchIndex.this)
+            {
+                return handlers.get(index);
+            }
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public void add(int index, EventHandler handler)
+        {
+            synchronized (EventDispatchIndex.this)
+            {
+                if (index != handlers.size())
+                    throw new UnsupportedOperationException("handlers can be added only to the end");
+                EventDispatchIndex.this.add(handler);
+            }
+        }
+
+        @Override
+        public EventHandler remove(int index)
+        {
+            synchronized (EventDispatchIndex.this)
+            {
+                EventHandler handler = handlers.get(index);
+                EventDispatchIndex.this.remove(handler);
+                return handler;
+            }
+        }
+
+        @Override
+        public boolean remove(Object handler)
+        {
+            return handler instanceof EventHandler && EventDispatchIndex.this.remove((EventHandler) handler);
+        }
+
+        @Override
+        public void clear()
+        {
+            for (EventHandler handler : getHandlers())
+                EventDispatchIndex.this.remove(handler);
+        }
+
+        @Override
+        public Iterator<EventHandler> iterator()
+        {
+            return getHandlers().iterator();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package net.sf.commons.ssh.event;
+
+/**
+ * Receiver of measurements of event processing, see {@link AbstractEventProcessor#setEventMetrics(EventMetrics)}.
+ * Methods are called by threads which fire and handle events, so they should be fast and thread-safe.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public interface EventMetrics
+{
+    /**
+     * metrics which ignore everything, processors don't measure time while it is set
+     */
+    EventMetrics NONE = new EventMetrics()
+    {
+        public void fired(Event event)
+        {
+        }
+
+        public void handled(Event event, EventHandler handler, long waitNanos, long executionNanos)
+        {
+        }
+    };
+
+    /**
+     * called once for event by its producer
+     */
+    void fired(Event event);
+
+    /**
+     * called after handler processed event
+     *
+     * @param event          event, first event of batch for {@link HandlerType#BATCH_PROCESS}
+     * @param handler        handler
+     * @param waitNanos      time from fire (from completion of batch for batches) to start of handling,
+     *                       0 for {@link HandlerType#IMMEDIATE_PROCESS}
+     * @param executionNanos time of handling
+     */
+    void handled(Event event, EventHandler handler, long waitNanos, long executionNanos);
+}
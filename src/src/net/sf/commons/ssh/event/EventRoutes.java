@@ -0,0 +1,97 @@
+package net.sf.commons.ssh.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Handlers of processor and all its parents which may accept event, precomputed for event class, {@link EventType}
+ * and {@link ProducerType}. Routes remember versions of handlers and parents of every processor in chain and
+ * become invalid when any of them is changed.
+ * <p/>
+ * Route keeps order of recursive fire: processors from producer to root, handlers of each processor are
+ * {@link HandlerType#PUSH_TO_PROCESS} and {@link HandlerType#BATCH_PROCESS} ones first, then immediate ones.
+ *
+ * @author fob
+ * @since 2.1
+ */
+class EventRoutes
+{
+    private static final EventHandler[] EMPTY = new EventHandler[0];
+    /**
+     * protection from cycles in parents chain
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private final AbstractEventProcessor[] chain;
+    private final long[] stamps;
+    private final ConcurrentHashMap<Class<?>, AtomicReferenceArray<EventHandler[]>> routes =
+            new ConcurrentHashMap<Class<?>, AtomicReferenceArray<EventHandler[]>>();
+
+    EventRoutes(AbstractEventProcessor producer)
+    {
+        List<AbstractEventProcessor> processors = new ArrayList<AbstractEventProcessor>();
+        for (AbstractEventProcessor processor = producer; processor != null && processors.size() < MAX_DEPTH;
+             processor = processor.parentEngine)
+            processors.add(processor);
+        chain = processors.toArray(new AbstractEventProcessor[processors.size()]);
+        stamps = new long[chain.length];
+        for (int i = 0; i < chain.length; i++)
+            stamps[i] = chain[i].getTopologyStamp();
+    }
+
+    /**
+     * @return false if handlers or parent of some processor in chain were changed
+     */
+    boolean isValid(AbstractEventProcessor producer)
+    {
+        AbstractEventProcessor processor = producer;
+        for (int i = 0; i < chain.length; i++)
+        {
+            if (processor != chain[i] || processor.getTopologyStamp() != stamps[i])
+                return false;
+            processor = processor.parentEngine;
+        }
+        return processor == null || chain.length == MAX_DEPTH;
+    }
+
+    EventHandler[] route(Event event)
+    {
+        Class<?> cls = event.getClass();
+        int slot = EventDispatchIndex.slot(event.getEventType(), event.getProducerType());
+        AtomicReferenceArray<EventHandler[]> slots = routes.get(cls);
+        if (slots == null)
+        {
+            slots = new AtomicReferenceArray<EventHandler[]>(EventDispatchIndex.slots());
+            AtomicReferenceArray<EventHandler[]> old = routes.putIfAbsent(cls, slots);
+            if (old != null)
+                slots = old;
+        }
+        EventHandler[] route = slots.get(slot);
+        if (route == null)
+        {
+            route = resolve(event);
+            slots.set(slot, route);
+        }
+        return route;
+    }
+
+    private EventHandler[] resolve(Event event)
+    {
+        List<EventHandler> result = new ArrayList<EventHandler>();
+        for (AbstractEventProcessor processor : chain)
+        {
+            if (processor.handlerIndex == null)
+                continue;
+            EventHandler[] local = processor.handlerIndex.route(event);
+            for (EventHandler handler : local)
+                if (handler.getHandlerType() != HandlerType.IMMEDIATE_PROCESS)
+                    result.add(handler);
+            for (EventHandler handler : local)
+                if (handler.getHandlerType() == HandlerType.IMMEDIATE_PROCESS)
+                    result.add(handler);
+        }
+        return result.isEmpty() ? EMPTY : result.toArray(new EventHandler[result.size()]);
+    }
+}
@@ -0,0 +1,218 @@
+package net.sf.commons.ssh.event;
+
+import net.sf.commons.ssh.common.LatencyHistogram;
+import net.sf.commons.ssh.common.LogUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link EventMetrics} which keeps per {@link EventType} counts and histograms of wait and execution time.
+ * Handling longer than slow threshold is logged with handler, so listener which holds up connection is visible.
+ * <p/>
+ * Usually installed by {@link #install()}, which also registers it in platform MBean server as {@link #OBJECT_NAME}.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class EventStatistics implements EventMetrics, EventStatisticsMXBean
+{
+    private static final Log log = LogFactory.getLog(EventStatistics.class);
+
+    public static final String OBJECT_NAME = "net.sf.commons.ssh:type=EventStatistics";
+
+    private static final EventType[] TYPES = EventType.values();
+
+    private final AtomicLongArray fired = new AtomicLongArray(TYPES.length);
+    private final LatencyHistogram[] wait = new LatencyHistogram[TYPES.length];
+    private final LatencyHistogram[] execution = new LatencyHistogram[TYPES.length];
+    private final AtomicLong slowCount = new AtomicLong();
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private volatile long slowestNanos = 0;
+    private volatile String slowestHandler = null;
+
+    public EventStatistics()
+    {
+        for (int i = 0; i < TYPES.length; i++)
+        {
+            wait[i] = new LatencyHistogram();
+            execution[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * create statistics, set it to all processors and register it in platform MBean server
+     *
+     * @return installed statistics
+     */
+    public static EventStatistics install()
+    {
+        EventStatistics statistics = new EventStatistics();
+        AbstractEventProcessor.setEventMetrics(statistics);
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(statistics, name);
+        }
+        catch (JMException e)
+        {
+            LogUtils.error(log, e, "can''t register {0}", OBJECT_NAME);
+        }
+        return statistics;
+    }
+
+    /**
+     * stop collecting and unregister statistics from MBean server
+     */
+    public static void uninstall()
+    {
+        AbstractEventProcessor.setEventMetrics(EventMetrics.NONE);
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+        catch (JMException e)
+        {
+            LogUtils.error(log, e, "can''t unregister {0}", OBJECT_NAME);
+        }
+    }
+
+    public void fired(Event event)
+    {
+        EventType type = event.getEventType();
+        if (type != null)
+            fired.incrementAndGet(type.ordinal());
+    }
+
+    public void handled(Event event, EventHandler handler, long waitNanos, long executionNanos)
+    {
+        EventType type = event.getEventType();
+        if (type != null)
+        {
+            wait[type.ordinal()].record(waitNanos);
+            execution[type.ordinal()].record(executionNanos);
+        }
+        if (executionNanos >= slowThresholdNanos)
+        {
+            slowCount.incrementAndGet();
+            LogUtils.warn(log, "slow event handler {0}: {1} ms for event {2}", handler,
+                    TimeUnit.NANOSECONDS.toMillis(executionNanos), type);
+            if (executionNanos > slowestNanos)
+            {
+                slowestNanos = executionNanos;
+                slowestHandler = handler + ": " + TimeUnit.NANOSECONDS.toMillis(executionNanos) + " ms";
+            }
+        }
+    }
+
+    public long getFiredCount(EventType type)
+    {
+        return fired.get(type.ordinal());
+    }
+
+    public LatencyHistogram getWaitHistogram(EventType type)
+    {
+        return wait[type.ordinal()];
+    }
+
+    public LatencyHistogram getExecutionHistogram(EventType type)
+    {
+        return execution[type.ordinal()];
+    }
+
+    public Map<String, Long> getFiredCounts()
+    {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (EventType type : TYPES)
+            result.put(type.name(), fired.get(type.ordinal()));
+        return result;
+    }
+
+    public Map<String, Long> getHandledCounts()
+    {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (EventType type : TYPES)
+            result.put(type.name(), execution[type.ordinal()].getCount());
+        return result;
+    }
+
+    public Map<String, Long> getMeanWaitNanos()
+    {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (EventType type : TYPES)
+            result.put(type.name(), wait[type.ordinal()].getMean());
+        return result;
+    }
+
+    public Map<String, Long> getMeanExecutionNanos()
+    {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (EventType type : TYPES)
+            result.put(type.name(), execution[type.ordinal()].getMean());
+        return result;
+    }
+
+    public long[] getWaitPercentiles(String eventType)
+    {
+        return percentiles(wait[EventType.valueOf(eventType).ordinal()]);
+    }
+
+    public long[] getExecutionPercentiles(String eventType)
+    {
+        return percentiles(execution[EventType.valueOf(eventType).ordinal()]);
+    }
+
+    public long getSlowThresholdMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    public void setSlowThresholdMillis(long millis)
+    {
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public long getSlowHandlingCount()
+    {
+        return slowCount.get();
+    }
+
+    public String getSlowestHandler()
+    {
+        return slowestHandler;
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < TYPES.length; i++)
+        {
+            fired.set(i, 0);
+            wait[i].reset();
+            execution[i].reset();
+        }
+        slowCount.set(0);
+        slowestNanos = 0;
+        slowestHandler = null;
+    }
+
+    private static long[] percentiles(LatencyHistogram histogram)
+    {
+        return new long[]{histogram.getPercentile(0.5), histogram.getPercentile(0.9),
+                histogram.getPercentile(0.99), histogram.getMax()};
+    }
+}
@@ -0,0 +1,43 @@
+package net.sf.commons.ssh.event;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link EventStatistics}. Durations are in nanoseconds, maps are keyed by {@link EventType} name.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public interface EventStatisticsMXBean
+{
+    Map<String, Long> getFiredCounts();
+
+    Map<String, Long> getHandledCounts();
+
+    Map<String, Long> getMeanWaitNanos();
+
+    Map<String, Long> getMeanExecutionNanos();
+
+    /**
+     * @return 50th, 90th, 99th percentiles and maximum of wait for events of given type
+     */
+    long[] getWaitPercentiles(String eventType);
+
+    /**
+     * @return 50th, 90th, 99th percentiles and maximum of execution for events of given type
+     */
+    long[] getExecutionPercentiles(String eventType);
+
+    long getSlowThresholdMillis();
+
+    void setSlowThresholdMillis(long millis);
+
+    long getSlowHandlingCount();
+
+    /**
+     * @return description of handler with longest execution and its time
+     */
+    String getSlowestHandler();
+
+    void reset();
+}
@@ -12,5 +12,7 @@ public enum EventType
     CONNECTED,
     AUTHENTICATED,
     OPENNED,
-    READ_AVAILABLE;
+    READ_AVAILABLE,
+    BUFFER_HIGH,
+    BUFFER_DRAINED;
 }
@@ -14,4 +14,10 @@ public class EventTypeFilter extends AbstractEventFilter implements EventFilter
     {
         return type == event.getEventType();
     }
+
+    @Override
+    protected boolean mayAcceptEvent(EventType eventType, ProducerType producerType, Class<?> eventClass)
+    {
+        return type == eventType;
+    }
 }
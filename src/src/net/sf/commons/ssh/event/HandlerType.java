@@ -4,5 +4,9 @@ package net.sf.commons.ssh.event;
 public enum HandlerType
 {
     IMMEDIATE_PROCESS,
-    PUSH_TO_PROCESS;
+    PUSH_TO_PROCESS,
+    /**
+     * events are accumulated and passed to {@link BatchEventListener} by lists, see {@link BatchEventHandler}
+     */
+    BATCH_PROCESS;
 }
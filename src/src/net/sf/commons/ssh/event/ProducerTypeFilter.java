@@ -15,4 +15,10 @@ public class ProducerTypeFilter extends AbstractEventFilter
     {
         return producerType == event.getProducerType();
     }
+
+    @Override
+    protected boolean mayAcceptEvent(EventType eventType, ProducerType producerType, Class<?> eventClass)
+    {
+        return this.producerType == producerType;
+    }
 }
@@ -0,0 +1,316 @@
+package net.sf.commons.ssh.event;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.sf.commons.ssh.event.states.State;
+import net.sf.commons.ssh.options.Properties;
+
+/**
+ * Selector for many watched objects. Trigger of state puts its object to ready queue, select checks states only of
+ * queued objects and objects which were in state on previous select, so it costs O(ready) instead of O(registered).
+ * Every trigger wakes up one waiting thread, thread which selected something wakes up next one if queue isn't empty.
+ * <p/>
+ * States are checked without lock of selector, so state may lock watched object.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class ReadySetSelector extends Selector
+{
+	private final Map<Object, Entry> entries = new ConcurrentHashMap<Object, Entry>();
+	private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+	private final Set<Entry> ready = Collections.newSetFromMap(new ConcurrentHashMap<Entry, Boolean>());
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+	private final boolean registerListenerOnObject;
+
+	public ReadySetSelector(EventProcessor processor, Properties properties)
+	{
+		super(processor, properties);
+		this.registerListenerOnObject = SelectorPropertiesBuilder.getInstance()
+				.isRegisterListenersOnObjects(properties);
+	}
+
+	@Override
+	public <T> void register(State<T> state, T object)
+	{
+		Entry entry;
+		synchronized (entries)
+		{
+			entry = entries.get(object);
+			if (entry == null)
+			{
+				entry = new Entry(object);
+				entries.put(object, entry);
+			}
+		}
+		entry.states.add(state);
+
+		EventProcessor processor = this.processor;
+		EventFilter filter = state.getTrigger();
+		if (registerListenerOnObject && object instanceof EventProcessor)
+			processor = (EventProcessor) object;
+		else
+			filter = new ProducerEventFilter(object).andFilterBy(filter);
+		entry.handlers.add(processor.addListener(entry, filter));
+		// state may be reached already
+		entry.trigger();
+	}
+
+	@Override
+	public void unRegister(Object object)
+	{
+		Entry entry;
+		synchronized (entries)
+		{
+			entry = entries.remove(object);
+		}
+		if (entry == null)
+			throw new IllegalArgumentException("register object " + object + " before unregister it");
+		entry.registered = false;
+		ready.remove(entry);
+		EventProcessor processor = this.processor;
+		if (registerListenerOnObject && object instanceof EventProcessor)
+			processor = (EventProcessor) object;
+		for (EventHandler handler : entry.handlers)
+			processor.removeEventHandler(handler);
+	}
+
+	@Override
+	public void clean()
+	{
+		for (Object object : new ArrayList<Object>(entries.keySet()))
+			unRegister(object);
+		wakeAll();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		clean();
+	}
+
+	@Override
+	public Collection<StateHolder> select(long timeout, TimeUnit timeUnit) throws InterruptedException
+	{
+		long deadline = deadline(timeout, timeUnit);
+		while (true)
+		{
+			checkRegistered();
+			List<StateHolder> result = collect(false);
+			if (!result.isEmpty())
+			{
+				wakeNext();
+				return result;
+			}
+			if (!await(deadline))
+				return null;
+		}
+	}
+
+	@Override
+	public StateHolder selectFirst(long timeout, TimeUnit timeUnit) throws InterruptedException
+	{
+		long deadline = deadline(timeout, timeUnit);
+		while (true)
+		{
+			checkRegistered();
+			List<StateHolder> result = collect(true);
+			if (!result.isEmpty())
+			{
+				wakeNext();
+				return result.get(0);
+			}
+			if (!await(deadline))
+				return null;
+		}
+	}
+
+	@Override
+	public Collection<StateHolder> selectAll(long timeout, TimeUnit timeUnit) throws InterruptedException
+	{
+		long deadline = deadline(timeout, timeUnit);
+		while (true)
+		{
+			checkRegistered();
+			List<StateHolder> result = collect(false);
+			if (ready.size() >= entries.size() && ready.containsAll(entries.values()))
+			{
+				wakeNext();
+				return result;
+			}
+			if (!await(deadline))
+				return null;
+		}
+	}
+
+	/**
+	 * @return count of objects which were in state on last select
+	 */
+	public int getReadyCount()
+	{
+		return ready.size();
+	}
+
+	/**
+	 * check queued and ready objects
+	 *
+	 * @param first stop on first object in state
+	 */
+	private List<StateHolder> collect(boolean first)
+	{
+		List<Entry> candidates = new ArrayList<Entry>(ready);
+		Entry entry;
+		while ((entry = queue.poll()) != null)
+		{
+			entry.queued.set(false);
+			if (!ready.contains(entry))
+				candidates.add(entry);
+		}
+		List<StateHolder> result = new ArrayList<StateHolder>();
+		for (int i = 0; i < candidates.size(); i++)
+		{
+			entry = candidates.get(i);
+			if (!entry.registered)
+				continue;
+			int found = result.size();
+			entry.check(result);
+			if (result.size() > found)
+			{
+				ready.add(entry);
+				if (first)
+				{
+					// not checked candidates are checked by next select
+					for (int j = i + 1; j < candidates.size(); j++)
+						if (!ready.contains(candidates.get(j)))
+							candidates.get(j).trigger();
+					break;
+				}
+			}
+			else
+				ready.remove(entry);
+		}
+		return result;
+	}
+
+	private void checkRegistered()
+	{
+		if (entries.isEmpty())
+			throw new IllegalArgumentException("register some objects to wait its states");
+	}
+
+	private static long deadline(long timeout, TimeUnit timeUnit)
+	{
+		return timeout == 0 ? 0 : System.nanoTime() + timeUnit.toNanos(timeout);
+	}
+
+	/**
+	 * @return false if deadline is reached
+	 */
+	private boolean await(long deadline) throws InterruptedException
+	{
+		lock.lock();
+		try
+		{
+			if (!queue.isEmpty())
+				return true;
+			if (deadline == 0)
+			{
+				changed.await();
+				return true;
+			}
+			long left = deadline - System.nanoTime();
+			if (left <= 0)
+				return false;
+			changed.awaitNanos(left);
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void wakeNext()
+	{
+		if (!queue.isEmpty())
+			wakeOne();
+	}
+
+	private void wakeOne()
+	{
+		lock.lock();
+		try
+		{
+			changed.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void wakeAll()
+	{
+		lock.lock();
+		try
+		{
+			changed.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private class Entry implements EventListener
+	{
+		private final Object object;
+		private final List<State<?>> states = new CopyOnWriteArrayList<State<?>>();
+		private final List<EventHandler> handlers = new CopyOnWriteArrayList<EventHandler>();
+		private final AtomicBoolean queued = new AtomicBoolean(false);
+		private volatile boolean registered = true;
+
+		Entry(Object object)
+		{
+			this.object = object;
+		}
+
+		@Override
+		public void handle(Event event)
+		{
+			trigger();
+		}
+
+		void trigger()
+		{
+			if (registered && queued.compareAndSet(false, true))
+			{
+				queue.add(this);
+				wakeOne();
+			}
+		}
+
+		// every state was registered for this object
+		@SuppressWarnings("unchecked")
+		void check(List<StateHolder> result)
+		{
+			for (State<?> state : states)
+				if (((State<Object>) state).checkState(object))
+					result.add(new StateHolder(state, object));
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package net.sf.commons.ssh.event;
+
+/**
+ * Event which may be reused by its producer after dispatch, see
+ * {@link net.sf.commons.ssh.connector.ConnectorPropertiesBuilder#setEventRecycling}. Listener which keeps event
+ * after {@code handle} returns should keep {@link #retain()} instead. Asynchronous handlers get retained events.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public interface RecyclableEvent extends Event
+{
+    /**
+     * @return this event if it isn't pooled, otherwise its copy which is never reused
+     */
+    Event retain();
+}
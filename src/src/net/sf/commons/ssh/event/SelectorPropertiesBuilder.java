@@ -21,7 +21,7 @@ public class SelectorPropertiesBuilder extends PropertiesBuilder
 	public static final String KEY_SELECTOR_IMPLEMENTATION = "net.sf.commons.ssh.event.SelectorPropertiesBuilder.implementation";
 	
 	@PropertyType(Boolean.class)
-	public static final String KEY_REGISTER_LISTENERS_ON_OBJECTS = "net.sf.commons.ssh.event.SelectorPropertiesBuilder.implementation";
+	public static final String KEY_REGISTER_LISTENERS_ON_OBJECTS = "net.sf.commons.ssh.event.SelectorPropertiesBuilder.registerListenersOnObjects";
 	
 	public synchronized static SelectorPropertiesBuilder getInstance()
 	{
@@ -43,6 +43,10 @@ public class SelectorPropertiesBuilder extends PropertiesBuilder
 		return (Class<? extends Selector>) getProperty(properties, KEY_SELECTOR_IMPLEMENTATION);
 	}
 	
+	/**
+	 * @param config configurable
+	 * @param cls {@link SynchronizedSelector} by default, {@link ReadySetSelector} for many watched objects
+	 */
 	public void setSelectorImplementation(Configurable config,Class<? extends Selector> cls)
 	{
 		setProperty(config,KEY_SELECTOR_IMPLEMENTATION, cls);		
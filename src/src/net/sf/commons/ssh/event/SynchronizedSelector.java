@@ -67,7 +67,8 @@ public class SynchronizedSelector extends Selector
 			processor = (EventProcessor) object;
 		else
 			filter = new ProducerEventFilter(object).andFilterBy(filter);
-		processor.addListener(new SelectorListener(), filter);
+		handlers.add(processor.addListener(new SelectorListener(), filter));
+		eventHandlers.put(object, handlers);
 	}
 
 	@Override
@@ -90,7 +91,7 @@ public class SynchronizedSelector extends Selector
 	@Override
 	public synchronized void clean()
 	{
-		for (Object obj : watchedObjects.keySet())
+		for (Object obj : new ArrayList<Object>(watchedObjects.keySet()))
 			unRegister(obj);
 		this.notifyAll();
 	}
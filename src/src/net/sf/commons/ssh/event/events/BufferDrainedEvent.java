@@ -0,0 +1,47 @@
+/**
+ * 
+ */
+package net.sf.commons.ssh.event.events;
+
+import java.io.InputStream;
+
+import net.sf.commons.ssh.event.AbstractEvent;
+import net.sf.commons.ssh.event.AbstractEventProcessor;
+import net.sf.commons.ssh.event.EventType;
+
+/**
+ * Session stream was drained to low watermark after {@link BufferHighEvent}.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class BufferDrainedEvent extends AbstractEvent
+{
+
+	private InputStream in;
+	private boolean isError = false;
+
+	/**
+	 * @param producer
+	 * @param in
+	 * @param isError
+	 */
+	public BufferDrainedEvent(AbstractEventProcessor producer, InputStream in, boolean isError)
+	{
+		super(producer);
+		this.in = in;
+		this.isError = isError;
+		eventType = EventType.BUFFER_DRAINED;
+	}
+
+	public InputStream getIn()
+	{
+		return in;
+	}
+
+	public boolean isError()
+	{
+		return isError;
+	}
+
+}
@@ -0,0 +1,47 @@
+/**
+ * 
+ */
+package net.sf.commons.ssh.event.events;
+
+import java.io.InputStream;
+
+import net.sf.commons.ssh.event.AbstractEvent;
+import net.sf.commons.ssh.event.AbstractEventProcessor;
+import net.sf.commons.ssh.event.EventType;
+
+/**
+ * Session stream buffered data reached high watermark, reader should drain it before library thread blocks.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class BufferHighEvent extends AbstractEvent
+{
+
+	private InputStream in;
+	private boolean isError = false;
+
+	/**
+	 * @param producer
+	 * @param in
+	 * @param isError
+	 */
+	public BufferHighEvent(AbstractEventProcessor producer, InputStream in, boolean isError)
+	{
+		super(producer);
+		this.in = in;
+		this.isError = isError;
+		eventType = EventType.BUFFER_HIGH;
+	}
+
+	public InputStream getIn()
+	{
+		return in;
+	}
+
+	public boolean isError()
+	{
+		return isError;
+	}
+
+}
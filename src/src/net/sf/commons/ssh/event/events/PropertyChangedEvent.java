@@ -5,14 +5,16 @@ package net.sf.commons.ssh.event.events;
 
 import net.sf.commons.ssh.event.AbstractEvent;
 import net.sf.commons.ssh.event.AbstractEventProcessor;
+import net.sf.commons.ssh.event.Event;
 import net.sf.commons.ssh.event.EventType;
+import net.sf.commons.ssh.event.RecyclableEvent;
 
 /**
  * @author fob
  * @date 14.08.2011
  * @since 2.0
  */
-public class PropertyChangedEvent extends AbstractEvent
+public class PropertyChangedEvent extends AbstractEvent implements RecyclableEvent
 {
     private String key;
     private Object newValue;
@@ -43,4 +45,21 @@ public class PropertyChangedEvent extends AbstractEvent
         return oldValue;
     }
 
+    /**
+     * reinitialize pooled event
+     */
+    public PropertyChangedEvent reset(String key, Object newValue, Object oldValue)
+    {
+        this.key = key;
+        this.newValue = newValue;
+        this.oldValue = oldValue;
+        return this;
+    }
+
+    @Override
+    public Event retain()
+    {
+        return pooled ? new PropertyChangedEvent(producer, key, newValue, oldValue) : this;
+    }
+
 }
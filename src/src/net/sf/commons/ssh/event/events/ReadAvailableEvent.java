@@ -7,14 +7,16 @@ import java.io.InputStream;
 
 import net.sf.commons.ssh.event.AbstractEvent;
 import net.sf.commons.ssh.event.AbstractEventProcessor;
+import net.sf.commons.ssh.event.Event;
 import net.sf.commons.ssh.event.EventType;
+import net.sf.commons.ssh.event.RecyclableEvent;
 
 /**
  * @author fob
  * @date 21.08.2011
  * @since 2.0
  */
-public class ReadAvailableEvent extends AbstractEvent
+public class ReadAvailableEvent extends AbstractEvent implements RecyclableEvent
 {
 	
 	private InputStream in;
@@ -39,5 +41,21 @@ public class ReadAvailableEvent extends AbstractEvent
 	{
 		return isError;
 	}
+
+	/**
+	 * reinitialize pooled event
+	 */
+	public ReadAvailableEvent reset(InputStream in, boolean isError)
+	{
+		this.in = in;
+		this.isError = isError;
+		return this;
+	}
+
+	@Override
+	public Event retain()
+	{
+		return pooled ? new ReadAvailableEvent(producer, in, isError) : this;
+	}
 	
 }
@@ -3,9 +3,11 @@ package net.sf.commons.ssh.event.events;
 
 import net.sf.commons.ssh.event.AbstractEvent;
 import net.sf.commons.ssh.event.AbstractEventProcessor;
+import net.sf.commons.ssh.event.Event;
 import net.sf.commons.ssh.event.EventType;
+import net.sf.commons.ssh.event.RecyclableEvent;
 
-public class SetPropertyEvent extends AbstractEvent
+public class SetPropertyEvent extends AbstractEvent implements RecyclableEvent
 {
     private String key;
     private Object newValue;
@@ -35,4 +37,21 @@ public class SetPropertyEvent extends AbstractEvent
     {
         return oldValue;
     }
+
+    /**
+     * reinitialize pooled event
+     */
+    public SetPropertyEvent reset(String key, Object newValue, Object oldValue)
+    {
+        this.key = key;
+        this.newValue = newValue;
+        this.oldValue = oldValue;
+        return this;
+    }
+
+    @Override
+    public Event retain()
+    {
+        return pooled ? new SetPropertyEvent(producer, key, newValue, oldValue) : this;
+    }
 }
@@ -17,6 +17,7 @@ import net.sf.commons.ssh.common.Status;
 import net.sf.commons.ssh.common.UnexpectedRuntimeException;
 import net.sf.commons.ssh.event.AbstractEventProcessor;
 import net.sf.commons.ssh.event.events.ClosedEvent;
+import net.sf.commons.ssh.event.events.OpennedEvent;
 import net.sf.commons.ssh.event.events.ReadAvailableEvent;
 import net.sf.commons.ssh.options.Properties;
 import net.sf.commons.ssh.session.AbstractSession;
@@ -143,6 +144,9 @@ public class J2SSHShellSession extends AbstractSession implements ShellSession
 				throw (IOException)e;
 			throw new UnexpectedRuntimeException(e.getMessage(),e);
 		}
+		setContainerStatus(Status.OPENNED);
+		fire(new OpennedEvent(this));
+		setContainerStatus(Status.INPROGRESS);
 	}
 
 	/**
@@ -195,7 +199,7 @@ public class J2SSHShellSession extends AbstractSession implements ShellSession
 		@Override
 		public void onChannelEOF(Channel channel)
 		{
-						
+			signalEOF();
 		}
 
 		/**
@@ -189,33 +189,35 @@ public class JSCHConnection extends AbstractConnection
 			pushError(error);
 		}
 		ConnectionPropertiesBuilder cpb = ConnectionPropertiesBuilder.getInstance();
-		AuthenticationMethod method = cpb.getAuthenticationMethod(this);
+		// configuration doesn't change while connecting
+		Properties conf = freeze();
+		AuthenticationMethod method = cpb.getAuthenticationMethod(conf);
 		try
 		{
 			switch (method)
 			{
 			case NONE:
-				connection = jsch.getSession("nobody", cpb.getHost(this));
-				setupCommonConnectionParameters();
+				connection = jsch.getSession("nobody", cpb.getHost(conf));
+				setupCommonConnectionParameters(conf);
 				break;
 			case PASSWORD:
 				try
 				{
-					PasswordPropertiesBuilder.getInstance().verify(this);
+					PasswordPropertiesBuilder.getInstance().verify(conf);
 				}
 				catch (IllegalPropertyException e)
 				{
 					throw new AuthenticationException("check required parameters for " + method
 							+ " authentication method");
 				}
-				connection = jsch.getSession(PasswordPropertiesBuilder.getInstance().getLogin(this),cpb.getHost(this));
-				setupCommonConnectionParameters();
-				connection.setPassword(PasswordPropertiesBuilder.getInstance().getPassword(this));
+				connection = jsch.getSession(PasswordPropertiesBuilder.getInstance().getLogin(conf),cpb.getHost(conf));
+				setupCommonConnectionParameters(conf);
+				connection.setPassword(PasswordPropertiesBuilder.getInstance().getPassword(conf));
 				break;
 			case PUBLICKEY:
 				try
 				{
-					PublicKeyPropertiesBuilder.getInstance().verify(this);
+					PublicKeyPropertiesBuilder.getInstance().verify(conf);
 				}
 				catch (IllegalPropertyException e)
 				{
@@ -223,15 +225,15 @@ public class JSCHConnection extends AbstractConnection
 							+ " authentication method");
 				}
 				
-				jsch.addIdentity(PublicKeyPropertiesBuilder.getInstance().getKey(this).toString()
-						,PublicKeyPropertiesBuilder.getInstance().getKey(this) , null, PublicKeyPropertiesBuilder.getInstance().getPassphrase(this).getBytes());
-				connection = jsch.getSession(PublicKeyPropertiesBuilder.getInstance().getLogin(this),cpb.getHost(this));
-				setupCommonConnectionParameters();
+				jsch.addIdentity(PublicKeyPropertiesBuilder.getInstance().getKey(conf).toString()
+						,PublicKeyPropertiesBuilder.getInstance().getKey(conf) , null, PublicKeyPropertiesBuilder.getInstance().getPassphrase(conf).getBytes());
+				connection = jsch.getSession(PublicKeyPropertiesBuilder.getInstance().getLogin(conf),cpb.getHost(conf));
+				setupCommonConnectionParameters(conf);
 				break;
 			default:
 				throw new UnsupportedOperationException("JSCH library doesn't support " + method + " authentication");
 			}
-			Long authenticateTimeout = ConnectionPropertiesBuilder.getInstance().getAuthenticateTimeout(this);
+			Long authenticateTimeout = ConnectionPropertiesBuilder.getInstance().getAuthenticateTimeout(conf);
 			if (authenticateTimeout != null)
 				connection.connect(authenticateTimeout.intValue());
 			else
@@ -246,27 +248,27 @@ public class JSCHConnection extends AbstractConnection
 		fire(new AuthenticatedEvent(this));
 	}
  
-	private void setupCommonConnectionParameters() throws JSchException
+	private void setupCommonConnectionParameters(Properties conf) throws JSchException
 	{
-		Long soTimeout = ConnectionPropertiesBuilder.getInstance().getSoTimeout(this);
+		Long soTimeout = ConnectionPropertiesBuilder.getInstance().getSoTimeout(conf);
 		if (soTimeout != null)
 			connection.setTimeout(soTimeout.intValue());
 
-		Long connectTimeout = ConnectionPropertiesBuilder.getInstance().getConnectTimeout(this);
+		Long connectTimeout = ConnectionPropertiesBuilder.getInstance().getConnectTimeout(conf);
 		if (connectTimeout != null)
 			connection.setSocketFactory(new JschSocketFactory(connectTimeout.intValue(), soTimeout == null ? 0
 					: soTimeout.intValue()));
 
-		int port = ConnectionPropertiesBuilder.getInstance().getPort(this);
+		int port = ConnectionPropertiesBuilder.getInstance().getPort(conf);
 		connection.setPort(port);
 
-		initProxy();
+		initProxy(conf);
 
-		Set<String> libraryOptions = InitialPropertiesBuilder.getInstance().getLibraryOptions(this);
+		Set<String> libraryOptions = InitialPropertiesBuilder.getInstance().getLibraryOptions(conf);
 		LogUtils.trace(log, "push options {0} to library", libraryOptions);
 		for(String option: libraryOptions)
 		{
-			Object value = this.getProperty(option);
+			Object value = conf.getProperty(option);
 			LogUtils.trace(log, "push {0}={1}", option,value);
 			if(value ==null || !(value instanceof String))
 				continue;
@@ -274,25 +276,25 @@ public class JSCHConnection extends AbstractConnection
 		}
 	}
 
-	private void initProxy() {
-		ProxyType proxyType = ConnectionPropertiesBuilder.getInstance().getProxyType(this);
-		String proxyHost = ConnectionPropertiesBuilder.getInstance().getProxyHost(this);
-		Integer proxyPort = ConnectionPropertiesBuilder.getInstance().getProxyPort(this);
+	private void initProxy(Properties conf) {
+		ProxyType proxyType = ConnectionPropertiesBuilder.getInstance().getProxyType(conf);
+		String proxyHost = ConnectionPropertiesBuilder.getInstance().getProxyHost(conf);
+		Integer proxyPort = ConnectionPropertiesBuilder.getInstance().getProxyPort(conf);
 		if (proxyType != null) {
 			switch (proxyType) {
 				case HTTP:
 					ProxyHTTP proxyHTTP = new ProxyHTTP(proxyHost, proxyPort);
 					proxyHTTP.setUserPasswd(
-							ConnectionPropertiesBuilder.getInstance().getProxyUser(this),
-							ConnectionPropertiesBuilder.getInstance().getProxyPasswd(this)
+							ConnectionPropertiesBuilder.getInstance().getProxyUser(conf),
+							ConnectionPropertiesBuilder.getInstance().getProxyPasswd(conf)
 					);
 					connection.setProxy(proxyHTTP);
 					return;
 				case SOCKS4:
 					ProxySOCKS4 proxySOCKS4 = new ProxySOCKS4(proxyHost, proxyPort);
 					proxySOCKS4.setUserPasswd(
-							ConnectionPropertiesBuilder.getInstance().getProxyUser(this),
-							ConnectionPropertiesBuilder.getInstance().getProxyPasswd(this)
+							ConnectionPropertiesBuilder.getInstance().getProxyUser(conf),
+							ConnectionPropertiesBuilder.getInstance().getProxyPasswd(conf)
 					);
 					connection.setProxy(proxySOCKS4);
 
@@ -300,8 +302,8 @@ public class JSCHConnection extends AbstractConnection
 				case SOCKS5:
 					ProxySOCKS5 proxySOCKS5 = new ProxySOCKS5(proxyHost, proxyPort);
 					proxySOCKS5.setUserPasswd(
-							ConnectionPropertiesBuilder.getInstance().getProxyUser(this),
-							ConnectionPropertiesBuilder.getInstance().getProxyPasswd(this)
+							ConnectionPropertiesBuilder.getInstance().getProxyUser(conf),
+							ConnectionPropertiesBuilder.getInstance().getProxyPasswd(conf)
 					);
 					connection.setProxy(proxySOCKS5);
 			}
@@ -4,9 +4,7 @@ import com.jcraft.jsch.ChannelSubsystem;
 import com.jcraft.jsch.JSchException;
 import net.sf.commons.ssh.common.*;
 import net.sf.commons.ssh.connection.ConnectionPropertiesBuilder;
-import net.sf.commons.ssh.event.AbstractEventProcessor;
 import net.sf.commons.ssh.event.events.OpennedEvent;
-import net.sf.commons.ssh.event.events.ReadAvailableEvent;
 import net.sf.commons.ssh.options.Properties;
 import net.sf.commons.ssh.session.SubsystemSession;
 import net.sf.commons.ssh.session.SubsystemSessionPropertiesBuilder;
@@ -37,54 +35,54 @@ public class JSCHSubsystemSession extends JSCHSession implements SubsystemSessio
     protected void openImpl() throws IOException
     {
         SubsystemSessionPropertiesBuilder sspb = SubsystemSessionPropertiesBuilder.getInstance();
-        LogUtils.trace(log, "openImpl(): open jsch subsystem " + sspb.getSubsystemName(this) + " session");
-        sspb.verify(this);
-        ((ChannelSubsystem)session).setSubsystem(sspb.getSubsystemName(this));
+        Properties conf = freeze();
+        LogUtils.trace(log, "openImpl(): open jsch subsystem " + sspb.getSubsystemName(conf) + " session");
+        sspb.verify(conf);
+        ((ChannelSubsystem)session).setSubsystem(sspb.getSubsystemName(conf));
         ((ChannelSubsystem)session).setPty(true);
-        ((ChannelSubsystem)session).setPtyType(sspb.getTerminalType(this), sspb.getTerminalCols(this), sspb.getTerminalRows(this),
-                sspb.getTerminalWidth(this), sspb.getTerminalHeight(this));
+        ((ChannelSubsystem)session).setPtyType(sspb.getTerminalType(conf), sspb.getTerminalCols(conf), sspb.getTerminalRows(conf),
+                sspb.getTerminalWidth(conf), sspb.getTerminalHeight(conf));
 
-        final Integer initialSize = PipePropertiesBuilder.getInstance().getInitialSize(this);
-        final Integer maximumSize = PipePropertiesBuilder.getInstance().getMaximumSize(this);
-        final Integer stepSize = PipePropertiesBuilder.getInstance().getStepSize(this);
-        final Integer modifier = PipePropertiesBuilder.getInstance().getModifier(this);
-        final BufferAllocator allocator= PipePropertiesBuilder.getInstance().getAllocator(this);
+        final PipePropertiesBuilder ppb = PipePropertiesBuilder.getInstance();
 
-        PipedInputStream outPipe = new PipedInputStream(initialSize,maximumSize,stepSize,modifier,allocator);
+        PipedInputStream outPipe = ppb.createPipe(conf, this);
         out = new PipedOutputStream(outPipe);
         session.setInputStream(outPipe);
 
 
-        PipedInputStream inputsStream = new PipedInputStream(initialSize, maximumSize, stepSize, modifier, allocator);
-        Long soTimeout = ConnectionPropertiesBuilder.getInstance().getSoTimeout(properties);
+        PipedInputStream inputsStream = ppb.createPipe(conf, this);
+        Long soTimeout = ConnectionPropertiesBuilder.getInstance().getSoTimeout(conf);
         inputsStream.setWaitTimeout(soTimeout == null? 0 : soTimeout);
         in = inputsStream;
-        libraryOut = new PipedOutputStream((PipedInputStream) in);
+        libraryOut = ppb.createOutput((PipedInputStream) in, conf);
 
         //fire events
-        final AbstractEventProcessor thisSession = this;
         libraryOut.setOnWrite(new Runnable()
         {
             @Override
             public void run()
             {
-                fire(new ReadAvailableEvent(thisSession, in, false));
+                fireReadAvailable(in, false);
             }
         });
+        fireWatermarkEvents((PipedInputStream) in, false);
+        // jsch closes output stream when remote side sends EOF
+        signalEOFOnClose(libraryOut);
 
         session.setOutputStream(libraryOut);
-        if (sspb.isSeparateErrorStream(this))
+        if (sspb.isSeparateErrorStream(conf))
         {
-            err = new PipedInputStream(initialSize,maximumSize,stepSize,modifier,allocator);
-            libraryErr = new PipedOutputStream((PipedInputStream) err);
+            err = ppb.createPipe(conf, this);
+            libraryErr = ppb.createOutput((PipedInputStream) err, conf);
             libraryErr.setOnWrite(new Runnable()
             {
                 @Override
                 public void run()
                 {
-                    fire(new ReadAvailableEvent(thisSession, err, false));
+                    fireReadAvailable(err, false);
                 }
             });
+            fireWatermarkEvents((PipedInputStream) err, true);
             session.setExtOutputStream(libraryErr);
         }
         else
@@ -95,7 +93,7 @@ public class JSCHSubsystemSession extends JSCHSession implements SubsystemSessio
 
         try
         {
-            Long timeout = sspb.getOpenTimeout(this);
+            Long timeout = sspb.getOpenTimeout(conf);
             if(timeout == null)
                 session.connect();
             else
@@ -59,8 +59,6 @@ public class SSHDConnectionSync extends AbstractConnection {
      */
     @Override
     public boolean isConnected() {
-
-        connection.waitFor(Collections.singleton(ClientSession.ClientSessionEvent.WAIT_AUTH), 1);
         Status cStatus = getContainerStatus();
         return cStatus.betweenBoth(Status.CONNECTED, Status.INPROGRESS);
     }
@@ -70,7 +68,6 @@ public class SSHDConnectionSync extends AbstractConnection {
      */
     @Override
     public boolean isAuthenticated() {
-        connection.waitFor(Collections.singleton(ClientSession.ClientSessionEvent.AUTHED), 1);
         Status cStatus = getContainerStatus();
         return cStatus.betweenBoth(Status.AUTHENTICATED, Status.INPROGRESS);
     }
@@ -136,7 +133,6 @@ public class SSHDConnectionSync extends AbstractConnection {
      */
     @Override
     public boolean isClosed() {
-        connection.waitFor(Collections.singleton(ClientSession.ClientSessionEvent.CLOSED), 1);
         return getContainerStatus() == Status.CLOSED;
     }
 
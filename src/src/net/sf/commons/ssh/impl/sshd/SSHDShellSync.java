@@ -7,7 +7,6 @@ import net.sf.commons.ssh.common.*;
 import net.sf.commons.ssh.connection.ConnectionPropertiesBuilder;
 import net.sf.commons.ssh.event.events.ClosedEvent;
 import net.sf.commons.ssh.event.events.OpennedEvent;
-import net.sf.commons.ssh.event.events.ReadAvailableEvent;
 import net.sf.commons.ssh.options.Properties;
 import net.sf.commons.ssh.session.AbstractSession;
 import net.sf.commons.ssh.session.ShellSession;
@@ -15,12 +14,13 @@ import net.sf.commons.ssh.session.ShellSessionPropertiesBuilder;
 import org.apache.sshd.client.channel.ChannelSession;
 import org.apache.sshd.client.channel.ClientChannelEvent;
 import org.apache.sshd.client.future.OpenFuture;
+import org.apache.sshd.common.channel.Channel;
+import org.apache.sshd.common.channel.ChannelListener;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collections;
-import java.util.Set;
 
 /**
  * @author fob
@@ -45,49 +45,47 @@ public class SSHDShellSync extends AbstractSession implements ShellSession
     protected void openImpl() throws IOException
     {
         final boolean isSeparateErrorStream = ShellSessionPropertiesBuilder.getInstance().isSeparateErrorStream(this);
-        final Integer initialSize = PipePropertiesBuilder.getInstance().getInitialSize(this);
-        final Integer maximumSize = PipePropertiesBuilder.getInstance().getMaximumSize(this);
-        final Integer stepSize = PipePropertiesBuilder.getInstance().getStepSize(this);
-        final Integer modifier = PipePropertiesBuilder.getInstance().getModifier(this);
-        final BufferAllocator allocator = PipePropertiesBuilder.getInstance().getAllocator(this);
+        final PipePropertiesBuilder ppb = PipePropertiesBuilder.getInstance();
 
-        PipedInputStream stdInPipe = new PipedInputStream(initialSize, maximumSize, stepSize, modifier, allocator);
+        PipedInputStream stdInPipe = ppb.createPipe(this);
         stdIn = new PipedOutputStream(stdInPipe);
         channel.setIn(stdInPipe);
 
-        stdOut = new PipedInputStream(initialSize,maximumSize,stepSize,modifier,allocator);
+        stdOut = ppb.createPipe(this);
         Long soTimeout = ConnectionPropertiesBuilder.getInstance().getSoTimeout(properties);
         stdOut.setWaitTimeout(soTimeout == null? 0: soTimeout);
-        stdErr = new PipedInputStream(initialSize,maximumSize,stepSize,modifier,allocator);
+        stdErr = ppb.createPipe(this);
 
-        final SSHDShellSync shell = this;
-        final PipedOutputStream stdOutPipe = new PipedOutputStream(stdOut);
+        final PipedOutputStream stdOutPipe = ppb.createOutput(stdOut, this);
         stdOutPipe.setOnWrite(new Runnable()
         {
             @Override
             public void run()
             {
-                fire(new ReadAvailableEvent(shell,stdOut,false));
+                fireReadAvailable(stdOut, false);
             }
         });
+        fireWatermarkEvents(stdOut, false);
 
         if (isSeparateErrorStream)
         {
-            final PipedOutputStream stdErrPipe = new PipedOutputStream(stdErr);
+            final PipedOutputStream stdErrPipe = ppb.createOutput(stdErr, this);
             stdErrPipe.setOnWrite(new Runnable()
             {
                 @Override
                 public void run()
                 {
-                    fire(new ReadAvailableEvent(shell, stdErr, true));
+                    fireReadAvailable(stdErr, true);
                 }
             });
+            fireWatermarkEvents(stdErr, true);
             channel.setErr(stdErrPipe);
         }
         else
             channel.setErr(stdOutPipe);
 
         channel.setOut(stdOutPipe);
+        channel.addChannelListener(new EOFListener());
 
 
         OpenFuture future = null;
@@ -146,8 +144,7 @@ public class SSHDShellSync extends AbstractSession implements ShellSession
     @Override
     public boolean isEOF() throws IOException
     {
-        Set<ClientChannelEvent> events = channel.waitFor(Collections.singleton(ClientChannelEvent.EOF), 1);
-        return events.contains(ClientChannelEvent.EOF);
+        return channel.isEofSignalled();
     }
 
     @Override
@@ -160,7 +157,36 @@ public class SSHDShellSync extends AbstractSession implements ShellSession
     @Override
     public boolean isClosed()
     {
-        channel.waitFor(Collections.singleton(ClientChannelEvent.CLOSED),1);
         return getContainerStatus() == Status.CLOSED;
     }
+
+    private class EOFListener implements ChannelListener
+    {
+        @Override
+        public void channelInitialized(Channel channel)
+        {
+        }
+
+        @Override
+        public void channelOpenSuccess(Channel channel)
+        {
+        }
+
+        @Override
+        public void channelOpenFailure(Channel channel, Throwable reason)
+        {
+        }
+
+        @Override
+        public void channelStateChanged(Channel channel, String hint)
+        {
+            if (((ChannelSession) channel).isEofSignalled())
+                signalEOF();
+        }
+
+        @Override
+        public void channelClosed(Channel channel, Throwable reason)
+        {
+        }
+    }
 }
@@ -10,7 +10,9 @@ import net.sf.commons.ssh.options.impl.PropertiesWrapper;
  */
 public abstract class AbstractConfigurable extends AbstractProperties implements Configurable {
     /**
-     * update properties of this config by another
+     * update properties of this config by another. Source is wrapped, not copied, and placed over current
+     * configuration, which is shared with previous chain. Own properties are moved to separate layer only if there
+     * are any, so update of fresh configuration adds single layer.
      *
      * @param properties source readonly configuration
      * @throws CloneNotSupportedException if method {@link Object#clone()} doesn't overridden
@@ -18,9 +20,22 @@ public abstract class AbstractConfigurable extends AbstractProperties implements
     public void updateFrom(Properties properties) throws CloneNotSupportedException {
         PropertiesWrapper updateFrom = new PropertiesWrapper(properties);
 
-        updateFrom.parent = this.clone();
-        parent = updateFrom;
-        cleanSelfConfig();
+        if (isSelfEmpty()) {
+            updateFrom.parent = parent;
+            parent = updateFrom;
+        } else {
+            updateFrom.parent = this.clone();
+            parent = updateFrom;
+            cleanSelfConfig();
+        }
+        modified();
+    }
+
+    /**
+     * @return true if this configuration has no own properties, default implementation doesn't know
+     */
+    protected boolean isSelfEmpty() {
+        return false;
     }
 
     /**
@@ -1,16 +1,33 @@
 package net.sf.commons.ssh.options;
 
+import net.sf.commons.ssh.options.impl.FrozenProperties;
 import net.sf.commons.ssh.options.impl.PropertiesWrapper;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Base implementation of {@link Properties}
  */
 public abstract class AbstractProperties implements Properties {
+    /**
+     * source of versions, every modification takes value greater than all taken before
+     */
+    private static final AtomicLong clock = new AtomicLong();
+
     /**
      * parent properties
      */
     protected Properties parent = null;
 
+    /**
+     * version of last modification of this level
+     */
+    private volatile long version = clock.incrementAndGet();
+
+    private volatile FrozenProperties frozen;
+
     /**
      * Should be implemented. Return property without parent properties access.
      *
@@ -48,6 +65,102 @@ public abstract class AbstractProperties implements Properties {
             parentProperties.parent = defaultProperties;
             parent = parentProperties;
         }
+        modified();
+    }
+
+    /**
+     * Snapshot of this configuration with all parents. Snapshot is made again after this configuration or one of its
+     * parents is modified, changes of unrelated configurations don't invalidate it. Checking the snapshot walks the
+     * chain, but doesn't copy or convert anything.
+     * Changes of wrapped non library {@link Properties} (e.g. {@link net.sf.commons.ssh.options.impl.SystemConfig})
+     * aren't tracked.
+     *
+     * @return read only snapshot
+     */
+    public Properties freeze() {
+        // stamp is read before collecting, modification made during collecting makes next stamp greater
+        long current = getStamp();
+        FrozenProperties result = frozen;
+        if (result != null && result.getStamp() == current)
+            return result;
+        Map<String, Object> values = new HashMap<String, Object>();
+        result = new FrozenProperties(collectProperties(values) ? values : null, this, current);
+        frozen = result;
+        return result;
+    }
+
+    /**
+     * invalidate snapshots of chains containing this configuration, should be called by implementations after every
+     * modification
+     */
+    protected void modified() {
+        version = clock.incrementAndGet();
+    }
+
+    /**
+     * @return greatest version of this configuration and its parents, grows on every modification of the chain
+     */
+    protected long getStamp() {
+        long result = version;
+        if (parent != null)
+            result = Math.max(result, getStamp(parent));
+        return result;
+    }
+
+    /**
+     * @param properties configuration
+     * @return stamp of configuration, 0 if its modifications aren't tracked
+     * @see #getStamp()
+     */
+    protected static long getStamp(Properties properties) {
+        return properties instanceof AbstractProperties ? ((AbstractProperties) properties).getStamp() : 0;
+    }
+
+    /**
+     * Put properties of this configuration and its parents to map, like {@link #getProperty(String)} does own non
+     * null values override parent values.
+     *
+     * @param values destination
+     * @return false if some level of chain can't enumerate its properties
+     */
+    protected boolean collectProperties(Map<String, Object> values) {
+        if (parent != null && !collectProperties(parent, values))
+            return false;
+        return collectSelfProperties(values);
+    }
+
+    /**
+     * @param properties configuration
+     * @param values     destination
+     * @return false if configuration can't be enumerated
+     * @see #collectProperties(Map)
+     */
+    protected static boolean collectProperties(Properties properties, Map<String, Object> values) {
+        return properties instanceof AbstractProperties && ((AbstractProperties) properties).collectProperties(values);
+    }
+
+    /**
+     * Put own properties to map. Default implementation can't enumerate properties.
+     *
+     * @param values destination, own non null values override values of parent
+     * @return false if properties can't be enumerated
+     * @see #putSelfProperties(Map, Map)
+     */
+    protected boolean collectSelfProperties(Map<String, Object> values) {
+        return false;
+    }
+
+    /**
+     * helper for {@link #collectSelfProperties(Map)}
+     *
+     * @param values destination
+     * @param self   own properties
+     */
+    protected static void putSelfProperties(Map<String, Object> values, Map<String, Object> self) {
+        for (Map.Entry<String, Object> entry : self.entrySet()) {
+            if (entry.getValue() != null || !values.containsKey(entry.getKey()))
+                values.put(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
@@ -30,6 +30,7 @@ public abstract class ContainerConfigurable extends AbstractConfigurable impleme
 
     public void setProperty(String key, Object value) {
         configContainer.put(key, value);
+        modified();
     }
 
     @Override
@@ -40,9 +41,21 @@ public abstract class ContainerConfigurable extends AbstractConfigurable impleme
     @Override
     protected void cleanSelfConfig() {
         configContainer.clear();
+        modified();
 
     }
 
+    @Override
+    protected boolean isSelfEmpty() {
+        return configContainer.isEmpty();
+    }
+
+    @Override
+    protected boolean collectSelfProperties(Map<String, Object> values) {
+        putSelfProperties(values, configContainer);
+        return true;
+    }
+
     @Override
     protected Object getSelfProperty(String key) {
         return configContainer.get(key);
@@ -7,9 +7,11 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.sf.commons.ssh.common.LogUtils;
 import net.sf.commons.ssh.common.UnexpectedRuntimeException;
@@ -29,6 +31,11 @@ public class DefaultConverter implements TypeConverter
 	protected Class<? extends PropertiesBuilder> builderCls;
 	protected Map<String, PropertyType> keyMapping;
 	protected Map<Class, Map<Class, Method>> convertMethods;
+	/**
+	 * resolved conversions: target class -> value class -> conversion
+	 */
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Conversion>> conversions =
+			new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, Conversion>>();
 
 	/**
 	 * @param builderCls
@@ -67,6 +74,8 @@ public class DefaultConverter implements TypeConverter
 			if(method.getParameterTypes().length > 1)
 				continue;
 			LogUtils.trace(log, "found converter methods {0}:{1}", method.getName(),convertMetod);
+			// converters are usually declared by anonymous classes
+			method.setAccessible(true);
 			Map<Class,Method> toMethods = convertMethods.get(convertMetod.to());
 			if(toMethods == null)
 				toMethods = new HashMap<Class, Method>();
@@ -98,49 +107,94 @@ public class DefaultConverter implements TypeConverter
 		Class valueCls = value.getClass();
 		if(propertyType.value().isAssignableFrom(valueCls))
 			return value;
-		
-		
-		Map<Class,Method> toMethods  = convertMethods.get(propertyType.value());
-		if(toMethods == null)
+
+		Conversion conversion = getConversion(valueCls, propertyType.value());
+		Object result = conversion.convert(value);
+		if (result != null)
+			return result;
+		LogUtils.error(log, "can''t found converter to convert property ''{0}''=''{3}'' from class {1} to class {2}", key,valueCls,propertyType.value(),value);
+		throw new IllegalArgumentException("can't found converter to convert property '"+key+"'='"+value+"' from class "+valueCls.getName()
+				+" to class "+propertyType.value().getName());
+	}
+
+	/**
+	 * Conversion is resolved once for every pair of classes, including pairs which can't be converted.
+	 *
+	 * @param from value class
+	 * @param to   property class
+	 * @return cached conversion
+	 */
+	protected Conversion getConversion(Class<?> from, Class<?> to)
+	{
+		ConcurrentMap<Class<?>, Conversion> fromMap = conversions.get(to);
+		if (fromMap == null)
+		{
+			fromMap = new ConcurrentHashMap<Class<?>, Conversion>();
+			ConcurrentMap<Class<?>, Conversion> existing = conversions.putIfAbsent(to, fromMap);
+			if (existing != null)
+				fromMap = existing;
+		}
+		Conversion conversion = fromMap.get(from);
+		if (conversion == null)
 		{
-			LogUtils.trace(log, "can''t convert to {0}", propertyType.value());
+			conversion = resolveConversion(from, to);
+			LogUtils.trace(log, "resolved conversion from {0} to {1}: {2}", from, to, conversion);
+			fromMap.put(from, conversion);
 		}
-		Method convertMethod = null;
+		return conversion;
+	}
+
+	/**
+	 * find annotated convert method, public constructor or static valueOf method
+	 *
+	 * @param from value class
+	 * @param to   property class
+	 * @return conversion, {@link Conversion#NONE} if classes can't be converted
+	 */
+	// convertMethods is keyed by raw classes
+	@SuppressWarnings("rawtypes")
+	protected Conversion resolveConversion(Class<?> from, Class<?> to)
+	{
+		Map<Class,Method> toMethods  = convertMethods.get(to);
 		if (toMethods != null)
 		{
-			convertMethod = toMethods.get(valueCls);
+			Method convertMethod = toMethods.get(from);
 			if (convertMethod == null)
 			{
-				Class from = Object.class;
-				for (Class cls : toMethods.keySet())
-					if (cls.isAssignableFrom(valueCls) && from.isAssignableFrom(cls))
-						from = cls;
-				convertMethod = toMethods.get(from);
+				Class<?> best = Object.class;
+				for (Class<?> cls : toMethods.keySet())
+					if (cls.isAssignableFrom(from) && best.isAssignableFrom(cls))
+						best = cls;
+				convertMethod = toMethods.get(best);
 			}
+			if (convertMethod != null)
+				return new MethodConversion(convertMethod, this);
+		}
+		LogUtils.trace(log, "can''t convert to {0} by convert method", to);
+		return resolveStaticConversion(from, to);
+	}
+
+	private Conversion resolveStaticConversion(Class<?> from, Class<?> to)
+	{
+		try
+		{
+			return new ConstructorConversion(to.getConstructor(from));
 		}
-		if(convertMethod == null)
+		catch (NoSuchMethodException e)
 		{
-			Object result = staticConvert(valueCls, propertyType.value(), value);
-			if(result!=null)
-				return result;
-			LogUtils.error(log, "can''t found converter to convert property ''{0}''=''{3}'' from class {1} to class {2}", key,valueCls,propertyType.value(),value);
-			throw new IllegalArgumentException("can't found converter to convert property '"+key+"'='"+value+"' from class "+valueCls.getName()
-					+" to class "+propertyType.value().getName());
+			LogUtils.trace(log, "constructor {0}({1}) not found", to, from);
 		}
-		
 		try
 		{
-			LogUtils.trace(log, "convert using: {0}", convertMethod);
-			log.trace(this.getClass());
-			return convertMethod.invoke(this, value);
+			Method method = to.getMethod("valueOf", from);
+			if (Modifier.isStatic(method.getModifiers()) && to.isAssignableFrom(method.getReturnType()))
+				return new MethodConversion(method, null);
 		}
-		catch (Exception e)
+		catch (NoSuchMethodException e)
 		{
-			if(e instanceof RuntimeException)
-				throw (RuntimeException) e;
-			else
-				throw new UnexpectedRuntimeException(e);
+			LogUtils.trace(log, "method {0}.valueOf({1}) not found", to, from);
 		}
+		return Conversion.NONE;
 	}
 
 	@ConvertMethod(from = Object.class, to = String.class)
@@ -149,33 +203,122 @@ public class DefaultConverter implements TypeConverter
 		return value.toString();
 	}
 
+	/**
+	 * convert by constructor or static valueOf method of target class, not cached
+	 *
+	 * @return converted value or null if there is no such constructor or method
+	 * @see #getConversion(Class, Class)
+	 */
 	protected Object staticConvert(Class from,Class to,Object value)
 	{
-		Object result = null;
-		try
+		return resolveStaticConversion(from, to).convert(value);
+	}
+
+	/**
+	 * resolved conversion between two classes
+	 */
+	protected static abstract class Conversion
+	{
+		/**
+		 * classes can't be converted
+		 */
+		public static final Conversion NONE = new Conversion()
 		{
-			LogUtils.trace(log, "try to get constructor from class {0}", from);
-			Constructor constructor = to.getConstructor(from);
-			result = constructor.newInstance(value);
-			return result;
+			@Override
+			protected Object convert(Object value)
+			{
+				return null;
+			}
+
+			@Override
+			public String toString()
+			{
+				return "none";
+			}
+		};
+
+		/**
+		 * @return converted value or null if value can't be converted
+		 */
+		protected abstract Object convert(Object value);
+	}
+
+	private static class MethodConversion extends Conversion
+	{
+		private final Method method;
+		private final Object target;
+
+		/**
+		 * @param method convert method
+		 * @param target converter for annotated method, null for static method
+		 */
+		MethodConversion(Method method, Object target)
+		{
+			this.method = method;
+			this.target = target;
 		}
-		catch (Exception e)
+
+		@Override
+		protected Object convert(Object value)
 		{
-			LogUtils.trace(log,e, "constructor not found");
+			try
+			{
+				return method.invoke(target, value);
+			}
+			catch (InvocationTargetException e)
+			{
+				// value has wrong format for static method, e.g. Integer.valueOf("abc")
+				if (target == null)
+					return null;
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new UnexpectedRuntimeException(e.getCause());
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new UnexpectedRuntimeException(e);
+			}
 		}
-		
-		try
+
+		@Override
+		public String toString()
 		{
-			LogUtils.trace(log, "try to get valueOf from class {0}", from);
-			Method method = to.getMethod("valueOf",from);
-			result = method.invoke(to, from);
-			return result;
+			return method.toString();
+		}
+	}
+
+	private static class ConstructorConversion extends Conversion
+	{
+		private final Constructor<?> constructor;
+
+		ConstructorConversion(Constructor<?> constructor)
+		{
+			this.constructor = constructor;
+		}
+
+		@Override
+		protected Object convert(Object value)
+		{
+			try
+			{
+				return constructor.newInstance(value);
+			}
+			catch (InvocationTargetException e)
+			{
+				// value has wrong format, e.g. new Long("abc")
+				return null;
+			}
+			catch (Exception e)
+			{
+				throw new UnexpectedRuntimeException(e);
+			}
 		}
-		catch (Exception e)
+
+		@Override
+		public String toString()
 		{
-			LogUtils.trace(log,e, "valueOf not found");
+			return constructor.toString();
 		}
-		return null;
 	}
 
 }
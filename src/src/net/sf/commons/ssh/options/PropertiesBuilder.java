@@ -2,12 +2,15 @@ package net.sf.commons.ssh.options;
 
 import net.sf.commons.ssh.common.LogUtils;
 import net.sf.commons.ssh.common.UnexpectedRuntimeException;
+import net.sf.commons.ssh.options.impl.FrozenProperties;
 import net.sf.commons.ssh.options.impl.MapProperties;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public abstract class PropertiesBuilder {
@@ -15,6 +18,7 @@ public abstract class PropertiesBuilder {
 
     protected Map<String, Object> defaultProperties = new HashMap<String, Object>();
     protected TypeConverter converter;
+    private volatile String[] requiredKeys;
 
     protected PropertiesBuilder() {
         super();
@@ -26,6 +30,28 @@ public abstract class PropertiesBuilder {
     }
 
     public void verify(Properties config) throws IllegalPropertyException {
+        for (String key : getRequiredKeys()) {
+            if (config.getProperty(key) == null) {
+                LogUtils.trace(log, "verify\n{0}", config);
+                throw new IllegalPropertyException(key, null);
+            }
+        }
+    }
+
+    /**
+     * @return keys of fields declared by this builder with {@link PropertyType#required()}, collected once
+     */
+    protected String[] getRequiredKeys() {
+        String[] result = requiredKeys;
+        if (result == null) {
+            result = collectRequiredKeys();
+            requiredKeys = result;
+        }
+        return result;
+    }
+
+    private String[] collectRequiredKeys() {
+        List<String> keys = new ArrayList<String>();
         Field[] fields = this.getClass().getDeclaredFields();
         for (Field field : fields) {
             PropertyType annotation = field.getAnnotation(PropertyType.class);
@@ -43,12 +69,10 @@ public abstract class PropertiesBuilder {
                         throw (RuntimeException) e;
                     throw new UnexpectedRuntimeException(e.getMessage(), e);
                 }
-                if (config.getProperty(key) == null) {
-                    LogUtils.trace(log, "verify\n{0}", config);
-                    throw new IllegalPropertyException(key, null);
-                }
+                keys.add(key);
             }
         }
+        return keys.toArray(new String[keys.size()]);
     }
 
     public Object getProperty(Properties properties, String key) {
@@ -59,6 +83,30 @@ public abstract class PropertiesBuilder {
         properties.setProperty(key, getConverter().convert(value, key));
     }
 
+    /**
+     * typed read, value is converted only if it was stored with other type
+     *
+     * @param properties configuration, {@link FrozenProperties} keeps converted value
+     * @param key        typed key declared by this builder
+     * @return property value
+     */
+    public <T> T getProperty(Properties properties, PropertyKey<T> key) {
+        if (properties instanceof FrozenProperties)
+            return ((FrozenProperties) properties).getProperty(key, getConverter());
+        return key.cast(properties.getProperty(key.getName()), getConverter());
+    }
+
+    /**
+     * typed write, value has right type already and isn't converted
+     *
+     * @param properties configuration
+     * @param key        typed key declared by this builder
+     * @param value      property value
+     */
+    public <T> void setProperty(Configurable properties, PropertyKey<T> key, T value) {
+        properties.setProperty(key.getName(), value);
+    }
+
     protected TypeConverter createConverter() {
         return new DefaultConverter(this.getClass());
     }
@@ -0,0 +1,95 @@
+package net.sf.commons.ssh.options;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Typed property key. Keys are interned, every key name has single instance with small integer slot, which is used
+ * by {@link net.sf.commons.ssh.options.impl.FrozenProperties} to keep converted values in array.
+ * <p/>
+ * Keys are declared by builders next to string key, e.g.
+ * <pre>
+ * &#64;PropertyType(Long.class)
+ * public static final String KEY_SOCKET_TIMEOUT = "...";
+ * public static final PropertyKey&lt;Long&gt; SOCKET_TIMEOUT = PropertyKey.of(KEY_SOCKET_TIMEOUT, Long.class);
+ * </pre>
+ *
+ * @param <T> property type
+ * @author fob
+ * @since 2.1
+ */
+public final class PropertyKey<T> {
+    private static final ConcurrentMap<String, PropertyKey<?>> keys = new ConcurrentHashMap<String, PropertyKey<?>>();
+    private static final AtomicInteger slots = new AtomicInteger();
+
+    private final String name;
+    private final Class<T> type;
+    private final int slot;
+
+    private PropertyKey(String name, Class<T> type, int slot) {
+        this.name = name;
+        this.type = type;
+        this.slot = slot;
+    }
+
+    /**
+     * @param name property name
+     * @param type property type, the same as {@link PropertyType} of string key
+     * @return interned key
+     * @throws IllegalArgumentException if key with the same name and other type exists
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PropertyKey<T> of(String name, Class<T> type) {
+        PropertyKey<?> key = keys.get(name);
+        if (key == null) {
+            synchronized (keys) {
+                key = keys.get(name);
+                if (key == null) {
+                    key = new PropertyKey<T>(name, type, slots.getAndIncrement());
+                    keys.put(name, key);
+                }
+            }
+        }
+        if (key.type != type)
+            throw new IllegalArgumentException("key " + name + " is declared with type " + key.type.getName());
+        return (PropertyKey<T>) key;
+    }
+
+    /**
+     * @return count of slots used by keys
+     */
+    public static int getSlotCount() {
+        return slots.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * cast value to key type, value is converted by converter only if it has other type
+     *
+     * @param value     raw value
+     * @param converter converter of builder which declares key
+     * @return typed value
+     */
+    public T cast(Object value, TypeConverter converter) {
+        if (value == null || type.isInstance(value))
+            return type.cast(value);
+        return type.cast(converter.convert(value, name));
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + type.getSimpleName();
+    }
+}
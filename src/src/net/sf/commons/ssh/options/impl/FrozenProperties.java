@@ -0,0 +1,112 @@
+package net.sf.commons.ssh.options.impl;
+
+import net.sf.commons.ssh.options.Properties;
+import net.sf.commons.ssh.options.PropertyKey;
+import net.sf.commons.ssh.options.TypeConverter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read only snapshot of {@link Properties} chain, see {@link net.sf.commons.ssh.options.AbstractProperties#freeze()}.
+ * <p/>
+ * If every level of chain can enumerate its properties snapshot is flattened to a single map. Otherwise property is
+ * resolved through the source chain on first access and remembered.
+ * <p/>
+ * Values read by {@link PropertyKey} are converted once and kept in array indexed by key slot.
+ *
+ * @author fob
+ * @since 2.1
+ */
+public class FrozenProperties implements Properties {
+    private static final Object NULL = new Object();
+
+    private final Map<String, Object> values;
+    private final Properties source;
+    private final long stamp;
+    private final AtomicReferenceArray<Object> typed = new AtomicReferenceArray<Object>(PropertyKey.getSlotCount());
+
+    /**
+     * @param values     flattened properties, null if source chain can't be flattened
+     * @param source     source chain
+     * @param stamp      stamp of source chain snapshot is valid for
+     */
+    public FrozenProperties(Map<String, Object> values, Properties source, long stamp) {
+        if (values != null) {
+            this.values = Collections.unmodifiableMap(values);
+            this.source = null;
+        } else {
+            this.values = new ConcurrentHashMap<String, Object>();
+            this.source = source;
+        }
+        this.stamp = stamp;
+    }
+
+    /**
+     * @param key property key
+     * @return property value as source chain returned it when snapshot was made
+     */
+    @Override
+    public Object getProperty(String key) {
+        Object result = values.get(key);
+        if (source == null)
+            return result;
+        if (result == null) {
+            result = source.getProperty(key);
+            values.put(key, result == null ? NULL : result);
+            return result;
+        }
+        return result == NULL ? null : result;
+    }
+
+    /**
+     * @param key       typed key
+     * @param converter converter used if stored value has other type
+     * @return typed property value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getProperty(PropertyKey<T> key, TypeConverter converter) {
+        int slot = key.getSlot();
+        // key was created after snapshot
+        if (slot >= typed.length())
+            return key.cast(getProperty(key.getName()), converter);
+        Object result = typed.get(slot);
+        if (result == null) {
+            T value = key.cast(getProperty(key.getName()), converter);
+            typed.lazySet(slot, value == null ? NULL : value);
+            return value;
+        }
+        return result == NULL ? null : (T) result;
+    }
+
+    /**
+     * snapshot is read only
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void includeDefault(Properties configurable) {
+        throw new UnsupportedOperationException("frozen properties can't be changed");
+    }
+
+    /**
+     * @return stamp of source chain snapshot is valid for
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * @return true if all properties were copied to snapshot
+     */
+    public boolean isFlattened() {
+        return source == null;
+    }
+
+    @Override
+    public String toString() {
+        return "FrozenProperties: " + values;
+    }
+}
@@ -26,6 +26,18 @@ public class MapConfigurable extends AbstractConfigurable {
     @Override
     protected void cleanSelfConfig() {
         config.clear();
+        modified();
+    }
+
+    @Override
+    protected boolean isSelfEmpty() {
+        return config.isEmpty();
+    }
+
+    @Override
+    protected boolean collectSelfProperties(Map<String, Object> values) {
+        putSelfProperties(values, config);
+        return true;
     }
 
     //get property from Map
@@ -37,6 +49,7 @@ public class MapConfigurable extends AbstractConfigurable {
     //set property to Map
     public void setProperty(String key, Object value) {
         config.put(key, value);
+        modified();
     }
 
     /**
@@ -40,6 +40,12 @@ public class MapProperties extends AbstractProperties {
         return configContainer.get(key);
     }
 
+    @Override
+    protected boolean collectSelfProperties(Map<String, Object> values) {
+        putSelfProperties(values, configContainer);
+        return true;
+    }
+
     /**
      * print all properties to string.
      *
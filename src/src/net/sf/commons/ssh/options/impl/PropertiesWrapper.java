@@ -3,6 +3,9 @@ package net.sf.commons.ssh.options.impl;
 import net.sf.commons.ssh.options.AbstractProperties;
 import net.sf.commons.ssh.options.Properties;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Isolate {@link net.sf.commons.ssh.options.Properties} configuration to use as default or update from.
  * date: 10.04.12
@@ -34,4 +37,25 @@ public class PropertiesWrapper extends AbstractProperties {
     protected Object getSelfProperty(String key) {
         return properties.getProperty(key);
     }
+
+    /**
+     * wrapped chain is part of this chain
+     */
+    @Override
+    protected long getStamp() {
+        return Math.max(super.getStamp(), getStamp(properties));
+    }
+
+    /**
+     * wrapped properties are collected if they can be enumerated
+     */
+    @Override
+    protected boolean collectSelfProperties(Map<String, Object> values) {
+        // wrapped chain overrides parent of wrapper, collect it separately and merge
+        Map<String, Object> wrapped = new HashMap<String, Object>();
+        if (!collectProperties(properties, wrapped))
+            return false;
+        putSelfProperties(values, wrapped);
+        return true;
+    }
 }
@@ -5,7 +5,10 @@ import net.sf.commons.ssh.common.*;
 import net.sf.commons.ssh.errors.Error;
 import net.sf.commons.ssh.errors.ErrorHolder;
 import net.sf.commons.ssh.errors.ErrorLevel;
+import net.sf.commons.ssh.event.Event;
 import net.sf.commons.ssh.event.ProducerType;
+import net.sf.commons.ssh.event.events.BufferDrainedEvent;
+import net.sf.commons.ssh.event.events.BufferHighEvent;
 import net.sf.commons.ssh.options.Properties;
 
 import java.io.IOException;
@@ -18,6 +21,9 @@ public abstract class AbstractSession extends AbstractContainer implements Sessi
 
 	protected Properties properties;
 
+	private final LifecycleFuture<Session> openedFuture = new LifecycleFuture<Session>();
+	private final LifecycleFuture<Session> eofFuture = new LifecycleFuture<Session>();
+
     public AbstractSession(Properties properties)
     {
 		super(properties);
@@ -95,5 +101,93 @@ public abstract class AbstractSession extends AbstractContainer implements Sessi
 	}
 	
 	protected abstract void openImpl() throws IOException;
+
+	@Override
+	public LifecycleFuture<Session> whenOpened()
+	{
+		return openedFuture;
+	}
+
+	/**
+	 * @return future completed when remote side sends EOF or session is closed
+	 * @see #signalEOF()
+	 */
+	public LifecycleFuture<Session> whenEOF()
+	{
+		return eofFuture;
+	}
+
+	/**
+	 * called by implementation when remote side sends EOF
+	 */
+	protected void signalEOF()
+	{
+		eofFuture.complete(this);
+	}
+
+	/**
+	 * signal EOF when library closes pipe it writes to
+	 *
+	 * @param libraryOut stream given to library
+	 */
+	protected void signalEOFOnClose(PipedOutputStream libraryOut)
+	{
+		libraryOut.setOnClose(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				signalEOF();
+			}
+		});
+	}
+
+	@Override
+	protected void lifecycleEvent(Event event)
+	{
+		// events of custom classes may have no type
+		if (event.getEventType() != null)
+		{
+			switch (event.getEventType())
+			{
+				case OPENNED:
+					openedFuture.complete(this);
+					break;
+				case CLOSED:
+					openedFuture.fail(new IOException("session closed before opened"));
+					// closed session won't receive anything
+					eofFuture.complete(this);
+					break;
+			}
+		}
+		super.lifecycleEvent(event);
+	}
+
+	/**
+	 * fire {@link BufferHighEvent} and {@link BufferDrainedEvent} when pipe reaches its watermarks
+	 *
+	 * @param pipe    session stream given to user
+	 * @param isError true for error stream
+	 */
+	protected void fireWatermarkEvents(final PipedInputStream pipe, final boolean isError)
+	{
+		final AbstractSession session = this;
+		pipe.setOnHigh(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				fire(new BufferHighEvent(session, pipe, isError));
+			}
+		});
+		pipe.setOnDrained(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				fire(new BufferDrainedEvent(session, pipe, isError));
+			}
+		});
+	}
     
 }
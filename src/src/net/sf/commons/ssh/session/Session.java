@@ -2,11 +2,23 @@ package net.sf.commons.ssh.session;
 
 import java.io.IOException;
 
+import net.sf.commons.ssh.common.Closable;
 import net.sf.commons.ssh.common.Container;
+import net.sf.commons.ssh.common.LifecycleFuture;
 
 public interface Session extends Container
 {
     void open() throws IOException;
     boolean isOpened();
     boolean isOpening();
+
+    /**
+     * @return future completed when session is opened, fails if session is closed before
+     */
+    LifecycleFuture<Session> whenOpened();
+
+    /**
+     * @return future completed when session is closed
+     */
+    LifecycleFuture<Closable> whenClosed();
 }
@@ -6,6 +6,7 @@ package net.sf.commons.ssh.session;
 import net.sf.commons.ssh.options.Configurable;
 import net.sf.commons.ssh.options.Properties;
 import net.sf.commons.ssh.options.PropertiesBuilder;
+import net.sf.commons.ssh.options.PropertyKey;
 import net.sf.commons.ssh.options.PropertyType;
 
 /**
@@ -17,15 +18,16 @@ public class SessionPropertiesBuilder extends PropertiesBuilder
 {
 	@PropertyType(value = Long.class)
 	public static final String KEY_OPEN_TIMEOUT = "net.sf.commons.ssh.session.timeout";
+	public static final PropertyKey<Long> OPEN_TIMEOUT = PropertyKey.of(KEY_OPEN_TIMEOUT, Long.class);
 
 	public Long getOpenTimeout(Properties config)
 	{
-		return (Long) getProperty(config, KEY_OPEN_TIMEOUT);		
+		return getProperty(config, OPEN_TIMEOUT);
 	}
 	
 	public void setOpenTimeout(Configurable config,Long value)
 	{
-		setProperty(config, KEY_OPEN_TIMEOUT, value);		
+		setProperty(config, OPEN_TIMEOUT, value);
 	}
 	
 	public void setOpenTimeout(Configurable config,String value)
@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import net.sf.commons.ssh.common.LifecycleFuture;
+
 public interface ShellSession extends Session
 {
         /**
@@ -34,4 +36,9 @@ public interface ShellSession extends Session
     InputStream getErrorStream() throws IOException;
 
     boolean isEOF() throws IOException;
+
+    /**
+     * @return future completed when remote side sends EOF or session is closed
+     */
+    LifecycleFuture<Session> whenEOF();
 }
@@ -19,6 +19,12 @@ public class ShellSessionPropertiesBuilder extends SessionPropertiesBuilder
     public static final String KEY_TERMINAL_WIDTH="net.sf.commons.ssh.options.ShellSessionOptionsBuilder.terminalWidth";
     @PropertyType(value = Boolean.class,required = true)
     public static final String KEY_SEPARATE_ERROR_STREAM = "net.sf.commons.ssh.options.ShellSessionOptionsBuilder.errorStream";
+    public static final PropertyKey<Integer> TERMINAL_COLS = PropertyKey.of(KEY_TERMINAL_COLS, Integer.class);
+    public static final PropertyKey<Integer> TERMINAL_HEIGHT = PropertyKey.of(KEY_TERMINAL_HEIGHT, Integer.class);
+    public static final PropertyKey<Integer> TERMINAL_ROWS = PropertyKey.of(KEY_TERMINAL_ROWS, Integer.class);
+    public static final PropertyKey<String> TERMINAL_TYPE = PropertyKey.of(KEY_TERMINAL_TYPE, String.class);
+    public static final PropertyKey<Integer> TERMINAL_WIDTH = PropertyKey.of(KEY_TERMINAL_WIDTH, Integer.class);
+    public static final PropertyKey<Boolean> SEPARATE_ERROR_STREAM = PropertyKey.of(KEY_SEPARATE_ERROR_STREAM, Boolean.class);
 //    @PropertyType(value = String.class,required = false)
 //    public static final String KEY_START_SUBSYSTEM = "net.sf.commons.ssh.options.ShellSessionOptionsBuilder.subSystem";
 
@@ -43,7 +49,7 @@ public class ShellSessionPropertiesBuilder extends SessionPropertiesBuilder
 
     public int getTerminalCols(Properties opt)
     {
-        return (Integer)getProperty(opt, KEY_TERMINAL_COLS);
+        return getProperty(opt, TERMINAL_COLS);
     }
 
     public void setTerminalCols(Configurable options, int terminalCols)
@@ -53,7 +59,7 @@ public class ShellSessionPropertiesBuilder extends SessionPropertiesBuilder
 
     public int getTerminalHeight(Properties opt)
     {
-        return (Integer) getProperty(opt, KEY_TERMINAL_HEIGHT);
+        return getProperty(opt, TERMINAL_HEIGHT);
     }
 
     public void setTerminalHeight(Configurable options,int terminalHeight)
@@ -63,7 +69,7 @@ public class ShellSessionPropertiesBuilder extends SessionPropertiesBuilder
 
     public int getTerminalRows(Properties opt)
     {
-        return (Integer)getProperty(opt, KEY_TERMINAL_ROWS);
+        return getProperty(opt, TERMINAL_ROWS);
     }
 
     public void setTerminalRows(Configurable options,int terminalRows)
@@ -73,7 +79,7 @@ public class ShellSessionPropertiesBuilder extends SessionPropertiesBuilder
 
     public String getTerminalType(Properties opt)
     {
-        return (String) getProperty(opt, KEY_TERMINAL_TYPE);
+        return getProperty(opt, TERMINAL_TYPE);
     }
 
     public void setTerminalType(Configurable options,String terminalType)
@@ -83,7 +89,7 @@ public class ShellSessionPropertiesBuilder extends SessionPropertiesBuilder
 
     public int getTerminalWidth(Properties opt)
     {
-        return (Integer)getProperty(opt, KEY_TERMINAL_WIDTH);
+        return getProperty(opt, TERMINAL_WIDTH);
     }
 
     public void setTerminalWidth(Configurable options,int terminalWidth)
@@ -93,11 +99,11 @@ public class ShellSessionPropertiesBuilder extends SessionPropertiesBuilder
     
     public void setSeparateErrorStream(Configurable config,boolean value)
     {
-    	setProperty(config, KEY_SEPARATE_ERROR_STREAM, value);
+    	setProperty(config, SEPARATE_ERROR_STREAM, value);
     }
     
     public boolean isSeparateErrorStream(Properties config)
     {
-    	return (Boolean)getProperty(config, KEY_SEPARATE_ERROR_STREAM);    	
+    	return getProperty(config, SEPARATE_ERROR_STREAM);    	
     }
 }
@@ -0,0 +1,120 @@
+package net.sf.commons.ssh.common;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArenaBufferAllocatorTest {
+
+    @Test
+    public void testReleaseByOwner() {
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator();
+        Object first = new Object();
+        Object second = new Object();
+        ByteBuffer buffer = allocator.forOwner(first).allocate(1024);
+        assertTrue(buffer.isDirect());
+        allocator.forOwner(first).allocate(512);
+        allocator.forOwner(second).allocate(256);
+        assertEquals(1536, allocator.getLiveBytes(first));
+        assertEquals(1792, allocator.getLiveBytes());
+        assertEquals(2, allocator.getArenaCount());
+
+        allocator.release(first);
+        assertEquals(0, allocator.getLiveBytes(first));
+        assertEquals(256, allocator.getLiveBytes());
+        assertEquals(1, allocator.getArenaCount());
+
+        allocator.releaseAll();
+        assertEquals(0, allocator.getLiveBytes());
+        assertEquals(0, allocator.getArenaCount());
+    }
+
+    @Test
+    public void testDetachedBufferUsableAfterRelease() {
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator();
+        Object owner = new Object();
+        ByteBuffer buffer = allocator.forOwner(owner).allocate(64);
+        allocator.forOwner(owner).allocate(32);
+        allocator.forOwner(owner).detach(buffer);
+        assertEquals(32, allocator.getLiveBytes());
+        allocator.release(owner);
+        assertEquals(0, allocator.getLiveBytes());
+        // detached memory is left to garbage collector
+        buffer.putLong(0, 42L);
+        assertEquals(42L, buffer.getLong(0));
+    }
+
+    @Test
+    public void testOwnerClosesPipesBeforeRelease() throws Exception {
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator();
+        LifecycleFutureTest.TestSession session = new LifecycleFutureTest.TestSession();
+        session.includeDefault(PipePropertiesBuilder.getInstance().getDefault());
+        PipePropertiesBuilder.getInstance().setAllocator(session, allocator);
+        PipedInputStream peekedPipe = PipePropertiesBuilder.getInstance().createPipe(session);
+        PipedInputStream pipe = PipePropertiesBuilder.getInstance().createPipe(session);
+        new PipedOutputStream(peekedPipe).write(new byte[]{1, 2, 3});
+        new PipedOutputStream(pipe).write(new byte[]{4, 5, 6});
+        ByteBuffer[] views = peekedPipe.peekSegments();
+        assertTrue(allocator.getLiveBytes(session) > 0);
+
+        session.close();
+        assertFalse(pipe.isOpen());
+        assertFalse(peekedPipe.isOpen());
+        assertEquals(0, allocator.getLiveBytes());
+        // peeked segment is left to garbage collector
+        assertEquals(1, views[0].get(0));
+        try {
+            pipe.read();
+            fail("closed pipe");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPipeFromFrozenProperties() throws Exception {
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator();
+        LifecycleFutureTest.TestSession session = new LifecycleFutureTest.TestSession();
+        session.includeDefault(PipePropertiesBuilder.getInstance().getDefault());
+        PipePropertiesBuilder.getInstance().setAllocator(session, allocator);
+        PipedInputStream pipe = PipePropertiesBuilder.getInstance().createPipe(session.freeze(), session);
+        // memory belongs to session, not to the snapshot
+        assertTrue(allocator.getLiveBytes(session) > 0);
+        assertEquals(1, allocator.getArenaCount());
+        session.close();
+        assertFalse(pipe.isOpen());
+        assertEquals(0, allocator.getLiveBytes());
+    }
+
+    @Test
+    public void testDispose() {
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator();
+        Object owner = new Object();
+        BufferAllocator arena = allocator.forOwner(owner);
+        ByteBuffer buffer = arena.allocate(100);
+        arena.dispose(buffer);
+        arena.dispose(buffer);
+        assertEquals(0, allocator.getLiveBytes());
+    }
+
+    @Test
+    public void testAllocateAfterRelease() {
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator();
+        Object owner = new Object();
+        BufferAllocator arena = allocator.forOwner(owner);
+        allocator.release(owner);
+        try {
+            arena.allocate(16);
+            fail("released arena should not allocate");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, allocator.getLiveBytes());
+    }
+}
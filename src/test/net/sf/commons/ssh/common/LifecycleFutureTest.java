@@ -0,0 +1,151 @@
+package net.sf.commons.ssh.common;
+
+import net.sf.commons.ssh.event.AbstractEvent;
+import net.sf.commons.ssh.event.Event;
+import net.sf.commons.ssh.event.EventListener;
+import net.sf.commons.ssh.event.EventType;
+import net.sf.commons.ssh.event.EventTypeFilter;
+import net.sf.commons.ssh.event.ProducerEventFilter;
+import net.sf.commons.ssh.event.events.ClosedEvent;
+import net.sf.commons.ssh.event.events.OpennedEvent;
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import net.sf.commons.ssh.session.AbstractSession;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LifecycleFutureTest {
+
+    @Test
+    public void testCompleteOnce() throws Exception {
+        LifecycleFuture<String> future = new LifecycleFuture<String>();
+        final AtomicBoolean notified = new AtomicBoolean();
+        future.addListener(new Runnable() {
+            public void run() {
+                notified.set(true);
+            }
+        });
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertTrue(future.complete("a"));
+        assertFalse(future.complete("b"));
+        assertFalse(future.fail(new IOException()));
+        assertTrue(notified.get());
+        assertTrue(future.isSuccess());
+        assertSame("a", future.get());
+    }
+
+    @Test
+    public void testFailedListenerDoesntStopOthers() throws Exception {
+        TestSession session = new TestSession();
+        final AtomicBoolean notified = new AtomicBoolean();
+        final AtomicBoolean delivered = new AtomicBoolean();
+        session.whenOpened().addListener(new Runnable() {
+            public void run() {
+                throw new IllegalStateException("listener failure");
+            }
+        });
+        session.whenOpened().addListener(new Runnable() {
+            public void run() {
+                notified.set(true);
+            }
+        });
+        session.addListener(new EventListener() {
+            public void handle(Event event) {
+                delivered.set(true);
+            }
+        }, new EventTypeFilter(EventType.OPENNED));
+        session.open();
+        assertTrue(notified.get());
+        assertTrue(delivered.get());
+    }
+
+    @Test
+    public void testSessionFutures() throws Exception {
+        TestSession session = new TestSession();
+        final AtomicBoolean openedSeen = new AtomicBoolean();
+        session.addListener(new EventListener() {
+            public void handle(Event event) {
+                // completed before listeners run
+                openedSeen.set(((TestSession) event.getProducer()).whenOpened().isDone());
+            }
+        }, new EventTypeFilter(EventType.OPENNED));
+        assertFalse(session.whenOpened().isDone());
+        session.open();
+        assertTrue(openedSeen.get());
+        assertSame(session, session.whenOpened().get(1, TimeUnit.SECONDS));
+        assertFalse(session.whenEOF().isDone());
+        session.close();
+        assertTrue(session.whenClosed().isSuccess());
+        assertTrue(session.whenEOF().isSuccess());
+    }
+
+    @Test
+    public void testClosedBeforeOpened() throws Exception {
+        TestSession session = new TestSession();
+        session.close();
+        try {
+            session.whenOpened().get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(session.whenClosed().isDone());
+    }
+
+    @Test
+    public void testUntypedEvent() throws Exception {
+        TestSession session = new TestSession();
+        final AtomicBoolean delivered = new AtomicBoolean();
+        session.addListener(new EventListener() {
+            public void handle(Event event) {
+                delivered.set(true);
+            }
+        }, new ProducerEventFilter(session));
+        session.fire(new AbstractEvent(session) {
+        });
+        assertTrue(delivered.get());
+        assertFalse(session.whenOpened().isDone());
+    }
+
+    static class TestSession extends AbstractSession {
+        TestSession() {
+            super(new MapConfigurable());
+        }
+
+        @Override
+        protected void openImpl() throws IOException {
+            setContainerStatus(Status.OPENNED);
+            fire(new OpennedEvent(this));
+        }
+
+        @Override
+        protected void closeImpl() throws IOException {
+            setContainerStatus(Status.CLOSED);
+            fire(new ClosedEvent(this));
+        }
+
+        @Override
+        public boolean isOpened() {
+            return getContainerStatus() == Status.OPENNED;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return getContainerStatus() == Status.CLOSED;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.sf.commons.ssh.common;
+
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void testFairShare() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        budget.register();
+        budget.register();
+        assertTrue(budget.tryReserve(0, 400));
+        assertTrue(budget.tryReserve(400, 100));
+        // over half of the limit, first consumer is at its fair share
+        assertFalse(budget.tryReserve(500, 100));
+        assertTrue(budget.tryReserve(0, 400));
+        assertFalse(budget.tryReserve(400, 200));
+        assertEquals(900, budget.getUsedBytes());
+        assertEquals(2, budget.getDenied());
+        budget.release(900);
+        assertEquals(0, budget.getUsedBytes());
+        assertEquals(900, budget.getPeakBytes());
+    }
+
+    @Test
+    public void testPipeThrottledByBudget() throws Exception {
+        MemoryBudget budget = new MemoryBudget(4096);
+        PipedInputStream in = new PipedInputStream(1024, 0, 1024, 2, new SimpleBufferAllocator());
+        in.setBudget(budget);
+        assertEquals(1024, budget.getUsedBytes());
+        final PipedOutputStream out = new PipedOutputStream(in);
+        final byte[] data = new byte[256 * 1024];
+        new Random(3).nextBytes(data);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    out.write(data);
+                    out.close();
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        writer.start();
+        Thread.sleep(100);
+        // unbounded pipe stops growing at budget
+        assertTrue(budget.getUsedBytes() <= budget.getLimit());
+        assertTrue(budget.getDenied() > 0);
+
+        byte[] result = new byte[data.length];
+        int pos = 0;
+        int k;
+        while ((k = in.read(result, pos, Math.min(result.length - pos, 500))) > 0)
+            pos += k;
+        writer.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        assertArrayEquals(data, result);
+        assertTrue(budget.getPeakBytes() <= budget.getLimit());
+
+        in.close();
+        assertEquals(0, budget.getUsedBytes());
+        assertEquals(0, budget.getConsumers());
+    }
+
+    @Test
+    public void testCreatedByBuilder() {
+        MapConfigurable conf = new MapConfigurable();
+        conf.includeDefault(PipePropertiesBuilder.getInstance().getDefault());
+        MemoryBudgetPropertiesBuilder.getInstance().setBudget(conf, "65536");
+        PipedInputStream pipe = PipePropertiesBuilder.getInstance().createPipe(conf);
+        MemoryBudget budget = MemoryBudgetPropertiesBuilder.getInstance().getBudget(conf);
+        assertSame(budget, pipe.getBudget());
+        assertEquals(1, budget.getConsumers());
+        assertEquals(1024, MemoryBudgetPropertiesBuilder.getInstance().getUsedBytes(conf));
+    }
+}
@@ -0,0 +1,163 @@
+package net.sf.commons.ssh.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedEventExecutorTest {
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        OrderedEventExecutor executor = new OrderedEventExecutor(4, 16);
+        final int keys = 8;
+        final int tasks = 2000;
+        final List<List<Integer>> results = new ArrayList<List<Integer>>();
+        final AtomicBoolean concurrent = new AtomicBoolean(false);
+        final AtomicInteger[] running = new AtomicInteger[keys];
+        for (int k = 0; k < keys; k++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            running[k] = new AtomicInteger();
+        }
+        for (int i = 0; i < tasks; i++) {
+            for (int k = 0; k < keys; k++) {
+                final int key = k;
+                final int value = i;
+                executor.execute("key" + k, new Runnable() {
+                    public void run() {
+                        if (running[key].incrementAndGet() != 1)
+                            concurrent.set(true);
+                        results.get(key).add(value);
+                        running[key].decrementAndGet();
+                    }
+                });
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertFalse(concurrent.get());
+        for (List<Integer> result : results) {
+            assertEquals(tasks, result.size());
+            for (int i = 0; i < tasks; i++)
+                assertEquals(i, result.get(i).intValue());
+        }
+        assertEquals(0, executor.getLaneCount());
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final OrderedEventExecutor executor = new OrderedEventExecutor(2, 4);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger submitted = new AtomicInteger();
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < 20; i++) {
+                    executor.execute("slow", new Runnable() {
+                        public void run() {
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    });
+                    submitted.incrementAndGet();
+                }
+            }
+        });
+        producer.start();
+        Thread.sleep(300);
+        // first task is running, four are queued, producer waits
+        assertEquals(5, submitted.get());
+
+        final CountDownLatch other = new CountDownLatch(1);
+        executor.execute("other", new Runnable() {
+            public void run() {
+                other.countDown();
+            }
+        });
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        producer.join(5000);
+        assertEquals(20, submitted.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLaneThreadsDontWait() throws Exception {
+        // single thread: lane "b" is queued behind lane "a" which fills it
+        final OrderedEventExecutor executor = new OrderedEventExecutor(1, 2);
+        final CountDownLatch done = new CountDownLatch(10);
+        executor.execute("a", new Runnable() {
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    executor.execute("b", new Runnable() {
+                        public void run() {
+                            done.countDown();
+                        }
+                    });
+                }
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdownWakesSubmitter() throws Exception {
+        final OrderedEventExecutor executor = new OrderedEventExecutor(1, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable blocked = new Runnable() {
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute("slow", blocked);
+        executor.execute("slow", blocked);
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                executor.execute("slow", blocked);
+            }
+        });
+        producer.start();
+        Thread.sleep(200);
+        assertTrue(producer.isAlive());
+        executor.shutdown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        release.countDown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testMaxPoolSizeResizesPool() {
+        EventProcessorThread.enable();
+        try {
+            EventProcessorThread thread = EventProcessorThread.getInstance();
+            thread.setPoolSize(2);
+            thread.setMaxPoolSize(6);
+            assertEquals(6, thread.getExecutor().getPoolSize());
+            thread.setMaxPoolSize(1);
+            assertEquals(2, thread.getExecutor().getPoolSize());
+        } finally {
+            EventProcessorThread.disable();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package net.sf.commons.ssh.common;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+
+public class PipeAllocationTest {
+
+    private static final int WARM_UP = 200000;
+    private static final int ITERATIONS = 10000;
+
+    @Test
+    public void testSegmentedSteadyState() throws IOException {
+        PipedInputStream in = new PipedInputStream(1024, 16 * 1024, 1024, 2, new SimpleBufferAllocator());
+        assertSteadyStateAllocation(in);
+    }
+
+    @Test
+    public void testRingSteadyState() throws IOException {
+        assertSteadyStateAllocation(new RingPipedInputStream(4096, new SimpleBufferAllocator()));
+    }
+
+    private void assertSteadyStateAllocation(PipedInputStream in) throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        PipedOutputStream out = new PipedOutputStream(in);
+        byte[] data = new byte[700];
+        byte[] result = new byte[700];
+        cycle(in, out, data, result, WARM_UP);
+
+        long id = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(id);
+        long overhead = threads.getThreadAllocatedBytes(id) - start;
+        start = threads.getThreadAllocatedBytes(id);
+        cycle(in, out, data, result, ITERATIONS);
+        long allocated = threads.getThreadAllocatedBytes(id) - start - overhead;
+        assertEquals("bytes allocated per write/read", 0, allocated / ITERATIONS);
+    }
+
+    private static void cycle(PipedInputStream in, PipedOutputStream out, byte[] data, byte[] result, int count)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.write(data);
+            out.write(i);
+            int read = 0;
+            while (read < data.length)
+                read += in.read(result, read, data.length - read);
+            in.read();
+        }
+    }
+}
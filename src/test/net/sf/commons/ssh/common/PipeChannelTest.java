@@ -0,0 +1,100 @@
+package net.sf.commons.ssh.common;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PipeChannelTest {
+
+    @Test
+    public void testSegmentedTransferTo() throws Exception {
+        transfer(new PipedInputStream(512, 4096, 512, 2, new SimpleBufferAllocator()));
+    }
+
+    @Test
+    public void testRingTransferTo() throws Exception {
+        transfer(new RingPipedInputStream(1024, new SimpleBufferAllocator()));
+    }
+
+    @Test
+    public void testSegmentedPeekAndRead() throws IOException {
+        peekAndRead(new PipedInputStream(16, 0, 16, 2, new SimpleBufferAllocator()));
+    }
+
+    @Test
+    public void testRingPeekAndRead() throws IOException {
+        peekAndRead(new RingPipedInputStream(64, new SimpleBufferAllocator()));
+    }
+
+    private void transfer(PipedInputStream in) throws Exception {
+        final PipedOutputStream out = new PipedOutputStream(in);
+        final byte[] data = new byte[200 * 1024 + 3];
+        new Random(5).nextBytes(data);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+                    direct.put(data).flip();
+                    while (direct.hasRemaining()) {
+                        ByteBuffer first = direct.slice();
+                        first.limit(Math.min(first.remaining(), 700));
+                        direct.position(direct.position() + first.remaining());
+                        ByteBuffer second = direct.slice();
+                        second.limit(Math.min(second.remaining(), 300));
+                        direct.position(direct.position() + second.remaining());
+                        out.write(new ByteBuffer[]{first, second});
+                    }
+                    out.close();
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        writer.start();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        long count = in.transferTo(Channels.newChannel(result));
+        writer.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        assertEquals(data.length, count);
+        assertArrayEquals(data, result.toByteArray());
+    }
+
+    private void peekAndRead(PipedInputStream in) throws IOException {
+        PipedOutputStream out = new PipedOutputStream(in);
+        byte[] data = new byte[50];
+        new Random(9).nextBytes(data);
+        out.write(ByteBuffer.wrap(data));
+        assertEquals(data.length, in.available());
+
+        ByteBuffer[] segments = in.peekSegments();
+        ByteBuffer peeked = ByteBuffer.allocate(data.length);
+        for (ByteBuffer segment : segments) {
+            assertTrue(segment.isReadOnly());
+            peeked.put(segment);
+        }
+        assertArrayEquals(data, peeked.array());
+        assertEquals(data.length, in.available());
+
+        ByteBuffer dst = ByteBuffer.allocate(30);
+        assertEquals(30, in.read(dst));
+        dst.flip();
+        for (int i = 0; i < 30; i++)
+            assertEquals(data[i], dst.get());
+        dst.clear();
+        out.close();
+        assertEquals(20, in.read(dst));
+        assertEquals(-1, in.read(dst));
+    }
+}
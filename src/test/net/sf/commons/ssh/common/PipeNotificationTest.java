@@ -0,0 +1,97 @@
+package net.sf.commons.ssh.common;
+
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PipeNotificationTest {
+
+    @Test
+    public void testNotifyEveryWrite() throws IOException {
+        PipedOutputStream out = new PipedOutputStream(new PipedInputStream());
+        AtomicInteger count = counter(out);
+        for (int i = 0; i < 10; i++)
+            out.write(new byte[10]);
+        assertEquals(10, count.get());
+    }
+
+    @Test
+    public void testSegmentedEdge() throws IOException {
+        edge(new PipedInputStream(64, 0, 64, 2, new SimpleBufferAllocator()));
+    }
+
+    @Test
+    public void testRingEdge() throws IOException {
+        edge(new RingPipedInputStream(4096, new SimpleBufferAllocator()));
+    }
+
+    @Test
+    public void testThreshold() throws IOException {
+        MapConfigurable conf = new MapConfigurable();
+        conf.includeDefault(PipePropertiesBuilder.getInstance().getDefault());
+        PipePropertiesBuilder.getInstance().setNotifyCoalesce(conf, true);
+        PipePropertiesBuilder.getInstance().setNotifyThreshold(conf, 100);
+        PipedInputStream in = PipePropertiesBuilder.getInstance().createPipe(conf);
+        PipedOutputStream out = PipePropertiesBuilder.getInstance().createOutput(in, conf);
+        assertTrue(out.isNotifyCoalescing());
+        AtomicInteger count = counter(out);
+        for (int i = 0; i < 31; i++)
+            out.write(new byte[10]);
+        // edge, then every 100 bytes
+        assertEquals(4, count.get());
+    }
+
+    @Test
+    public void testSegmentedGatherEdge() throws IOException {
+        gatherEdge(new PipedInputStream(64, 0, 64, 2, new SimpleBufferAllocator()));
+    }
+
+    @Test
+    public void testRingGatherEdge() throws IOException {
+        gatherEdge(new RingPipedInputStream(4096, new SimpleBufferAllocator()));
+    }
+
+    private void gatherEdge(PipedInputStream in) throws IOException {
+        PipedOutputStream out = new PipedOutputStream(in);
+        out.setNotifyCoalescing(true, 0, 0);
+        AtomicInteger count = counter(out);
+        // first buffer makes drained pipe non-empty, last one doesn't
+        out.write(new ByteBuffer[]{ByteBuffer.wrap(new byte[10]), ByteBuffer.wrap(new byte[20]),
+                ByteBuffer.wrap(new byte[30])});
+        assertEquals(1, count.get());
+        assertEquals(60, in.read(new byte[100]));
+        out.write(new ByteBuffer[]{ByteBuffer.wrap(new byte[10]), ByteBuffer.wrap(new byte[10])});
+        assertEquals(2, count.get());
+    }
+
+    private void edge(PipedInputStream in) throws IOException {
+        PipedOutputStream out = new PipedOutputStream(in);
+        out.setNotifyCoalescing(true, 0, 0);
+        AtomicInteger count = counter(out);
+        for (int i = 0; i < 100; i++)
+            out.write(i);
+        assertEquals(1, count.get());
+        byte[] buffer = new byte[1000];
+        assertEquals(100, in.read(buffer));
+        out.write(buffer, 0, 500);
+        out.write(buffer, 0, 500);
+        assertEquals(2, count.get());
+    }
+
+    private AtomicInteger counter(PipedOutputStream out) {
+        final AtomicInteger count = new AtomicInteger();
+        out.setOnWrite(new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        });
+        return count;
+    }
+}
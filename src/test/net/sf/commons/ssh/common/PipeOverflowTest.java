@@ -0,0 +1,179 @@
+package net.sf.commons.ssh.common;
+
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipeOverflowTest {
+
+    @Test
+    public void testWriterNotBlockedBySlowReader() throws Exception {
+        MappedBufferAllocator spill = new MappedBufferAllocator();
+        PipedInputStream in = new PipedInputStream(1024, 8 * 1024, 1024, 2, new SimpleBufferAllocator());
+        in.setOverflow(spill, 64 * 1024, 0);
+        PipedOutputStream out = new PipedOutputStream(in);
+        byte[] data = new byte[1024 * 1024 + 5];
+        new Random(11).nextBytes(data);
+
+        // nobody reads yet, writer would wait forever without overflow
+        for (int off = 0; off < data.length; off += 1000)
+            out.write(data, off, Math.min(1000, data.length - off));
+        out.close();
+        assertTrue(in.getSpilledSize() > 0);
+        assertTrue(spill.getFileCount() > 0);
+
+        byte[] result = new byte[data.length];
+        int pos = 0;
+        int k;
+        while ((k = in.read(result, pos, Math.min(result.length - pos, 3000))) > 0)
+            pos += k;
+        assertEquals(data.length, pos);
+        assertArrayEquals(data, result);
+        in.close();
+        assertEquals(0, in.getSpilledSize());
+        assertEquals(0, spill.getFileCount());
+    }
+
+    @Test
+    public void testFreeMemoryUsedBeforeDisk() throws Exception {
+        MappedBufferAllocator spill = new MappedBufferAllocator();
+        PipedInputStream in = new PipedInputStream(1024, 1024, 1024, 2, new SimpleBufferAllocator());
+        in.setOverflow(spill, 4096, 0);
+        PipedOutputStream out = new PipedOutputStream(in);
+        byte[] data = new byte[1024 + 256 + 512];
+        new Random(5).nextBytes(data);
+        byte[] result = new byte[data.length];
+        out.write(data, 0, 1024);
+        assertEquals(512, in.read(result, 0, 512));
+        // reader freed half of the only buffer, writer wraps into it
+        out.write(data, 1024, 256);
+        assertEquals(0, in.getSpilledSize());
+        // wrapped part is full, the rest goes to disk behind it
+        out.write(data, 1280, 512);
+        assertTrue(in.getSpilledSize() > 0);
+        out.close();
+        int pos = 512;
+        int k;
+        while ((k = in.read(result, pos, result.length - pos)) > 0)
+            pos += k;
+        assertEquals(data.length, pos);
+        assertArrayEquals(data, result);
+        in.close();
+        assertEquals(0, spill.getFileCount());
+    }
+
+    @Test
+    public void testSpillWhenWrappedTwice() throws Exception {
+        MappedBufferAllocator spill = new MappedBufferAllocator();
+        PipedInputStream in = new PipedInputStream(1024, 1024, 1024, 2, new SimpleBufferAllocator());
+        in.setOverflow(spill, 4096, 0);
+        PipedOutputStream out = new PipedOutputStream(in);
+        byte[] data = new byte[1024 + 256 + 1024];
+        new Random(7).nextBytes(data);
+        byte[] result = new byte[data.length];
+        out.write(data, 0, 1024);
+        assertEquals(512, in.read(result, 0, 512));
+        out.write(data, 1024, 256);
+        int pos = 512;
+        while (pos < 1024 + 128)
+            pos += in.read(result, pos, 1024 + 128 - pos);
+        assertEquals(0, in.getSpilledSize());
+        // reader is inside the wrapped part, writer fills the buffer and wraps again
+        out.write(data, 1280, 1024);
+        assertTrue(in.getSpilledSize() > 0);
+        out.close();
+        int k;
+        while ((k = in.read(result, pos, result.length - pos)) > 0)
+            pos += k;
+        assertEquals(data.length, pos);
+        assertArrayEquals(data, result);
+        in.close();
+        assertEquals(0, spill.getFileCount());
+    }
+
+    @Test
+    public void testCloseDuringTransfer() throws Exception {
+        final MappedBufferAllocator spill = new MappedBufferAllocator();
+        final PipedInputStream in = new PipedInputStream(1024, 1024, 1024, 2, new SimpleBufferAllocator());
+        in.setOverflow(spill, 4096, 0);
+        PipedOutputStream out = new PipedOutputStream(in);
+        byte[] data = new byte[1024 + 3000];
+        new Random(3).nextBytes(data);
+        out.write(data);
+        assertEquals(1024, in.read(new byte[1024]));
+        final ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+        WritableByteChannel target = new WritableByteChannel() {
+            public int write(ByteBuffer src) throws IOException {
+                // another thread closes the pipe while chunk of disk segment is written
+                in.close();
+                assertEquals(1, spill.getFileCount());
+                int count = src.remaining();
+                while (src.hasRemaining())
+                    transferred.write(src.get());
+                return count;
+            }
+
+            public boolean isOpen() {
+                return true;
+            }
+
+            public void close() {
+            }
+        };
+        try {
+            in.transferTo(target);
+            fail("pipe is closed");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(3000, transferred.size());
+        assertEquals(0, spill.getFileCount());
+    }
+
+    @Test
+    public void testPeekedDiskSegmentOutlivesRead() throws Exception {
+        MappedBufferAllocator spill = new MappedBufferAllocator();
+        PipedInputStream in = new PipedInputStream(1024, 1024, 1024, 2, new SimpleBufferAllocator());
+        in.setOverflow(spill, 4096, 0);
+        PipedOutputStream out = new PipedOutputStream(in);
+        out.write(new byte[1024]);
+        out.write(new byte[]{7, 8, 9});
+        ByteBuffer[] views = in.peekSegments();
+        assertEquals(2, views.length);
+        assertEquals(1027, in.read(new byte[2048]));
+        in.close();
+        assertEquals(0, spill.getFileCount());
+        // disk segment under view is unmapped by garbage collector only
+        assertEquals(7, views[1].get(0));
+    }
+
+    @Test
+    public void testCreatedByBuilder() throws Exception {
+        File directory = File.createTempFile("pipe-overflow-test", "");
+        assertTrue(directory.delete() && directory.mkdir());
+        MapConfigurable conf = new MapConfigurable();
+        conf.includeDefault(PipePropertiesBuilder.getInstance().getDefault());
+        PipePropertiesBuilder.getInstance().setMaximumSize(conf, 4096);
+        PipePropertiesBuilder.getInstance().setOverflowEnabled(conf, true);
+        PipePropertiesBuilder.getInstance().setOverflowSegmentSize(conf, 4096);
+        PipePropertiesBuilder.getInstance().setOverflowDirectory(conf, directory.getPath());
+        PipedInputStream in = PipePropertiesBuilder.getInstance().createPipe(conf);
+        PipedOutputStream out = new PipedOutputStream(in);
+        out.write(new byte[32 * 1024]);
+        assertTrue(directory.list().length > 0);
+        in.close();
+        assertEquals(0, directory.list().length);
+        directory.delete();
+    }
+}
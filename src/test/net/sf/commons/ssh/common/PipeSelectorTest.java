@@ -0,0 +1,166 @@
+package net.sf.commons.ssh.common;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PipeSelectorTest {
+
+    private static final int PIPES = 20;
+
+    @Test
+    public void testReadManyPipesByOneThread() throws Exception {
+        PipeSelector selector = new PipeSelector();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        byte[][] data = new byte[PIPES][];
+        Thread[] writers = new Thread[PIPES];
+        for (int i = 0; i < PIPES; i++) {
+            PipedInputStream in = i % 2 == 0
+                    ? new PipedInputStream(256, 2048, 256, 2, new SimpleBufferAllocator())
+                    : new RingPipedInputStream(1024, new SimpleBufferAllocator());
+            final PipedOutputStream out = new PipedOutputStream(in);
+            final byte[] bytes = new byte[10000 + i * 997];
+            new Random(i).nextBytes(bytes);
+            data[i] = bytes;
+            selector.register(in, PipeSelector.OP_READ, new ByteArrayOutputStream());
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int off = 0; off < bytes.length; off += 300)
+                            out.write(bytes, off, Math.min(300, bytes.length - off));
+                        out.close();
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            writers[i].start();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        while (!selector.keys().isEmpty()) {
+            selector.select(10000);
+            for (Iterator<PipeSelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                PipeSelectionKey key = it.next();
+                assertTrue(key.isReadable());
+                buffer.clear();
+                int count = key.pipe().readNow(buffer);
+                if (count < 0)
+                    key.cancel();
+                else
+                    ((ByteArrayOutputStream) key.attachment()).write(buffer.array(), 0, count);
+            }
+        }
+        for (Thread writer : writers)
+            writer.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+    }
+
+    @Test
+    public void testCollectsAllData() throws Exception {
+        PipeSelector selector = new PipeSelector();
+        PipedInputStream in = new RingPipedInputStream(64, new SimpleBufferAllocator());
+        PipedOutputStream out = new PipedOutputStream(in);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        PipeSelectionKey key = selector.register(in, PipeSelector.OP_READ, result);
+        assertEquals(0, selector.selectNow());
+
+        byte[] data = new byte[40];
+        new Random(3).nextBytes(data);
+        out.write(data);
+        assertEquals(1, selector.select(1000));
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        assertEquals(16, in.readNow(buffer));
+        result.write(buffer.array(), 0, 16);
+
+        // level-triggered: still selected while data remains
+        assertEquals(1, selector.selectNow());
+        buffer.clear();
+        assertEquals(16, in.readNow(buffer));
+        result.write(buffer.array(), 0, 16);
+        buffer.clear();
+        assertEquals(8, in.readNow(buffer));
+        result.write(buffer.array(), 0, 8);
+        assertEquals(0, selector.selectNow());
+        assertArrayEquals(data, result.toByteArray());
+
+        out.close();
+        assertEquals(1, selector.select(1000));
+        buffer.clear();
+        assertEquals(-1, in.readNow(buffer));
+        key.cancel();
+        assertTrue(selector.keys().isEmpty());
+        selector.close();
+    }
+
+    @Test
+    public void testWriteReadiness() throws Exception {
+        PipeSelector selector = new PipeSelector();
+        PipedInputStream in = new PipedInputStream(16, 32, 16, 2, new SimpleBufferAllocator());
+        PipedOutputStream out = new PipedOutputStream(in);
+        PipeSelectionKey key = selector.register(out, PipeSelector.OP_WRITE, null);
+        assertEquals(1, selector.selectNow());
+        assertTrue(key.isWritable());
+
+        ByteBuffer src = ByteBuffer.allocate(100);
+        int written = 0;
+        int count;
+        while ((count = out.writeNow(src)) > 0)
+            written += count;
+        assertTrue(written > 0 && written < 100);
+        assertFalse(in.isWritable());
+        assertEquals(0, selector.selectNow());
+
+        byte[] buffer = new byte[written];
+        assertEquals(written, in.read(buffer));
+        assertEquals(1, selector.select(1000));
+        assertTrue(key.isWritable());
+        selector.close();
+        assertFalse(key.isValid());
+    }
+
+    @Test
+    public void testWritableAgreesWithWriteNow() throws Exception {
+        PipedInputStream in = new PipedInputStream(16, 16, 16, 2, new SimpleBufferAllocator());
+        PipedOutputStream out = new PipedOutputStream(in);
+        out.write(new byte[16]);
+        // reader hasn't freed anything, there is nowhere to wrap
+        assertFalse(in.isWritable());
+        assertEquals(0, out.writeNow(ByteBuffer.allocate(1)));
+
+        assertEquals(4, in.read(new byte[4]));
+        assertTrue(in.isWritable());
+        assertEquals(4, out.writeNow(ByteBuffer.allocate(100)));
+        assertFalse(in.isWritable());
+    }
+
+    @Test
+    public void testWakeup() throws Exception {
+        final PipeSelector selector = new PipeSelector();
+        selector.register(new PipedInputStream(), PipeSelector.OP_READ, null);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                selector.wakeup();
+            }
+        }).start();
+        assertEquals(0, selector.select());
+        selector.close();
+    }
+}
@@ -0,0 +1,97 @@
+package net.sf.commons.ssh.common;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PipeWatermarkTest {
+
+    @Test
+    public void testSegmented() throws IOException {
+        watermarks(new PipedInputStream(64, 0, 64, 2, new SimpleBufferAllocator()));
+    }
+
+    @Test
+    public void testRing() throws IOException {
+        watermarks(new RingPipedInputStream(1024, new SimpleBufferAllocator()));
+    }
+
+    @Test
+    public void testHighRunOutsideLockWhenWriterWaits() throws Exception {
+        final PipedInputStream in = new PipedInputStream(64, 64, 64, 2, new SimpleBufferAllocator());
+        in.setWatermarks(32, 8);
+        final List<Boolean> locked = new ArrayList<Boolean>();
+        in.setOnHigh(new Runnable() {
+            @Override
+            public void run() {
+                locked.add(Thread.holdsLock(in));
+            }
+        });
+        final PipedOutputStream out = new PipedOutputStream(in);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    out.write(new byte[128]);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        writer.start();
+        byte[] buffer = new byte[128];
+        int read = 0;
+        while (read < 128)
+            read += in.read(buffer, 0, buffer.length - read);
+        writer.join(5000);
+        assertFalse(writer.isAlive());
+        // reader may drain pipe below low watermark before writer fills it again
+        assertFalse(locked.isEmpty());
+        assertFalse(locked.contains(Boolean.TRUE));
+    }
+
+    private void watermarks(PipedInputStream in) throws IOException {
+        final List<String> events = new ArrayList<String>();
+        in.setWatermarks(500, 100);
+        in.setOnHigh(new Runnable() {
+            @Override
+            public void run() {
+                events.add("high");
+            }
+        });
+        in.setOnDrained(new Runnable() {
+            @Override
+            public void run() {
+                events.add("drained");
+            }
+        });
+        PipedOutputStream out = new PipedOutputStream(in);
+        byte[] buffer = new byte[100];
+        for (int i = 0; i < 4; i++)
+            out.write(buffer);
+        assertEquals(0, events.size());
+        out.write(buffer);
+        out.write(buffer);
+        assertEquals(1, events.size());
+        assertEquals("high", events.get(0));
+
+        assertEquals(100, in.read(buffer));
+        assertEquals(100, in.read(buffer));
+        assertEquals(100, in.read(buffer));
+        assertEquals(100, in.read(buffer));
+        assertEquals(1, events.size());
+        assertEquals(100, in.read(buffer));
+        assertEquals(2, events.size());
+        assertEquals("drained", events.get(1));
+
+        for (int i = 0; i < 5; i++)
+            out.write(buffer);
+        assertEquals(3, events.size());
+        assertEquals("high", events.get(2));
+    }
+}
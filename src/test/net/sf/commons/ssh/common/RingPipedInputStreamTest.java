@@ -0,0 +1,96 @@
+package net.sf.commons.ssh.common;
+
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RingPipedInputStreamTest {
+
+    @Test
+    public void testTransferAcrossThreads() throws Exception {
+        final byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(data);
+        RingPipedInputStream in = new RingPipedInputStream(1000, new SimpleBufferAllocator());
+        assertEquals(1024, in.getCapacity());
+        final PipedOutputStream out = new PipedOutputStream(in);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Random random = new Random(7);
+                    int off = 0;
+                    while (off < data.length) {
+                        int len = Math.min(data.length - off, 1 + random.nextInt(3000));
+                        out.write(data, off, len);
+                        off += len;
+                    }
+                    out.close();
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        writer.start();
+
+        byte[] result = new byte[data.length];
+        byte[] chunk = new byte[777];
+        int pos = 0;
+        int k;
+        while ((k = in.read(chunk)) != -1) {
+            System.arraycopy(chunk, 0, result, pos, k);
+            pos += k;
+        }
+        writer.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        assertEquals(data.length, pos);
+        assertArrayEquals(data, result);
+        assertEquals(-1, in.available());
+    }
+
+    @Test
+    public void testSingleBytes() throws IOException {
+        RingPipedInputStream in = new RingPipedInputStream(4, new SimpleBufferAllocator());
+        PipedOutputStream out = new PipedOutputStream(in);
+        for (int i = 0; i < 10; i++) {
+            out.write(i + 250);
+            assertEquals(1, in.available());
+            assertEquals((i + 250) & 0xFF, in.read());
+        }
+        out.close();
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testReadTimeout() throws IOException {
+        RingPipedInputStream in = new RingPipedInputStream(16, new SimpleBufferAllocator());
+        new PipedOutputStream(in);
+        in.setWaitTimeout(50);
+        try {
+            in.read();
+            fail("read should time out");
+        } catch (IOException e) {
+            assertEquals("Read timeout", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCreatedByBuilder() {
+        MapConfigurable conf = new MapConfigurable();
+        conf.includeDefault(PipePropertiesBuilder.getInstance().getDefault());
+        PipePropertiesBuilder.getInstance().setType(conf, PipeType.RING);
+        PipePropertiesBuilder.getInstance().setRingCapacity(conf, 4096);
+        PipedInputStream pipe = PipePropertiesBuilder.getInstance().createPipe(conf);
+        assertEquals(RingPipedInputStream.class, pipe.getClass());
+        assertEquals(4096, pipe.getMaximumSize());
+    }
+}
@@ -0,0 +1,74 @@
+package net.sf.commons.ssh.common;
+
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SlabBufferAllocatorTest {
+
+    @Test
+    public void testSizeClasses() {
+        SlabBufferAllocator allocator = new SlabBufferAllocator(256, 4096, 1024 * 1024);
+        assertEquals(256, allocator.allocate(1).capacity());
+        assertEquals(1024, allocator.allocate(1000).capacity());
+        assertEquals(1000, allocator.allocateExact(1000).capacity());
+        assertEquals(512, allocator.allocateNoMore(1000).capacity());
+        assertEquals(10000, allocator.allocate(10000).capacity());
+        assertEquals(5, allocator.getMisses());
+    }
+
+    @Test
+    public void testReuse() {
+        SlabBufferAllocator allocator = new SlabBufferAllocator(256, 4096, 1024 * 1024);
+        ByteBuffer buffer = allocator.allocate(2000);
+        buffer.put((byte) 1);
+        allocator.dispose(buffer);
+        assertEquals(2048, allocator.getRetainedBytes());
+        ByteBuffer reused = allocator.allocate(1500);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(1, allocator.getHits());
+        assertEquals(0, allocator.getRetainedBytes());
+    }
+
+    @Test
+    public void testReuseAcrossThreads() throws InterruptedException {
+        final SlabBufferAllocator allocator = new SlabBufferAllocator(256, 4096, 1024 * 1024);
+        final ByteBuffer buffer = allocator.allocate(1024);
+        // pipe reader disposes segments allocated by writer
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                allocator.dispose(buffer);
+            }
+        });
+        reader.start();
+        reader.join();
+        assertSame(buffer, allocator.allocate(1024));
+    }
+
+    @Test
+    public void testRetainedLimit() {
+        SlabBufferAllocator allocator = new SlabBufferAllocator(256, 4096, 4096);
+        for (int i = 0; i < 4; i++)
+            allocator.dispose(ByteBuffer.allocate(2048));
+        assertEquals(4096, allocator.getRetainedBytes());
+        assertEquals(2, allocator.getEvictions());
+        assertEquals(2048, allocator.allocate(2048).capacity());
+        assertEquals(2048, allocator.allocate(2048).capacity());
+        assertEquals(2, allocator.getHits());
+        assertEquals(0, allocator.getRetainedBytes());
+    }
+
+    @Test
+    public void testSelectedByClassName() {
+        MapConfigurable conf = new MapConfigurable();
+        conf.includeDefault(PipePropertiesBuilder.getInstance().getDefault());
+        PipePropertiesBuilder.getInstance().setAllocator(conf, SlabBufferAllocator.class.getName());
+        assertTrue(PipePropertiesBuilder.getInstance().getAllocator(conf) instanceof SlabBufferAllocator);
+    }
+}
@@ -0,0 +1,74 @@
+package net.sf.commons.ssh.connector;
+
+import net.sf.commons.ssh.common.Closable;
+import net.sf.commons.ssh.connection.Connection;
+import net.sf.commons.ssh.event.Event;
+import net.sf.commons.ssh.event.EventFilter;
+import net.sf.commons.ssh.event.EventHandler;
+import net.sf.commons.ssh.event.EventListener;
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Measures creation and configuration of connector with and without observer of configuration events.
+ * Run as console application.
+ */
+public class ConnectorConfigurationBenchmark {
+    private static final int CONNECTORS = 20000;
+    private static final int PROPERTIES = 200000;
+
+    public static void main(String[] args) {
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CONNECTORS; i++)
+                new BenchmarkConnector();
+            long create = System.nanoTime() - start;
+
+            BenchmarkConnector quiet = new BenchmarkConnector();
+            start = System.nanoTime();
+            for (int i = 0; i < PROPERTIES; i++)
+                quiet.setProperty("benchmark.key", i);
+            long unobserved = System.nanoTime() - start;
+
+            BenchmarkConnector observed = new BenchmarkConnector();
+            EventHandler handler = observed.addListener(new EventListener() {
+                public void handle(Event event) {
+                }
+            }, EventFilter.ACCEPT_ALL);
+            start = System.nanoTime();
+            for (int i = 0; i < PROPERTIES; i++)
+                observed.setProperty("benchmark.key", i);
+            long withObserver = System.nanoTime() - start;
+            observed.removeEventHandler(handler);
+
+            System.out.println(String.format("create connector %d ns, setProperty %d ns unobserved, %d ns observed",
+                    create / CONNECTORS, unobserved / PROPERTIES, withObserver / PROPERTIES));
+        }
+    }
+
+    private static class BenchmarkConnector extends AbstractConnector {
+        BenchmarkConnector() {
+            super(new MapConfigurable());
+        }
+
+        public boolean isClosed() {
+            return false;
+        }
+
+        public Connection createConnection() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Collection<Closable> getClosableChildren() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected void closeImpl() throws IOException {
+        }
+    }
+}
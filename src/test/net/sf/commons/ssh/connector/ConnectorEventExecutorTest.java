@@ -0,0 +1,128 @@
+package net.sf.commons.ssh.connector;
+
+import net.sf.commons.ssh.common.Closable;
+import net.sf.commons.ssh.common.Status;
+import net.sf.commons.ssh.connection.Connection;
+import net.sf.commons.ssh.event.Event;
+import net.sf.commons.ssh.event.EventListener;
+import net.sf.commons.ssh.event.EventTypeFilter;
+import net.sf.commons.ssh.event.EventType;
+import net.sf.commons.ssh.event.HandlerType;
+import net.sf.commons.ssh.event.events.ClosedEvent;
+import net.sf.commons.ssh.event.events.ConnectedEvent;
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectorEventExecutorTest {
+
+    @Test
+    public void testConnectorPool() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        MapConfigurable conf = new MapConfigurable();
+        ConnectorPropertiesBuilder.getInstance().setEventProcessing(conf, EventProcessingMode.CONNECTOR);
+        ConnectorPropertiesBuilder.getInstance().setEventThreadFactory(conf, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                created.incrementAndGet();
+                Thread thread = new Thread(r, "connector-events");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        EventConnector connector = new EventConnector(conf);
+        final List<EventType> handled = Collections.synchronizedList(new ArrayList<EventType>());
+        final CountDownLatch closed = new CountDownLatch(1);
+        connector.addListener(new EventListener() {
+            public void handle(Event event) {
+                assertEquals("connector-events", Thread.currentThread().getName());
+                handled.add(event.getEventType());
+                if (event.getEventType() == EventType.CLOSED)
+                    closed.countDown();
+            }
+        }, new EventTypeFilter(EventType.CONNECTED).orFilterBy(new EventTypeFilter(EventType.CLOSED)),
+                HandlerType.PUSH_TO_PROCESS);
+
+        connector.fireConnected();
+        connector.close();
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, handled.size());
+        assertEquals(EventType.CONNECTED, handled.get(0));
+        assertEquals(EventType.CLOSED, handled.get(1));
+        assertTrue(created.get() > 0);
+
+        // events after close are not processed asynchronously anymore
+        connector.fireConnected();
+        assertEquals(2, handled.size());
+    }
+
+    @Test
+    public void testSharedDisabledByDefault() throws Exception {
+        EventConnector connector = new EventConnector(new MapConfigurable());
+        final AtomicInteger handled = new AtomicInteger();
+        connector.addListener(new EventListener() {
+            public void handle(Event event) {
+                handled.incrementAndGet();
+            }
+        }, new EventTypeFilter(EventType.CONNECTED), HandlerType.PUSH_TO_PROCESS);
+        connector.fireConnected();
+        connector.close();
+        assertEquals(0, handled.get());
+    }
+
+    @Test
+    public void testVirtualMode() throws Exception {
+        MapConfigurable conf = new MapConfigurable();
+        ConnectorPropertiesBuilder.getInstance().setProperty(conf, ConnectorPropertiesBuilder.EVENT_PROCESSING, "virtual");
+        EventConnector connector = new EventConnector(conf);
+        final CountDownLatch latch = new CountDownLatch(1);
+        connector.addListener(new EventListener() {
+            public void handle(Event event) {
+                latch.countDown();
+            }
+        }, new EventTypeFilter(EventType.CONNECTED), HandlerType.PUSH_TO_PROCESS);
+        connector.fireConnected();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        connector.close();
+    }
+
+    private static class EventConnector extends AbstractConnector {
+        EventConnector(MapConfigurable conf) {
+            super(conf);
+        }
+
+        void fireConnected() {
+            fire(new ConnectedEvent(this));
+        }
+
+        public boolean isClosed() {
+            return getContainerStatus() == Status.CLOSED;
+        }
+
+        public Connection createConnection() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Collection<Closable> getClosableChildren() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected void closeImpl() throws IOException {
+            setContainerStatus(Status.CLOSED);
+            fire(new ClosedEvent(this));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package net.sf.commons.ssh.event;
+
+import net.sf.commons.ssh.common.OrderedEventExecutor;
+import net.sf.commons.ssh.event.events.ReadAvailableEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchEventHandlerTest {
+
+    @Test
+    public void testBatchBySize() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        listener.expected = new CountDownLatch(30);
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        session.addEventHandler(new BatchEventHandler(listener, new EventTypeFilter(EventType.READ_AVAILABLE),
+                10, 1, TimeUnit.HOURS));
+        for (int i = 0; i < 35; i++)
+            session.push();
+        // no executor, full batches are delivered by shared delivery executor
+        assertTrue(listener.expected.await(5, TimeUnit.SECONDS));
+        assertEquals(3, listener.batches.size());
+        for (List<Event> batch : listener.batches)
+            assertEquals(10, batch.size());
+        assertEquals(30, listener.count());
+    }
+
+    @Test
+    public void testBatchByDelay() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        listener.expected = new CountDownLatch(5);
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        session.addListener(listener, new EventTypeFilter(EventType.READ_AVAILABLE), HandlerType.BATCH_PROCESS);
+        for (int i = 0; i < 5; i++)
+            session.push();
+        assertTrue(listener.expected.await(5, TimeUnit.SECONDS));
+        assertEquals(1, listener.batches.size());
+    }
+
+    @Test
+    public void testOrderOnExecutor() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        listener.expected = new CountDownLatch(1000);
+        BatchEventHandler handler = new BatchEventHandler(listener, EventFilter.ACCEPT_ALL, 7, 5, TimeUnit.MILLISECONDS);
+        OrderedEventExecutor executor = new OrderedEventExecutor(4, 16);
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        List<Event> fired = new ArrayList<Event>();
+        for (int i = 0; i < 1000; i++) {
+            Event event = new ReadAvailableEvent(session, null, false);
+            fired.add(event);
+            handler.offer(event, executor);
+        }
+        assertTrue(listener.expected.await(5, TimeUnit.SECONDS));
+        List<Event> received = new ArrayList<Event>();
+        for (List<Event> batch : listener.batches) {
+            assertTrue(batch.size() <= 7);
+            received.addAll(batch);
+        }
+        assertEquals(fired, received);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSlowListenerDoesntDelayOthers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        BatchEventListener slow = new RecordingListener() {
+            @Override
+            public void handle(List<Event> events) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        RecordingListener fast = new RecordingListener();
+        fast.expected = new CountDownLatch(1);
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        BatchEventHandler slowHandler = new BatchEventHandler(slow, EventFilter.ACCEPT_ALL, 100, 1,
+                TimeUnit.MILLISECONDS);
+        BatchEventHandler fastHandler = new BatchEventHandler(fast, EventFilter.ACCEPT_ALL, 100, 20,
+                TimeUnit.MILLISECONDS);
+        slowHandler.offer(new ReadAvailableEvent(session, null, false), null);
+        Thread.sleep(10);
+        fastHandler.offer(new ReadAvailableEvent(session, null, false), null);
+        try {
+            assertTrue(fast.expected.await(2, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testStoppedExecutorDeliversSerially() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicBoolean concurrent = new AtomicBoolean();
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void handle(List<Event> events) {
+                if (running.incrementAndGet() != 1)
+                    concurrent.set(true);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                super.handle(events);
+            }
+        };
+        listener.expected = new CountDownLatch(4);
+        BatchEventHandler handler = new BatchEventHandler(listener, EventFilter.ACCEPT_ALL, 2, 1, TimeUnit.HOURS);
+        OrderedEventExecutor executor = new OrderedEventExecutor(1, 16);
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        handler.offer(new ReadAvailableEvent(session, null, false), executor);
+        handler.offer(new ReadAvailableEvent(session, null, false), executor);
+        // lane still delivers first batch when executor rejects second one
+        executor.shutdown();
+        handler.offer(new ReadAvailableEvent(session, null, false), executor);
+        handler.offer(new ReadAvailableEvent(session, null, false), executor);
+        assertTrue(listener.expected.await(5, TimeUnit.SECONDS));
+        assertFalse(concurrent.get());
+    }
+
+    private static class RecordingListener implements BatchEventListener {
+        final List<List<Event>> batches = Collections.synchronizedList(new ArrayList<List<Event>>());
+        volatile CountDownLatch expected = new CountDownLatch(0);
+
+        public void handle(List<Event> events) {
+            batches.add(events);
+            for (int i = 0; i < events.size(); i++)
+                expected.countDown();
+        }
+
+        public void handle(Event event) {
+            handle(Collections.singletonList(event));
+        }
+
+        int count() {
+            int count = 0;
+            for (List<Event> batch : batches)
+                count += batch.size();
+            return count;
+        }
+    }
+}
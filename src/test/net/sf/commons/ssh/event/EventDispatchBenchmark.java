@@ -0,0 +1,53 @@
+package net.sf.commons.ssh.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares dispatch of events through {@link EventDispatchIndex} with linear scan of all handlers.
+ * Run as console application.
+ */
+public class EventDispatchBenchmark {
+    private static final int HANDLERS = 1000;
+    private static final int EVENTS = 200000;
+
+    public static void main(String[] args) {
+        EventType[] types = EventType.values();
+        ProducerType[] producers = ProducerType.values();
+        List<EventHandler> handlers = new ArrayList<EventHandler>();
+        EventDispatchIndex index = new EventDispatchIndex();
+        for (int i = 0; i < HANDLERS; i++) {
+            EventFilter filter = new EventTypeFilter(types[i % types.length])
+                    .andFilterBy(new ProducerTypeFilter(producers[i % producers.length]));
+            EventHandler handler = EventDispatchIndexTest.handler(filter);
+            handlers.add(handler);
+            index.add(handler);
+        }
+        Event[] events = new Event[types.length * producers.length];
+        for (int i = 0; i < events.length; i++)
+            events[i] = new EventDispatchIndexTest.TestEvent(types[i % types.length], producers[i % producers.length]);
+
+        for (int round = 0; round < 5; round++) {
+            long matched = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++) {
+                Event event = events[i % events.length];
+                for (EventHandler handler : handlers)
+                    if (handler.getEventFilter().check(event))
+                        matched++;
+            }
+            long linear = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++) {
+                Event event = events[i % events.length];
+                for (EventHandler handler : index.route(event))
+                    if (handler.getEventFilter().check(event))
+                        matched--;
+            }
+            long indexed = System.nanoTime() - start;
+            System.out.println(String.format("%d handlers: linear %d ns/event, indexed %d ns/event, diff %d",
+                    HANDLERS, linear / EVENTS, indexed / EVENTS, matched));
+        }
+    }
+}
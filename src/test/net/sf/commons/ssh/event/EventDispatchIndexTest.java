@@ -0,0 +1,168 @@
+package net.sf.commons.ssh.event;
+
+import net.sf.commons.ssh.event.events.ClosedEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventDispatchIndexTest {
+
+    @Test
+    public void testRoutesByTypeAndProducer() {
+        EventDispatchIndex index = new EventDispatchIndex();
+        EventHandler closed = handler(new EventTypeFilter(EventType.CLOSED));
+        EventHandler sessionReads = handler(new EventTypeFilter(EventType.READ_AVAILABLE)
+                .andFilterBy(new ProducerTypeFilter(ProducerType.SESSION)));
+        EventHandler all = handler(EventFilter.ACCEPT_ALL);
+        EventHandler none = handler(EventFilter.DENY_ALL);
+        EventHandler byClass = handler(new EventClassFilter(ClosedEvent.class, true));
+        index.add(closed);
+        index.add(sessionReads);
+        index.add(all);
+        index.add(none);
+        index.add(byClass);
+
+        assertArrayEquals(new EventHandler[]{closed, all},
+                index.route(new TestEvent(EventType.CLOSED, ProducerType.CONNECTION)));
+        assertArrayEquals(new EventHandler[]{sessionReads, all},
+                index.route(new TestEvent(EventType.READ_AVAILABLE, ProducerType.SESSION)));
+        assertArrayEquals(new EventHandler[]{all},
+                index.route(new TestEvent(EventType.READ_AVAILABLE, ProducerType.CONNECTION)));
+    }
+
+    @Test
+    public void testListView() {
+        EventDispatchIndex index = new EventDispatchIndex();
+        List<EventHandler> list = index.asList();
+        EventHandler closed = handler(new EventTypeFilter(EventType.CLOSED));
+        EventHandler all = handler(EventFilter.ACCEPT_ALL);
+        list.add(closed);
+        index.add(all);
+        assertEquals(Arrays.asList(closed, all), list);
+        TestEvent event = new TestEvent(EventType.CLOSED, ProducerType.CONNECTION);
+        assertArrayEquals(new EventHandler[]{closed, all}, index.route(event));
+
+        for (EventHandler handler : list)
+            list.remove(handler);
+        assertTrue(list.isEmpty());
+        assertEquals(0, index.route(event).length);
+    }
+
+    @Test
+    public void testOrFiltersAndIncrementalUpdate() {
+        EventDispatchIndex index = new EventDispatchIndex();
+        EventHandler config = handler(new EventTypeFilter(EventType.PROPERTY_CHANGED)
+                .orFilterBy(new EventTypeFilter(EventType.INCLUDE_DEFAULT))
+                .andFilterBy(new ProducerTypeFilter(ProducerType.CONNECTOR)));
+        index.add(config);
+        TestEvent include = new TestEvent(EventType.INCLUDE_DEFAULT, ProducerType.CONNECTOR);
+        TestEvent error = new TestEvent(EventType.ERROR, ProducerType.CONNECTOR);
+        assertArrayEquals(new EventHandler[]{config}, index.route(include));
+        assertEquals(0, index.route(error).length);
+
+        EventHandler errors = handler(new EventTypeFilter(EventType.ERROR));
+        index.add(errors);
+        assertArrayEquals(new EventHandler[]{config}, index.route(include));
+        assertArrayEquals(new EventHandler[]{errors}, index.route(error));
+
+        assertTrue(index.remove(config));
+        assertFalse(index.remove(config));
+        assertEquals(0, index.route(include).length);
+        assertEquals(Arrays.asList(errors), index.getHandlers());
+    }
+
+    @Test
+    public void testRoutedHandlersMatchLinearScan() {
+        EventDispatchIndex index = new EventDispatchIndex();
+        List<EventHandler> handlers = new ArrayList<EventHandler>();
+        EventType[] types = EventType.values();
+        ProducerType[] producers = ProducerType.values();
+        for (int i = 0; i < 200; i++) {
+            EventFilter filter = new EventTypeFilter(types[i % types.length]);
+            if (i % 3 == 0)
+                filter.andFilterBy(new ProducerTypeFilter(producers[i % producers.length]));
+            if (i % 7 == 0)
+                filter.orFilterBy(new EventTypeFilter(types[(i + 1) % types.length]));
+            EventHandler handler = handler(filter);
+            handlers.add(handler);
+            index.add(handler);
+        }
+        for (EventType type : types) {
+            for (ProducerType producer : producers) {
+                Event event = new TestEvent(type, producer);
+                List<EventHandler> expected = new ArrayList<EventHandler>();
+                for (EventHandler handler : handlers)
+                    if (handler.getEventFilter().check(event))
+                        expected.add(handler);
+                List<EventHandler> actual = new ArrayList<EventHandler>();
+                for (EventHandler handler : index.route(event))
+                    if (handler.getEventFilter().check(event))
+                        actual.add(handler);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testObservedTypes() {
+        EventDispatchIndex index = new EventDispatchIndex();
+        assertFalse(index.isObserved(EventType.CLOSED, ProducerType.SESSION));
+        EventHandler closed = handler(new EventTypeFilter(EventType.CLOSED)
+                .andFilterBy(new EventClassFilter(ClosedEvent.class, false)));
+        EventHandler connectors = handler(new ProducerTypeFilter(ProducerType.CONNECTOR));
+        index.add(closed);
+        index.add(connectors);
+        assertTrue(index.isObserved(EventType.CLOSED, ProducerType.SESSION));
+        assertFalse(index.isObserved(EventType.PROPERTY_CHANGED, ProducerType.SESSION));
+        assertTrue(index.isObserved(EventType.PROPERTY_CHANGED, ProducerType.CONNECTOR));
+        index.remove(connectors);
+        assertFalse(index.isObserved(EventType.PROPERTY_CHANGED, ProducerType.CONNECTOR));
+        index.remove(closed);
+        assertFalse(index.isObserved(EventType.CLOSED, ProducerType.SESSION));
+    }
+
+    static EventHandler handler(EventFilter filter) {
+        return new EventHandlerImpl(new EventListener() {
+            @Override
+            public void handle(Event event) {
+            }
+        }, HandlerType.IMMEDIATE_PROCESS, filter);
+    }
+
+    static class TestEvent implements Event {
+        private final EventType type;
+        private final ProducerType producerType;
+
+        TestEvent(EventType type, ProducerType producerType) {
+            this.type = type;
+            this.producerType = producerType;
+        }
+
+        public int getSeverity() {
+            return 0;
+        }
+
+        public int getPriority() {
+            return 0;
+        }
+
+        public EventProcessor getProducer() {
+            return null;
+        }
+
+        public ProducerType getProducerType() {
+            return producerType;
+        }
+
+        public EventType getEventType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package net.sf.commons.ssh.event;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventRoutesTest {
+
+    @Test
+    public void testOrderAndInvalidation() {
+        final List<String> calls = new ArrayList<String>();
+        ReadySetSelectorTest.TestSession connector = new ReadySetSelectorTest.TestSession();
+        ReadySetSelectorTest.TestSession connection = new ReadySetSelectorTest.TestSession();
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        connection.notifyLast(connector);
+        session.notifyLast(connection);
+
+        session.addListener(recorder(calls, "session"), new EventTypeFilter(EventType.READ_AVAILABLE));
+        connector.addListener(recorder(calls, "connector"), EventFilter.ACCEPT_ALL);
+        session.push();
+        assertEquals("[session, connector]", calls.toString());
+
+        // handler added to middle of chain after route was computed
+        calls.clear();
+        EventHandler middle = connection.addListener(recorder(calls, "connection"),
+                new ProducerTypeFilter(ProducerType.SESSION));
+        session.push();
+        assertEquals("[session, connection, connector]", calls.toString());
+
+        calls.clear();
+        connection.removeEventHandler(middle);
+        session.push();
+        assertEquals("[session, connector]", calls.toString());
+
+        // parent spliced above chain
+        calls.clear();
+        ReadySetSelectorTest.TestSession root = new ReadySetSelectorTest.TestSession();
+        root.addListener(recorder(calls, "root"), EventFilter.ACCEPT_ALL);
+        session.notifyLast(root);
+        session.push();
+        assertEquals("[session, connector, root]", calls.toString());
+    }
+
+    private static EventListener recorder(final List<String> calls, final String name) {
+        return new EventListener() {
+            public void handle(Event event) {
+                calls.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package net.sf.commons.ssh.event;
+
+import net.sf.commons.ssh.common.LatencyHistogram;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventStatisticsTest {
+
+    @After
+    public void tearDown() {
+        EventStatistics.uninstall();
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i * 1000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(50500, histogram.getMean());
+        assertEquals(100000, histogram.getMax());
+        long p50 = histogram.getPercentile(0.5);
+        assertTrue(p50 >= 50000 && p50 < 100000);
+        assertEquals(100000, histogram.getPercentile(1.0));
+        histogram.reset();
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    public void testCountsAndSlowHandler() throws Exception {
+        EventStatistics statistics = EventStatistics.install();
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(EventStatistics.OBJECT_NAME)));
+        statistics.setSlowThresholdMillis(20);
+
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        session.addListener(new EventListener() {
+            public void handle(Event event) {
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, new EventTypeFilter(EventType.READ_AVAILABLE));
+        session.push();
+        session.push();
+
+        assertEquals(2, statistics.getFiredCount(EventType.READ_AVAILABLE));
+        assertEquals(Long.valueOf(2), statistics.getHandledCounts().get("READ_AVAILABLE"));
+        assertTrue(statistics.getExecutionHistogram(EventType.READ_AVAILABLE).getMax() >= 30000000L);
+        assertEquals(2, statistics.getSlowHandlingCount());
+        assertNotNull(statistics.getSlowestHandler());
+        assertEquals(4, statistics.getExecutionPercentiles("READ_AVAILABLE").length);
+
+        EventStatistics.uninstall();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(EventStatistics.OBJECT_NAME)));
+        session.push();
+        assertEquals(2, statistics.getFiredCount(EventType.READ_AVAILABLE));
+    }
+}
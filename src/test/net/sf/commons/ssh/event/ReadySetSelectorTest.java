@@ -0,0 +1,126 @@
+package net.sf.commons.ssh.event;
+
+import net.sf.commons.ssh.errors.Error;
+import net.sf.commons.ssh.event.states.State;
+import net.sf.commons.ssh.options.Properties;
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReadySetSelectorTest {
+
+    @Test
+    public void testSelectOnlyTriggered() throws Exception {
+        ReadySetSelector selector = new ReadySetSelector(new TestSession(), new MapConfigurable());
+        TestSession[] sessions = new TestSession[100];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new TestSession();
+            selector.register(new HasData(), sessions[i]);
+        }
+        assertNull(selector.select(50, TimeUnit.MILLISECONDS));
+
+        sessions[7].push();
+        sessions[42].push();
+        Collection<Selector.StateHolder> selected = selector.select(1, TimeUnit.SECONDS);
+        assertEquals(2, selected.size());
+        assertEquals(2, selector.getReadyCount());
+
+        // level-triggered: still selected until data is consumed
+        sessions[7].consume();
+        Selector.StateHolder first = selector.selectFirst(1, TimeUnit.SECONDS);
+        assertSame(sessions[42], first.getObject());
+        sessions[42].consume();
+        assertNull(selector.select(50, TimeUnit.MILLISECONDS));
+        assertEquals(0, selector.getReadyCount());
+        selector.close();
+    }
+
+    @Test
+    public void testWaiterWokenByTrigger() throws Exception {
+        final ReadySetSelector selector = new ReadySetSelector(new TestSession(), new MapConfigurable());
+        final TestSession session = new TestSession();
+        selector.register(new HasData(), session);
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                session.push();
+            }
+        }).start();
+        long start = System.nanoTime();
+        Selector.StateHolder holder = selector.selectFirst(5, TimeUnit.SECONDS);
+        assertSame(session, holder.getObject());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4));
+        selector.unRegister(session);
+        assertTrue(session.handlers.isEmpty());
+    }
+
+    @Test
+    public void testSelectAll() throws Exception {
+        ReadySetSelector selector = new ReadySetSelector(new TestSession(), new MapConfigurable());
+        TestSession a = new TestSession();
+        TestSession b = new TestSession();
+        selector.register(new HasData(), a);
+        selector.register(new HasData(), b);
+        a.push();
+        assertNull(selector.selectAll(50, TimeUnit.MILLISECONDS));
+        b.push();
+        assertEquals(2, selector.selectAll(1, TimeUnit.SECONDS).size());
+    }
+
+    static class TestSession extends AbstractEventProcessor {
+        private volatile int data = 0;
+
+        TestSession() {
+            super(new MapConfigurable());
+        }
+
+        void push() {
+            data++;
+            fireReadAvailable(null, false);
+        }
+
+        void consume() {
+            data = 0;
+        }
+
+        boolean hasData() {
+            return data > 0;
+        }
+
+        @Override
+        public ProducerType getProducerType() {
+            return ProducerType.SESSION;
+        }
+
+        @Override
+        protected void pushError(Error error) {
+        }
+
+        @Override
+        protected void configureDefault(Properties properties) {
+        }
+    }
+
+    static class HasData implements State<TestSession> {
+        private final EventFilter trigger = new EventTypeFilter(EventType.READ_AVAILABLE);
+
+        public EventFilter getTrigger() {
+            return trigger;
+        }
+
+        public boolean checkState(TestSession session) {
+            return session.hasData();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package net.sf.commons.ssh.event;
+
+import net.sf.commons.ssh.common.OrderedEventExecutor;
+import net.sf.commons.ssh.connector.ConnectorPropertiesBuilder;
+import net.sf.commons.ssh.event.events.PropertyChangedEvent;
+import net.sf.commons.ssh.event.events.ReadAvailableEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RecyclableEventTest {
+
+    @Test
+    public void testImmediateListenerGetsSameEvent() {
+        final List<Event> received = new ArrayList<Event>();
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        session.setProperty(ConnectorPropertiesBuilder.EVENT_RECYCLING, true);
+        session.addListener(new EventListener() {
+            public void handle(Event event) {
+                assertTrue(((ReadAvailableEvent) event).isError());
+                received.add(event);
+            }
+        }, new EventTypeFilter(EventType.READ_AVAILABLE));
+        session.fireReadAvailable(null, true);
+        session.fireReadAvailable(null, true);
+        assertEquals(2, received.size());
+        assertSame(received.get(0), received.get(1));
+        assertTrue(((AbstractEvent) received.get(0)).isPooled());
+        // returned to pool
+        assertFalse(((ReadAvailableEvent) received.get(0)).isError());
+    }
+
+    @Test
+    public void testSynchronousBatchHandlerGetsSameEvent() {
+        final List<Event> received = new ArrayList<Event>();
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        session.setProperty(ConnectorPropertiesBuilder.EVENT_RECYCLING, true);
+        // not a batch listener, handled at once and not copied
+        session.addListener(new EventListener() {
+            public void handle(Event event) {
+                received.add(event);
+            }
+        }, new EventTypeFilter(EventType.READ_AVAILABLE), HandlerType.BATCH_PROCESS);
+        session.fireReadAvailable(null, true);
+        session.fireReadAvailable(null, true);
+        assertEquals(2, received.size());
+        assertSame(received.get(0), received.get(1));
+        assertTrue(((AbstractEvent) received.get(0)).isPooled());
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        final List<Event> received = new ArrayList<Event>();
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession();
+        session.addListener(new EventListener() {
+            public void handle(Event event) {
+                received.add(event);
+            }
+        }, new EventTypeFilter(EventType.READ_AVAILABLE));
+        session.push();
+        session.push();
+        assertNotSame(received.get(0), received.get(1));
+    }
+
+    @Test
+    public void testAsyncListenerGetsCopy() throws Exception {
+        final OrderedEventExecutor executor = new OrderedEventExecutor(2, 64);
+        final List<Event> received = Collections.synchronizedList(new ArrayList<Event>());
+        final CountDownLatch latch = new CountDownLatch(20);
+        ReadySetSelectorTest.TestSession session = new ReadySetSelectorTest.TestSession() {
+            @Override
+            protected OrderedEventExecutor getEventExecutor() {
+                return executor;
+            }
+        };
+        session.setProperty(ConnectorPropertiesBuilder.EVENT_RECYCLING, true);
+        session.addListener(new EventListener() {
+            public void handle(Event event) {
+                received.add(event);
+                latch.countDown();
+            }
+        }, new EventTypeFilter(EventType.PROPERTY_CHANGED), HandlerType.PUSH_TO_PROCESS);
+        for (int i = 0; i < 20; i++)
+            session.setProperty("key", i);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        for (int i = 0; i < 20; i++) {
+            PropertyChangedEvent event = (PropertyChangedEvent) received.get(i);
+            assertFalse(event.isPooled());
+            assertEquals("key", event.getKey());
+            assertEquals(i, event.getNewValue());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.sf.commons.ssh.event;
+
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selects sessions which received data among 10000 registered sessions with {@link SynchronizedSelector} and
+ * {@link ReadySetSelector}. Run as console application.
+ */
+public class SelectorBenchmark {
+    private static final int SESSIONS = 10000;
+    private static final int EVENTS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        ReadySetSelectorTest.TestSession[] sessions = new ReadySetSelectorTest.TestSession[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++)
+            sessions[i] = new ReadySetSelectorTest.TestSession();
+        for (int round = 0; round < 3; round++) {
+            run(new SynchronizedSelector(sessions[0], new MapConfigurable()), sessions);
+            run(new ReadySetSelector(sessions[0], new MapConfigurable()), sessions);
+        }
+    }
+
+    private static void run(Selector selector, ReadySetSelectorTest.TestSession[] sessions) throws Exception {
+        long start = System.nanoTime();
+        for (ReadySetSelectorTest.TestSession session : sessions)
+            selector.register(new ReadySetSelectorTest.HasData(), session);
+        long register = System.nanoTime() - start;
+
+        Random random = new Random(1);
+        start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            ReadySetSelectorTest.TestSession session = sessions[random.nextInt(sessions.length)];
+            session.push();
+            Collection<Selector.StateHolder> selected = selector.select(1, TimeUnit.SECONDS);
+            for (Selector.StateHolder holder : selected)
+                ((ReadySetSelectorTest.TestSession) holder.getObject()).consume();
+        }
+        long select = System.nanoTime() - start;
+        selector.close();
+        System.out.println(String.format("%s: %d sessions, register %d us, select %d us/event",
+                selector.getClass().getSimpleName(), sessions.length, register / 1000, select / EVENTS / 1000));
+    }
+}
@@ -0,0 +1,74 @@
+package net.sf.commons.ssh.options;
+
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AbstractConfigurableTest {
+
+    private static int depth(AbstractProperties properties) {
+        int result = 0;
+        Properties current = properties;
+        while (current instanceof AbstractProperties) {
+            result++;
+            current = ((AbstractProperties) current).parent;
+        }
+        return result;
+    }
+
+    @Test
+    public void testUpdateFreshConfigAddsSingleLayer() throws CloneNotSupportedException {
+        MapConfigurable base = new MapConfigurable();
+        base.setProperty("a", "base");
+        MapConfigurable config = new MapConfigurable();
+        config.includeDefault(base);
+        int before = depth(config);
+
+        MapConfigurable update = new MapConfigurable();
+        update.setProperty("a", "update");
+        config.updateFrom(update);
+        assertEquals(before + 1, depth(config));
+        assertEquals("update", config.getProperty("a"));
+        assertEquals("base", base.getProperty("a"));
+    }
+
+    @Test
+    public void testUpdateKeepsOwnPropertiesUnderUpdate() throws CloneNotSupportedException {
+        MapConfigurable config = new MapConfigurable();
+        config.setProperty("a", "own");
+        config.setProperty("b", "own");
+        MapConfigurable update = new MapConfigurable();
+        update.setProperty("a", "update");
+        config.updateFrom(update);
+        assertEquals("update", config.getProperty("a"));
+        assertEquals("own", config.getProperty("b"));
+    }
+
+    @Test
+    public void testOverridesDontGrowSharedParent() throws CloneNotSupportedException {
+        MapConfigurable shared = new MapConfigurable();
+        shared.setProperty("a", "shared");
+        int sharedDepth = depth(shared);
+        Properties sharedParent = shared.parent;
+        int depth = -1;
+        for (int i = 0; i < 10000; i++) {
+            MapConfigurable child = new MapConfigurable();
+            child.includeDefault(shared);
+            MapConfigurable override = new MapConfigurable();
+            override.setProperty("b", i);
+            child.updateFrom(override);
+            child.setProperty("c", "own");
+            assertEquals(i, child.getProperty("b"));
+            assertEquals("shared", child.getProperty("a"));
+            if (depth < 0)
+                depth = depth(child);
+            assertEquals(depth, depth(child));
+        }
+        assertEquals(sharedDepth, depth(shared));
+        assertSame(sharedParent, shared.parent);
+        assertNull(shared.getProperty("b"));
+    }
+}
@@ -0,0 +1,50 @@
+package net.sf.commons.ssh.options;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DefaultConverterTest {
+
+    @Test
+    public void testStaticConversions() {
+        DefaultConverter converter = new DefaultConverter(TestBuilder.class);
+        assertEquals(Long.valueOf(5), converter.convert("5", TestBuilder.KEY_LONG));
+        assertEquals(Long.valueOf(7), converter.convert("7", TestBuilder.KEY_LONG));
+        // valueOf is used when there is no suitable constructor
+        assertEquals(Thread.State.NEW, converter.convert("NEW", TestBuilder.KEY_STATE));
+        assertSame(converter.getConversion(String.class, Long.class),
+                converter.getConversion(String.class, Long.class));
+    }
+
+    @Test
+    public void testNegativeResultCached() {
+        DefaultConverter converter = new DefaultConverter(TestBuilder.class);
+        assertSame(DefaultConverter.Conversion.NONE, converter.getConversion(Thread.class, Long.class));
+        assertSame(DefaultConverter.Conversion.NONE, converter.getConversion(Thread.class, Long.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongFormat() {
+        new DefaultConverter(TestBuilder.class).convert("abc", TestBuilder.KEY_LONG);
+    }
+
+    @Test
+    public void testConvertMethod() {
+        DefaultConverter converter = new DefaultConverter(TestBuilder.class) {
+            @ConvertMethod(from = Integer.class, to = Long.class)
+            public Long intToLong(Integer value) {
+                return value * 1000L;
+            }
+        };
+        assertEquals(Long.valueOf(3000), converter.convert(3, TestBuilder.KEY_LONG));
+    }
+
+    static class TestBuilder extends PropertiesBuilder {
+        @PropertyType(Long.class)
+        static final String KEY_LONG = "test.long";
+        @PropertyType(Thread.State.class)
+        static final String KEY_STATE = "test.state";
+    }
+}
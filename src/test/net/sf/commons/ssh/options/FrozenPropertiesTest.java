@@ -0,0 +1,95 @@
+package net.sf.commons.ssh.options;
+
+import net.sf.commons.ssh.options.impl.FrozenProperties;
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import net.sf.commons.ssh.options.impl.SystemConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrozenPropertiesTest {
+
+    @Test
+    public void testFlattenedChain() throws Exception {
+        MapConfigurable defaults = new MapConfigurable();
+        defaults.setProperty("a", "default-a");
+        defaults.setProperty("b", "default-b");
+        defaults.setProperty("nullable", null);
+        MapConfigurable parent = new MapConfigurable();
+        parent.setProperty("b", "parent-b");
+        parent.includeDefault(defaults);
+        MapConfigurable config = new MapConfigurable();
+        config.includeDefault(parent);
+        config.setProperty("c", "own-c");
+        MapConfigurable update = new MapConfigurable();
+        update.setProperty("a", "update-a");
+        config.updateFrom(update);
+        config.setProperty("d", null);
+
+        FrozenProperties frozen = (FrozenProperties) config.freeze();
+        assertTrue(frozen.isFlattened());
+        for (String key : new String[]{"a", "b", "c", "d", "nullable", "missing"})
+            assertEquals(key, config.getProperty(key), frozen.getProperty(key));
+        assertEquals("update-a", frozen.getProperty("a"));
+        assertSame(frozen, config.freeze());
+    }
+
+    @Test
+    public void testInvalidatedByChange() {
+        MapConfigurable parent = new MapConfigurable();
+        parent.setProperty("key", 1);
+        MapConfigurable config = new MapConfigurable();
+        config.includeDefault(parent);
+        Properties frozen = config.freeze();
+        assertEquals(1, frozen.getProperty("key"));
+
+        // change of parent is visible in new snapshot only
+        parent.setProperty("key", 2);
+        assertEquals(1, frozen.getProperty("key"));
+        Properties refrozen = config.freeze();
+        assertNotSame(frozen, refrozen);
+        assertEquals(2, refrozen.getProperty("key"));
+    }
+
+    @Test
+    public void testUnrelatedChangeKeepsSnapshot() {
+        MapConfigurable shared = new MapConfigurable();
+        shared.setProperty("key", 1);
+        MapConfigurable config = new MapConfigurable();
+        config.includeDefault(shared);
+        MapConfigurable other = new MapConfigurable();
+        other.includeDefault(shared);
+        Properties frozen = config.freeze();
+
+        other.setProperty("key", 2);
+        new MapConfigurable().setProperty("key", 3);
+        assertSame(frozen, config.freeze());
+
+        shared.setProperty("key", 4);
+        assertEquals(4, config.freeze().getProperty("key"));
+    }
+
+    @Test
+    public void testNotEnumerableChain() {
+        System.setProperty("frozen.properties.test", "system");
+        MapConfigurable config = new MapConfigurable();
+        config.includeDefault(new SystemConfig());
+        config.setProperty("own", "value");
+        FrozenProperties frozen = (FrozenProperties) config.freeze();
+        assertFalse(frozen.isFlattened());
+        assertEquals("system", frozen.getProperty("frozen.properties.test"));
+        assertEquals("value", frozen.getProperty("own"));
+        assertNull(frozen.getProperty("frozen.properties.missing"));
+        System.clearProperty("frozen.properties.test");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        new MapConfigurable().freeze().includeDefault(new MapConfigurable());
+    }
+}
@@ -0,0 +1,38 @@
+package net.sf.commons.ssh.options;
+
+import net.sf.commons.ssh.auth.PasswordPropertiesBuilder;
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PropertiesBuilderVerifyTest {
+
+    @Test
+    public void testRequiredKeysCollectedOnce() {
+        PasswordPropertiesBuilder ppb = PasswordPropertiesBuilder.getInstance();
+        String[] keys = ppb.getRequiredKeys();
+        assertTrue(Arrays.asList(keys).contains(PasswordPropertiesBuilder.KEY_LOGIN));
+        assertTrue(Arrays.asList(keys).contains(PasswordPropertiesBuilder.KEY_PASSWORD));
+        assertSame(keys, ppb.getRequiredKeys());
+    }
+
+    @Test
+    public void testVerify() {
+        PasswordPropertiesBuilder ppb = PasswordPropertiesBuilder.getInstance();
+        MapConfigurable config = new MapConfigurable();
+        ppb.setLogin(config, "user");
+        try {
+            ppb.verify(config);
+            fail("password is required");
+        } catch (IllegalPropertyException e) {
+            assertTrue(e.getMessage().contains(PasswordPropertiesBuilder.KEY_PASSWORD));
+        }
+        ppb.setPassword(config, "secret");
+        ppb.verify(config);
+    }
+}
@@ -0,0 +1,48 @@
+package net.sf.commons.ssh.options;
+
+import net.sf.commons.ssh.connection.ConnectionPropertiesBuilder;
+import net.sf.commons.ssh.options.impl.MapConfigurable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyKeyTest {
+
+    @Test
+    public void testInterned() {
+        PropertyKey<Long> key = PropertyKey.of(ConnectionPropertiesBuilder.KEY_SOCKET_TIMEOUT, Long.class);
+        assertSame(ConnectionPropertiesBuilder.SOCKET_TIMEOUT, key);
+        assertTrue(key.getSlot() < PropertyKey.getSlotCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        PropertyKey.of(ConnectionPropertiesBuilder.SOCKET_TIMEOUT.getName(), Integer.class);
+    }
+
+    @Test
+    public void testTypedRead() {
+        ConnectionPropertiesBuilder cpb = ConnectionPropertiesBuilder.getInstance();
+        MapConfigurable config = new MapConfigurable();
+        config.includeDefault(cpb.getDefault());
+        assertNull(cpb.getSoTimeout(config));
+        assertEquals(Integer.valueOf(22), cpb.getPort(config));
+
+        // stored with other type, converted on read
+        config.setProperty(ConnectionPropertiesBuilder.KEY_SOCKET_TIMEOUT, "1500");
+        assertEquals(Long.valueOf(1500), cpb.getSoTimeout(config));
+
+        Properties frozen = config.freeze();
+        Long first = cpb.getProperty(frozen, ConnectionPropertiesBuilder.SOCKET_TIMEOUT);
+        assertEquals(Long.valueOf(1500), first);
+        // converted once and kept by snapshot
+        assertSame(first, cpb.getProperty(frozen, ConnectionPropertiesBuilder.SOCKET_TIMEOUT));
+        assertNull(cpb.getProperty(frozen, ConnectionPropertiesBuilder.PROXY_HOST));
+
+        cpb.setProperty(config, ConnectionPropertiesBuilder.SOCKET_TIMEOUT, 10L);
+        assertEquals(Long.valueOf(10), cpb.getSoTimeout(config.freeze()));
+    }
+}